@@ -19,9 +19,16 @@ public class Client {
 
     public Client(InetAddress address, int port) throws IOException {
         clientConnection = new ClientConnection(address, port);
+        isQueued = false;
+    }
+
+    /**
+     * Starts receiving the messages of the server. Called once, after the listeners were added, so that they do not
+     * miss a message.
+     */
+    public void start() {
         clientConnection.setChatClient(this);
         clientConnection.start();
-        isQueued = false;
     }
 
     /**
@@ -85,6 +92,16 @@ public class Client {
         clientConnection.sendHelloCommand(description);
     }
 
+    /**
+     * Delegates to the clientConnection to send the hello command, optionally announcing the binary protocol.
+     *
+     * @param description the description to be sent.
+     * @param binary      true to use binary frames if the server supports them.
+     */
+    public void sendHelloCommand(String description, boolean binary) {
+        clientConnection.sendHelloCommand(description, binary);
+    }
+
     /**
      * Delegates to the clientConnection to send an error command.
      *
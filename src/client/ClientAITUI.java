@@ -1,8 +1,12 @@
 package client;
 
+import gamelogic.ai.AlphaBetaStrategy;
+import gamelogic.ai.BookStrategy;
 import gamelogic.ai.EasyStrategy;
 import gamelogic.ai.ExpertStrategy;
 import gamelogic.ai.HardStrategy;
+import gamelogic.ai.MonteCarloStrategy;
+import gamelogic.ai.OpeningBook;
 import gamelogic.ai.Strategy;
 import gamelogic.model.BasicPlayer;
 import gamelogic.model.DotsAndBoxesGame;
@@ -11,9 +15,15 @@ import gamelogic.model.Mark;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -21,18 +31,36 @@ import java.util.concurrent.locks.ReentrantLock;
  * This class represents the client's TUI for the AI.
  * The user can choose a strategy and the client will play the game using that strategy.
  * The AI needs to be manually queued, by typing "queue" in the console.
- * Allows for dynamic changing of the difficulty level, by typing "1", "2" or "3" in the console.
+ * Allows for dynamic changing of the difficulty level, by typing "1" to "5" in the console.
+ * The AI computes a move as soon as it gets the turn, i.e., when a game is created or a move is received.
+ * If there is an opening book in OPENING_BOOK_FILE, the search strategies play its moves while the game is in the
+ * book. The easier strategies do not use it, so they keep their level.
  */
 
 public class ClientAITUI implements ClientTUI {
-    protected DotsAndBoxesGame dotsAndBoxesGame;
+    /**
+     * The opening book that the search strategies use, if the file exists, see OpeningBook.
+     */
+    public static final String OPENING_BOOK_FILE = "opening.book";
+    // The time the strategy may take for a move, in milliseconds.
+    private static final long MOVE_TIME = 1000;
+    protected volatile DotsAndBoxesGame dotsAndBoxesGame;
     private Client client;
     // Locks to ensure that the program can continue only after the hello command is received.
     private final Lock helloLock = new ReentrantLock();
     // Locks to ensure that the program can continue only after the login command is received.
     private final Lock loginLock = new ReentrantLock();
     private boolean handShakeCompleted = false; // true if the login command is received.
-    private Strategy strategy;
+    private volatile Strategy strategy;
+    private OpeningBook openingBook; // mapped when a search strategy is first chosen
+    // Sends the moves of the strategy once they are computed, so the thread that receives the commands of the server
+    // never waits for the strategy.
+    private final ExecutorService decisionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-decision");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Integer> pendingMove; // the move the strategy is computing, if any
 
     /**
      * Sets the strategy based on the user's input.
@@ -54,17 +82,43 @@ public class ClientAITUI implements ClientTUI {
                 strategy = new ExpertStrategy("Expert Strategy");
                 System.out.println("Expert Strategy selected");
                 break;
+            case "4":
+                strategy = withOpeningBook(new AlphaBetaStrategy("Alpha-beta Strategy"));
+                System.out.println("Alpha-beta Strategy selected");
+                break;
+            case "5":
+                strategy = withOpeningBook(new MonteCarloStrategy("Monte Carlo Strategy"));
+                System.out.println("Monte Carlo Strategy selected");
+                break;
             default:
                 System.out.println("Not a correct option");
         }
     }
 
+    /**
+     * Lets a search strategy play the moves of the opening book first, if there is a book.
+     *
+     * @param chosen the strategy that was chosen.
+     * @return the strategy with the book, or the chosen strategy if there is no book.
+     */
+    private Strategy withOpeningBook(Strategy chosen) {
+        Path path = Path.of(OPENING_BOOK_FILE);
+        if (openingBook == null && Files.exists(path)) {
+            try {
+                openingBook = new OpeningBook(path);
+            } catch (IOException e) {
+                System.out.println("Cannot open the opening book: " + e.getMessage());
+            }
+        }
+        return openingBook == null ? chosen : new BookStrategy(openingBook, chosen);
+    }
+
     /**
      * Sends a hello command to the server.
-     * The hello command is sent with no extensions.
+     * The hello command announces the binary protocol, which makes the moves of the AI a few bytes each.
      */
     public void doSendHelloCommand() {
-        client.sendHelloCommand("Minor14's AI"); // hello with no extensions.
+        client.sendHelloCommand("Minor14's AI", true); // hello with the binary protocol extension.
         // Hello lock to ensure that the program can continue only after the hello command is received.
         synchronized (helloLock) {
             try {
@@ -112,6 +166,37 @@ public class ClientAITUI implements ClientTUI {
         return strategy.computeLocation(dotsAndBoxesGame);
     }
 
+    /**
+     * Lets the strategy compute a move, if it is the AI's turn. The move is computed on another thread and sent when
+     * it is known, unless the game has ended or moved on by then.
+     * Called whenever the turn can change, i.e., when a game is created and when a move is received.
+     */
+    private synchronized void triggerMove() {
+        DotsAndBoxesGame game = dotsAndBoxesGame;
+        Strategy currentStrategy = strategy;
+        if (game == null || currentStrategy == null || game.isGameOver()
+                || !game.getTurn().getName().equals(client.getUsername())) {
+            return;
+        }
+        int moveCount = game.getMoveCount();
+        pendingMove = currentStrategy.computeLocationAsync(game, Instant.now().plusMillis(MOVE_TIME));
+        pendingMove.thenAcceptAsync(location -> {
+            if (dotsAndBoxesGame == game && game.getMoveCount() == moveCount) {
+                doSendMoveCommand(location);
+            }
+        }, decisionExecutor);
+    }
+
+    /**
+     * Cancels the move the strategy is computing, if any.
+     */
+    private synchronized void cancelMove() {
+        if (pendingMove != null) {
+            pendingMove.cancel(true);
+            pendingMove = null;
+        }
+    }
+
     @Override
     public void doSendMoveCommand(int location) {
         if (dotsAndBoxesGame != null) {
@@ -162,6 +247,7 @@ public class ClientAITUI implements ClientTUI {
         BasicPlayer player2 = new BasicPlayer(name2, Mark.O);
         dotsAndBoxesGame = new DotsAndBoxesGame(player1, player2);
         System.out.println(dotsAndBoxesGame);
+        triggerMove(); // the AI may have the first turn
     }
 
     /**
@@ -173,7 +259,8 @@ public class ClientAITUI implements ClientTUI {
     @Override
     public void receiveGameOver(String reason, String winner) {
         dotsAndBoxesGame = null;
-        System.out.println("Game over: " + reason + " " + winner);
+        cancelMove();
+        System.out.println("Game over: " + reason + (winner == null ? "" : " " + winner));
     }
 
     /**
@@ -185,6 +272,7 @@ public class ClientAITUI implements ClientTUI {
     public void receiveMove(int location) {
         dotsAndBoxesGame.drawLine(dotsAndBoxesGame.getTurn().determineLine(location));
         System.out.println(dotsAndBoxesGame);
+        triggerMove();
     }
 
     /**
@@ -263,9 +351,10 @@ public class ClientAITUI implements ClientTUI {
      * This runs in parallel with the game.
      *
      * @param input, a scanner object reading the user's input.
+     * @return the thread that handles the user input.
      */
-    public void runCommandThread(Scanner input) {
-        new Thread(() -> {
+    public Thread runCommandThread(Scanner input) {
+        Thread commandThread = new Thread(() -> {
             while (true) { // run forever to handle user input
                 String command = input.nextLine();
                 if (command.equals("queue")) {
@@ -273,7 +362,9 @@ public class ClientAITUI implements ClientTUI {
                 }
                 setStrategy(input); // change the difficulty level
             }
-        }).start();
+        });
+        commandThread.start();
+        return commandThread;
     }
 
     /**
@@ -289,30 +380,21 @@ public class ClientAITUI implements ClientTUI {
             client = new Client(InetAddress.getByName(address), port);
             ClientListener clientListener = new BasicClientListener(client, this);
             client.addListener(clientListener);
+            client.start();
             // establishes the handshake with the server
             doSendHelloCommand();
             doSendLogInCommand();
 
             // set strategy once at the start of the game
-            System.out.println("Choose strategy: [1] easy [2] hard [3] expert");
+            System.out.println("Choose strategy: [1] easy [2] hard [3] expert [4] alpha-beta [5] monte carlo");
             setStrategy(input1);
             // Start a new thread to handle user input for changing the difficulty level
-            runCommandThread(input1); //options: queue, 1,2,3
-            // Continue with the game in the main thread
-            while (true) {
-                if (dotsAndBoxesGame != null) {
-                    if (dotsAndBoxesGame.getTurn().getName().equals(client.getUsername())) {
-                        doSendMoveCommand(determineMove());
-                    }
-                }
-                try {
-                    // Prevents the client from sending too many commands at once.
-                    // This is needed to prevent sending untimely commands.
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
+            Thread commandThread = runCommandThread(input1); //options: queue, 1,2,3,4,5
+            // The moves are triggered by the commands of the server, see triggerMove.
+            // The main thread only keeps the input open while the command thread reads it.
+            commandThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (UnknownHostException e) {
             System.out.println("Invalid address. Please enter a valid IP address."); //invalid address
         } catch (IOException e) {
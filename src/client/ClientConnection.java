@@ -1,6 +1,7 @@
 package client;
 
 import helpers.ClientProtocol;
+import helpers.ProtocolTokenizer;
 import helpers.ServerProtocol;
 import networking.SocketConnection;
 
@@ -8,7 +9,6 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -16,8 +16,15 @@ import java.util.List;
  * Responsible for receiving and sending the commands to the server in the background.
  */
 public class ClientConnection extends SocketConnection {
+    // The commands the server can send, see ServerProtocol.
+    private static final String[] COMMANDS = {ServerProtocol.HELLO, ServerProtocol.LOGIN,
+        ServerProtocol.ALREADY_LOGGED_IN, ServerProtocol.LIST, ServerProtocol.NEW_GAME, ServerProtocol.MOVE,
+        ServerProtocol.GAME_OVER, ServerProtocol.ERROR};
 
     Client client;
+    // Splits the messages of the server, which are handled one at a time.
+    private final ProtocolTokenizer tokens = new ProtocolTokenizer();
+    private boolean binaryRequested = false; // true if the hello of the client announced the binary protocol
 
     // -- Constructor -----------------------------------------------
 
@@ -44,13 +51,26 @@ public class ClientConnection extends SocketConnection {
         super.close();
     }
 
+    /**
+     * Handles a message received from the server.
+     * The message is tokenized in place, so a move is parsed to an int without creating strings.
+     *
+     * @param message the message received from the connection
+     */
     @Override
     protected void handleMessage(String message) {
-        String[] tokens = message.split(ClientProtocol.SEPARATOR);
-        if (tokens.length > 0) {
-            String command = tokens[0];
+        tokens.reset(message);
+        if (tokens.countTokens() > 0) {
+            String command = tokens.nextKnownToken(COMMANDS);
+            if (command == null) {
+                client.sendErrorCommand("Unknown command: " + tokens.tokenAsString());
+                return;
+            }
             switch (command) {
                 case ServerProtocol.HELLO:
+                    if (binaryRequested && hasExtension(ServerProtocol.BINARY)) {
+                        useBinaryFraming(); // the server switched after sending its hello
+                    }
                     client.receiveHello();
                     break;
                 case ServerProtocol.LOGIN:
@@ -60,37 +80,77 @@ public class ClientConnection extends SocketConnection {
                     client.receiveAlreadyLoggedIn();
                     break;
                 case ServerProtocol.LIST:
-                    List<String> players = new ArrayList<>(Arrays.asList(tokens).subList(1, tokens.length));
+                    List<String> players = new ArrayList<>(tokens.countTokens() - 1);
+                    while (tokens.hasMoreTokens()) {
+                        players.add(tokens.nextToken().tokenAsString());
+                    }
                     client.receiveList(players);
                     break;
                 case ServerProtocol.NEW_GAME:
-                    if (tokens.length > 2) {
-                        client.receiveNewGame(tokens[1], tokens[2]);
+                    if (tokens.countTokens() > 2) {
+                        String player1 = tokens.nextToken().tokenAsString();
+                        client.receiveNewGame(player1, tokens.nextToken().tokenAsString());
                     } else {
                         client.sendErrorCommand("no username provided");
                     }
                     break;
                 case ServerProtocol.MOVE:
-                    if (tokens.length > 1) {
-                        client.receiveMove(Integer.parseInt(tokens[1]));
+                    if (tokens.countTokens() > 1) {
+                        client.receiveMove(tokens.nextToken().tokenAsInt());
                         break;
                     }
                     break;
                 case ServerProtocol.GAME_OVER:
-                    if (tokens.length > 2) {
-                        client.receiveGameOver(tokens[1], tokens[2]);
+                    if (tokens.countTokens() > 1) {
+                        String reason = tokens.nextToken().tokenAsString();
+                        // a draw has no winner
+                        String winner = tokens.hasMoreTokens() ? tokens.nextToken().tokenAsString() : null;
+                        client.receiveGameOver(reason, winner);
                     }
                     break;
                 case ServerProtocol.ERROR:
                     client.receiveError();
                     break;
                 default:
-                    client.sendErrorCommand("Unknown command: " + command);
                     break;
             }
         }
     }
 
+    /**
+     * Handles a binary frame received from the server, after both sides switched to the binary protocol.
+     *
+     * @param type  the type of the frame.
+     * @param value the value the frame carries.
+     */
+    @Override
+    protected void handleFrame(int type, int value) {
+        if (type == ServerProtocol.MOVE_FRAME) {
+            client.receiveMove(value);
+        } else {
+            client.sendErrorCommand("Unknown frame: " + type);
+        }
+    }
+
+    /**
+     * Checks whether the rest of the hello message that is being handled, after the description, contains the given
+     * extension.
+     *
+     * @param extension the extension to look for.
+     * @return true if the server announced the extension.
+     */
+    private boolean hasExtension(String extension) {
+        if (tokens.hasMoreTokens()) {
+            tokens.nextToken(); // the description
+        }
+        while (tokens.hasMoreTokens()) {
+            if (tokens.nextToken().tokenEquals(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Handles the event of the server disconnecting.
      */
@@ -116,7 +176,21 @@ public class ClientConnection extends SocketConnection {
      * @param description the description to be sent to the server.
      */
     public void sendHelloCommand(String description) {
-        super.sendMessage(ClientProtocol.HELLO + ClientProtocol.SEPARATOR + description);
+        sendHelloCommand(description, false);
+    }
+
+    /**
+     * Sends the hello command to the server, optionally announcing the binary protocol.
+     * If the server announces it as well, both sides use binary frames after the hello, which makes moves a few
+     * bytes each. Nothing may be sent until the hello of the server is received.
+     *
+     * @param description the description to be sent to the server.
+     * @param binary      true to announce the binary protocol.
+     */
+    public void sendHelloCommand(String description, boolean binary) {
+        binaryRequested = binary;
+        super.sendMessage(ClientProtocol.HELLO + ClientProtocol.SEPARATOR + description
+                + (binary ? ClientProtocol.SEPARATOR + ClientProtocol.BINARY : ""));
     }
 
     // -- Commands after handshake ----------------------------------
@@ -140,9 +214,15 @@ public class ClientConnection extends SocketConnection {
     /**
      * Sends the move command to the server.
      *
+     * With the binary protocol, the move is sent as a move frame.
+     *
      * @param location the location to be sent.
      */
     public void sendMoveCommand(int location) {
+        if (isBinaryFraming()) {
+            super.sendFrame(ClientProtocol.MOVE_FRAME, location);
+            return;
+        }
         super.sendMessage(ClientProtocol.MOVE + ClientProtocol.SEPARATOR + location);
     }
 
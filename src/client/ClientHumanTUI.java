@@ -301,6 +301,7 @@ public class ClientHumanTUI implements ClientTUI {
             client = new Client(InetAddress.getByName(address), port);
             clientListener = new BasicClientListener(client, this);
             client.addListener(clientListener);
+            client.start();
             doSendHelloCommand();
             doSendLogInCommand();
             return true;
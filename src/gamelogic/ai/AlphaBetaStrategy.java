@@ -0,0 +1,348 @@
+package gamelogic.ai;
+
+import gamelogic.model.Board;
+import gamelogic.model.BoardGeometry;
+import gamelogic.model.DotsAndBoxesGame;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class that represents the alpha-beta strategy.
+ * The strategy searches the moves of the game with iterative deepening alpha-beta, until the time budget of the move
+ * runs out. A position is valued as the number of boxes the player to move can still win minus the number of boxes
+ * the opponent can still win. This value only depends on the lines that are drawn, so positions are stored in a
+ * transposition table under the Zobrist hash of the board, which stays valid from one move to the next.
+ * Moves that complete a box are searched first and do not count towards the depth, then the safe moves that do not
+ * give away a box, then the remaining moves.
+ * One search runs at a time; the transposition table is shared by all searches of the strategy.
+ */
+public class AlphaBetaStrategy implements Strategy {
+    /**
+     * The time budget of a move if none is given, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_BUDGET = 1000;
+    /**
+     * The number of entries of the transposition table if none is given.
+     */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 18;
+    // The clock is read once every CHECK_INTERVAL + 1 nodes.
+    private static final int CHECK_INTERVAL = 1023;
+    // The kinds of values in the transposition table.
+    private static final int EXACT = 0;
+    private static final int LOWER_BOUND = 1;
+    private static final int UPPER_BOUND = 2;
+
+    private final String strategyName;
+    private final long timeBudget;
+    // Entry i of the transposition table takes two longs: the hash of the position at 2 * i and the packed
+    // depth, kind, value and best move at 2 * i + 1, see pack().
+    private final long[] table;
+    private final int tableMask;
+
+    // The state of the search that is running, only used during computeLocation.
+    private Board board;
+    private BoardGeometry geometry;
+    private int[][] moves; // the moves of every ply, see generateMoves
+    private MoveSearch progress;
+    private long nodes;
+    private boolean stopped;
+    private int rootBestMove;
+
+    /**
+     * Constructor for the alpha-beta strategy, with the default time budget and table size.
+     *
+     * @param strategyName name of the strategy
+     */
+    public AlphaBetaStrategy(String strategyName) {
+        this(strategyName, DEFAULT_TIME_BUDGET);
+    }
+
+    /**
+     * Constructor for the alpha-beta strategy, with the default table size.
+     *
+     * @param strategyName name of the strategy
+     * @param timeBudget   the time the strategy may take for a move, in milliseconds
+     */
+    //@ requires timeBudget > 0;
+    public AlphaBetaStrategy(String strategyName, long timeBudget) {
+        this(strategyName, timeBudget, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Constructor for the alpha-beta strategy.
+     *
+     * @param strategyName name of the strategy
+     * @param timeBudget   the time the strategy may take for a move, in milliseconds
+     * @param tableSize    the number of entries of the transposition table, a power of two
+     * @throws IllegalArgumentException if the time budget is not positive or the table size is not a power of two
+     */
+    //@ requires timeBudget > 0 && tableSize > 0 && Integer.bitCount(tableSize) == 1;
+    public AlphaBetaStrategy(String strategyName, long timeBudget, int tableSize) {
+        if (timeBudget <= 0) {
+            throw new IllegalArgumentException("The time budget must be positive");
+        }
+        if (tableSize <= 0 || Integer.bitCount(tableSize) != 1) {
+            throw new IllegalArgumentException("The table size must be a power of two");
+        }
+        this.strategyName = strategyName;
+        this.timeBudget = timeBudget;
+        this.table = new long[2 * tableSize];
+        this.tableMask = tableSize - 1;
+    }
+
+    /**
+     * Method that returns the name of the strategy.
+     *
+     * @return name of strategy
+     */
+    /*@
+        ensures \result != null;
+        pure;
+    */
+    @Override
+    public String getName() {
+        return strategyName;
+    }
+
+    /**
+     * Method that returns the time the strategy may take for a move.
+     *
+     * @return the time budget in milliseconds
+     */
+    //@ pure
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Method that returns the number of positions that were visited to compute the last move.
+     *
+     * @return the number of nodes of the last search
+     */
+    //@ pure
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Method that computes the next move by searching one ply deeper every iteration, until the game is searched
+     * to the end or the time budget runs out. The best move of the last finished iteration is returned.
+     * The search runs on a copy of the board, so the game is not changed.
+     *
+     * @param game that is currently being played
+     * @return a location of a valid move
+     */
+    /*@
+        requires game != null && !game.isGameOver();
+        ensures game.getValidLocations().contains(\result);
+        pure;
+    */
+    @Override
+    public int computeLocation(DotsAndBoxesGame game) {
+        return searchIteratively(game.board.deepCopy(), new MoveSearch(Instant.now().plusMillis(timeBudget)));
+    }
+
+    /**
+     * Method that computes the next move like computeLocation, but on another thread and until the deadline instead
+     * of for the time budget. The best move of every finished iteration is reported, so the future completes with
+     * it if the deadline passes during the next iteration.
+     *
+     * @param game     that is currently being played
+     * @param deadline the moment at which a move must be known
+     * @return the future location of a valid move
+     */
+    /*@
+        requires game != null && deadline != null;
+        ensures \result != null;
+    */
+    @Override
+    public CompletableFuture<Integer> computeLocationAsync(DotsAndBoxesGame game, Instant deadline) {
+        Board copy = game.board.deepCopy();
+        MoveSearch search = new MoveSearch(deadline);
+        return search.run(() -> searchIteratively(copy, search));
+    }
+
+    /**
+     * Searches the moves on a board with iterative deepening, until the board is searched to the end or the search
+     * is stopped.
+     *
+     * @param searchBoard the board to search, which is changed during the search and restored at the end
+     * @param search      the move search that receives the best move of every iteration
+     * @return the best move of the last finished iteration
+     * @throws IllegalStateException if the board is full
+     */
+    private synchronized int searchIteratively(Board searchBoard, MoveSearch search) {
+        if (searchBoard.isFull()) {
+            throw new IllegalStateException("The game is over");
+        }
+        board = searchBoard;
+        geometry = board.getGeometry();
+        progress = search;
+        int remainingLines = geometry.getNrOfLines() - board.getNrOfDrawnLines();
+        moves = new int[remainingLines + 1][2 * geometry.getNrOfLines()];
+        nodes = 0;
+        stopped = false;
+        // until the first iteration is finished, the move that would be searched first is the best guess
+        generateMoves(0, false, -1);
+        int bestMove = moves[0][0];
+        search.offer(bestMove);
+        for (int depth = 1; depth <= remainingLines && !stopped; depth++) {
+            int bound = geometry.getNrOfBoxes() + 1;
+            search(depth, -bound, bound, 0);
+            if (!stopped) {
+                bestMove = rootBestMove;
+                search.offer(bestMove);
+            }
+        }
+        board = null; // the copy is not needed anymore
+        progress = null;
+        return bestMove;
+    }
+
+    /**
+     * Searches the position on the board to the given depth. Moves that complete a box do not count towards the
+     * depth, so at depth 0 only those moves are searched.
+     *
+     * @param depth the number of moves without a completed box that are still searched
+     * @param alpha the value the player to move can already reach
+     * @param beta  the value the opponent can already hold the player to move to
+     * @param ply   the number of moves since the root of the search
+     * @return the boxes the player to move can still win minus the boxes the opponent can still win, or 0 if the
+     *         search was stopped
+     */
+    private int search(int depth, int alpha, int beta, int ply) {
+        if ((++nodes & CHECK_INTERVAL) == 0 && progress.isStopped()) {
+            stopped = true;
+        }
+        if (stopped || board.isFull()) {
+            return 0;
+        }
+        long key = board.positionHash();
+        int index = 2 * ((int) key & tableMask);
+        int tableMove = -1;
+        if (table[index] == key && table[index + 1] != 0) {
+            long entry = table[index + 1];
+            tableMove = unpackMove(entry);
+            int value = unpackValue(entry);
+            int kind = unpackKind(entry);
+            // the root always searches its moves, because it has to find the best one
+            if (ply > 0 && unpackDepth(entry) >= depth && (kind == EXACT
+                    || kind == LOWER_BOUND && value >= beta || kind == UPPER_BOUND && value <= alpha)) {
+                return value;
+            }
+        }
+        int count = generateMoves(ply, depth == 0, tableMove);
+        if (count == 0) {
+            return 0; // depth 0 without a box to complete
+        }
+        int[] plyMoves = moves[ply];
+        int originalAlpha = alpha;
+        int bestValue = Integer.MIN_VALUE;
+        int bestMove = plyMoves[0];
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            int completed = board.drawLine(move);
+            int value;
+            if (completed > 0) {
+                // the player to move gets the boxes and moves again
+                value = completed + search(depth, alpha - completed, beta - completed, ply + 1);
+            } else {
+                value = -search(depth - 1, -beta, -alpha, ply + 1);
+            }
+            board.undrawLine(move);
+            if (stopped) {
+                return 0;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        int kind = bestValue <= originalAlpha ? UPPER_BOUND : bestValue >= beta ? LOWER_BOUND : EXACT;
+        table[index] = key;
+        table[index + 1] = pack(depth, kind, bestValue, bestMove);
+        if (ply == 0) {
+            rootBestMove = bestMove;
+        }
+        return bestValue;
+    }
+
+    /**
+     * Puts the moves of the position on the board in moves[ply]: first the moves that complete a box, then the
+     * moves that do not give the opponent a box to complete, then the other moves. The move from the
+     * transposition table, if any, is moved to the front.
+     *
+     * @param ply          the number of moves since the root of the search
+     * @param capturesOnly true if only the moves that complete a box are needed
+     * @param firstMove    the move to search first, or -1
+     * @return the number of moves
+     */
+    private int generateMoves(int ply, boolean capturesOnly, int firstMove) {
+        int[] plyMoves = moves[ply];
+        int nrOfLines = geometry.getNrOfLines();
+        int captures = 0;
+        int safeMoves = 0;
+        int otherMoves = 0;
+        // captures are put at the front, safe moves from nrOfLines and the other moves from the back
+        for (int line = 0; line < nrOfLines; line++) {
+            if (board.getLine(line) != null) {
+                continue;
+            }
+            int first = board.countLines(geometry.getFirstBox(line));
+            int secondBox = geometry.getSecondBox(line);
+            int second = secondBox < 0 ? 0 : board.countLines(secondBox);
+            if (first == 3 || second == 3) {
+                plyMoves[captures++] = line;
+            } else if (capturesOnly) {
+                continue;
+            } else if (first < 2 && second < 2) {
+                plyMoves[nrOfLines + safeMoves++] = line;
+            } else {
+                plyMoves[plyMoves.length - 1 - otherMoves++] = line;
+            }
+        }
+        System.arraycopy(plyMoves, nrOfLines, plyMoves, captures, safeMoves);
+        System.arraycopy(plyMoves, plyMoves.length - otherMoves, plyMoves, captures + safeMoves, otherMoves);
+        int count = captures + safeMoves + otherMoves;
+        for (int i = 1; i < count; i++) {
+            if (plyMoves[i] == firstMove) {
+                plyMoves[i] = plyMoves[0];
+                plyMoves[0] = firstMove;
+                break;
+            }
+        }
+        return count;
+    }
+
+    /*
+    An entry of the transposition table is packed in a long: the best move + 1 in the highest 16 bits, then the
+    depth + 1 in 16 bits, the kind of value in 16 bits and the value + 2^15 in the lowest 16 bits. Because the depth
+    is stored + 1, an entry is never 0, so an empty slot is never mistaken for the empty board, whose hash is 0.
+    */
+    private static long pack(int depth, int kind, int value, int move) {
+        return (long) (move + 1) << 48 | (long) (depth + 1) << 32 | (long) kind << 16 | (value + 0x8000);
+    }
+
+    private static int unpackMove(long entry) {
+        return (int) (entry >>> 48) - 1;
+    }
+
+    private static int unpackDepth(long entry) {
+        return (int) (entry >>> 32 & 0xFFFF) - 1;
+    }
+
+    private static int unpackKind(long entry) {
+        return (int) (entry >>> 16 & 0xFFFF);
+    }
+
+    private static int unpackValue(long entry) {
+        return (int) (entry & 0xFFFF) - 0x8000;
+    }
+}
@@ -0,0 +1,68 @@
+package gamelogic.ai;
+
+import gamelogic.model.DotsAndBoxesGame;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A strategy that plays the moves of an OpeningBook while the position is in the book, and leaves the other moves
+ * to another strategy. A book move only takes a lookup, so the other strategy spends its time where it matters.
+ */
+public class BookStrategy implements Strategy {
+    private final OpeningBook book;
+    private final Strategy strategy;
+
+    /**
+     * Constructor for the book strategy.
+     *
+     * @param book     the opening book, which may be shared by many strategies
+     * @param strategy the strategy for the positions that are not in the book
+     */
+    //@ requires book != null && strategy != null;
+    public BookStrategy(OpeningBook book, Strategy strategy) {
+        this.book = book;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Method that returns the name of the strategy, which is the name of the strategy after the book.
+     *
+     * @return name of strategy
+     */
+    /*@
+        ensures \result != null;
+        pure;
+    */
+    @Override
+    public String getName() {
+        return strategy.getName();
+    }
+
+    /**
+     * Method that returns the move of the book, or the move of the other strategy if the position is not in the book.
+     *
+     * @param game that is currently being played
+     * @return a next legal line
+     */
+    @Override
+    public int computeLocation(DotsAndBoxesGame game) {
+        int location = book.lookup(game);
+        return location >= 0 ? location : strategy.computeLocation(game);
+    }
+
+    /**
+     * Method that completes at once with the move of the book, or lets the other strategy compute the move if the
+     * position is not in the book.
+     *
+     * @param game     that is currently being played
+     * @param deadline the moment at which a line must be known
+     * @return the future line
+     */
+    @Override
+    public CompletableFuture<Integer> computeLocationAsync(DotsAndBoxesGame game, Instant deadline) {
+        int location = book.lookup(game);
+        return location >= 0 ? CompletableFuture.completedFuture(location)
+                : strategy.computeLocationAsync(game, deadline);
+    }
+}
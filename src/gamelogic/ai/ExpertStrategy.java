@@ -2,7 +2,6 @@ package gamelogic.ai;
 
 import gamelogic.model.Box;
 import gamelogic.model.DotsAndBoxesGame;
-import gamelogic.model.Line;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,13 +37,7 @@ public class ExpertStrategy extends HardStrategy implements Strategy {
     public List<Box> boxesThreeFromFull(DotsAndBoxesGame game) {
         List<Box> boxesThreeFromFull = new ArrayList<>();
         for (Box box : game.board.getBoxes()) {
-            Line[] lines = box.getLines();
-            int counter = 0;
-            for (int i = 0; i < 4; i++) {
-                if (lines[i] != null) {
-                    counter++;
-                }
-            }
+            int counter = game.board.countLines(box.getLocation());
             if (counter == 1) {
                 boxesThreeFromFull.add(box);
             }
@@ -66,13 +59,7 @@ public class ExpertStrategy extends HardStrategy implements Strategy {
     public List<Box> boxesFourFromFull(DotsAndBoxesGame game) {
         List<Box> boxesFourFromFull = new ArrayList<>();
         for (Box box : game.board.getBoxes()) {
-            Line[] lines = box.getLines();
-            int counter = 0;
-            for (int i = 0; i < 4; i++) {
-                if (lines[i] != null) {
-                    counter++;
-                }
-            }
+            int counter = game.board.countLines(box.getLocation());
             if (counter == 0) {
                 boxesFourFromFull.add(box);
             }
@@ -115,13 +102,13 @@ public class ExpertStrategy extends HardStrategy implements Strategy {
         List<Integer> validLocations = game.getValidLocations();
         if (!boxesOneFromFull.isEmpty()) {
             Box box = boxesOneFromFull.get(random.nextInt(boxesOneFromFull.size()));
-            return getLocationLine(box.getLocation(), getIndexEmptyLineBox(box));
+            return getLocationLine(game, box.getLocation(), getIndexEmptyLineBox(box));
         } else if (!boxesFourFromFull.isEmpty()) {
             Box box = boxesFourFromFull.get(random.nextInt(boxesFourFromFull.size()));
-            return getLocationLine(box.getLocation(), getIndexEmptyLineBox(box));
+            return getLocationLine(game, box.getLocation(), getIndexEmptyLineBox(box));
         } else if (!boxesThreeFromFull.isEmpty()) {
             Box box = boxesThreeFromFull.get(random.nextInt(boxesThreeFromFull.size()));
-            return getLocationLine(box.getLocation(), getIndexEmptyLineBox(box));
+            return getLocationLine(game, box.getLocation(), getIndexEmptyLineBox(box));
         } else {
             return validLocations.get(random.nextInt(validLocations.size()));
         }
@@ -1,6 +1,7 @@
 package gamelogic.ai;
 
 import gamelogic.model.Board;
+import gamelogic.model.BoardGeometry;
 import gamelogic.model.Box;
 import gamelogic.model.DotsAndBoxesGame;
 import gamelogic.model.Line;
@@ -37,13 +38,7 @@ public class HardStrategy implements Strategy {
     public List<Box> boxesOneFromFull(DotsAndBoxesGame game) {
         List<Box> boxesOneFromFull = new ArrayList<>();
         for (Box box : game.board.getBoxes()) {
-            Line[] lines = box.getLines();
-            int counter = 0;
-            for (int i = 0; i < 4; i++) {
-                if (lines[i] != null) {
-                    counter++;
-                }
-            }
+            int counter = game.board.countLines(box.getLocation());
             if (counter == 3) {
                 boxesOneFromFull.add(box);
             }
@@ -76,7 +71,25 @@ public class HardStrategy implements Strategy {
 
     /**
      * Method that returns the index of the line based on the index of box and the index of the
-     * side.
+     * side, on the board of the given game.
+     *
+     * @param game        that is currently being played
+     * @param boxLocation index of the box
+     * @param index       of the side
+     * @return index of the line
+     */
+    /*@
+        requires game != null;
+        requires boxLocation >= 0 && boxLocation < game.board.getNrOfBoxes() && index >= 0 && index < 4;
+        ensures \result >= 0;
+    */
+    public int getLocationLine(DotsAndBoxesGame game, int boxLocation, int index) {
+        return game.board.getGeometry().getBoxLine(boxLocation, index);
+    }
+
+    /**
+     * Method that returns the index of the line based on the index of box and the index of the
+     * side, on a default DIM x DIM board.
      *
      * @param boxLocation index of the box
      * @param index       of the side
@@ -87,18 +100,7 @@ public class HardStrategy implements Strategy {
         ensures \result >= 0;
     */
     public int getLocationLine(int boxLocation, int index) {
-        int offset = boxLocation / Board.DIM;
-        int lineLocation = 0;
-        if (index == 0) {
-            lineLocation = boxLocation + offset * (Board.DIM + 1);
-        } else if (index == 1) {
-            lineLocation = boxLocation + offset * (Board.DIM + 1) + 5;
-        } else if (index == 2) {
-            lineLocation = boxLocation + offset * (Board.DIM + 1) + 6;
-        } else if (index == 3) {
-            lineLocation = boxLocation + offset * (Board.DIM + 1) + 11;
-        }
-        return lineLocation;
+        return BoardGeometry.DEFAULT.getBoxLine(boxLocation, index);
     }
 
     /**
@@ -133,7 +135,7 @@ public class HardStrategy implements Strategy {
         if (!boxesOneFromFull.isEmpty()) {
             Random random = new Random();
             Box box = boxesOneFromFull.get(random.nextInt(boxesOneFromFull.size()));
-            return getLocationLine(box.getLocation(), getIndexEmptyLineBox(box));
+            return getLocationLine(game, box.getLocation(), getIndexEmptyLineBox(box));
         } else {
             List<Integer> validLocations = game.getValidLocations();
             Random random = new Random();
@@ -0,0 +1,434 @@
+package gamelogic.ai;
+
+import gamelogic.model.Board;
+import gamelogic.model.BoardGeometry;
+import gamelogic.model.DotsAndBoxesGame;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class that represents the Monte Carlo tree search strategy.
+ * The strategy builds a search tree with UCT: it repeatedly walks down the tree to the most promising position that
+ * is not fully explored, adds one move to it and plays the rest of the game with random moves. The result of that
+ * playout is counted in every position on the way down. The move of the root that was tried most often is played.
+ * The playouts are split over a number of trees, each grown by a task of a ForkJoinPool on its own copy of the board.
+ * A playout draws and removes lines on the copy of the board, so it does not allocate. The pool is shared by all
+ * instances, so choosing a new strategy does not leave threads behind; its threads are daemons.
+ * Every PLAYOUT_BATCH playouts, a tree adds the new visits of the moves of its root to the visits of the search and
+ * checks whether it has to stop, so an asynchronous search can end before its playout budget is used up. The move that
+ * was tried most often so far is then offered as the best move, so a deadline that passes before the trees are done
+ * still gets a move that was searched.
+ */
+public class MonteCarloStrategy implements Strategy {
+    /**
+     * The number of playouts of a move if none is given.
+     */
+    public static final int DEFAULT_PLAYOUTS = 20000;
+    // The weight of the number of visits of a move against its result in UCT.
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final int PLAYOUT_BATCH = 64;
+    // The threads that grow the trees, one per core, shared by all instances.
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final String strategyName;
+    private final int playouts;
+    private final int trees;
+    private final SplittableRandom random = new SplittableRandom();
+
+    /**
+     * Constructor for the Monte Carlo strategy, with the default number of playouts and one tree per core.
+     *
+     * @param strategyName name of the strategy
+     */
+    public MonteCarloStrategy(String strategyName) {
+        this(strategyName, DEFAULT_PLAYOUTS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for the Monte Carlo strategy.
+     *
+     * @param strategyName name of the strategy
+     * @param playouts     the number of playouts of a move, over all trees
+     * @param trees        the number of trees that are grown in parallel, on the threads of the shared pool
+     * @throws IllegalArgumentException if the number of playouts or trees is not positive
+     */
+    //@ requires playouts > 0 && trees > 0;
+    public MonteCarloStrategy(String strategyName, int playouts, int trees) {
+        if (playouts <= 0 || trees <= 0) {
+            throw new IllegalArgumentException("The number of playouts and trees must be positive");
+        }
+        this.strategyName = strategyName;
+        this.playouts = playouts;
+        this.trees = trees;
+    }
+
+    /**
+     * Method that returns the name of the strategy.
+     *
+     * @return name of strategy
+     */
+    /*@
+        ensures \result != null;
+        pure;
+    */
+    @Override
+    public String getName() {
+        return strategyName;
+    }
+
+    /**
+     * Method that returns the number of playouts of a move.
+     *
+     * @return the number of playouts
+     */
+    //@ pure
+    public int getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Method that returns the number of trees that are grown in parallel.
+     *
+     * @return the number of trees
+     */
+    //@ pure
+    public int getTrees() {
+        return trees;
+    }
+
+    /**
+     * Method that computes the next move with Monte Carlo tree search. The game is not changed.
+     *
+     * @param game that is currently being played
+     * @return a location of a valid move
+     */
+    /*@
+        requires game != null && !game.isGameOver();
+        ensures game.getValidLocations().contains(\result);
+        pure;
+    */
+    @Override
+    public int computeLocation(DotsAndBoxesGame game) {
+        return search(game.board.deepCopy(), scoreDifference(game), new MoveSearch());
+    }
+
+    /**
+     * Method that computes the next move like computeLocation, but on another thread. The playouts stop when the
+     * deadline comes close, and the move that was tried most often by then is returned.
+     *
+     * @param game     that is currently being played
+     * @param deadline the moment at which a move must be known
+     * @return the future location of a valid move
+     */
+    /*@
+        requires game != null && deadline != null;
+        ensures \result != null;
+    */
+    @Override
+    public CompletableFuture<Integer> computeLocationAsync(DotsAndBoxesGame game, Instant deadline) {
+        Board copy = game.board.deepCopy();
+        int scoreDifference = scoreDifference(game);
+        MoveSearch search = new MoveSearch(deadline);
+        return search.run(() -> search(copy, scoreDifference, search));
+    }
+
+    private static int scoreDifference(DotsAndBoxesGame game) {
+        return game.getTurn().getScore() - game.getOther().getScore();
+    }
+
+    /**
+     * Runs the playouts on the threads of the pool and gets the move that was tried most often, in all trees.
+     *
+     * @param board           the board of the player to move, which is not changed
+     * @param scoreDifference the score of the player to move minus the score of the opponent
+     * @param search          the move search that tells when to stop
+     * @return the location of the move
+     * @throws IllegalStateException if the board is full
+     */
+    private int search(Board board, int scoreDifference, MoveSearch search) {
+        int bestMove = -1;
+        for (int move = 0; move < board.getNrOfLines() && bestMove < 0; move++) {
+            if (board.getLine(move) == null) {
+                bestMove = move;
+            }
+        }
+        if (bestMove < 0) {
+            throw new IllegalStateException("The game is over");
+        }
+        search.offer(bestMove);
+        AtomicLongArray visits = new AtomicLongArray(board.getNrOfLines());
+        List<Callable<Void>> searches = new ArrayList<>();
+        for (int i = 0; i < trees; i++) {
+            // the playouts that do not divide evenly go to the first trees
+            int share = playouts / trees + (i < playouts % trees ? 1 : 0);
+            if (share > 0) {
+                TreeSearch tree = new TreeSearch(board.deepCopy(), scoreDifference, share, nextRandom(), search,
+                        visits);
+                searches.add(tree::run);
+            }
+        }
+        try {
+            for (Future<Void> result : POOL.invokeAll(searches)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A playout failed", e.getCause());
+        }
+        return mostVisited(board, visits, bestMove);
+    }
+
+    /**
+     * Gets the move of the root that was tried most often so far.
+     *
+     * @param board    the board of the root
+     * @param visits   the visits of every move of the root, over all trees
+     * @param fallback the move if no move has been tried yet
+     * @return the location of the move
+     */
+    private static int mostVisited(Board board, AtomicLongArray visits, int fallback) {
+        int bestMove = fallback;
+        long bestVisits = 0;
+        for (int move = 0; move < visits.length(); move++) {
+            long moveVisits = visits.get(move);
+            if (moveVisits > bestVisits && board.getLine(move) == null) {
+                bestMove = move;
+                bestVisits = moveVisits;
+            }
+        }
+        return bestMove;
+    }
+
+    private synchronized SplittableRandom nextRandom() {
+        return random.split();
+    }
+
+    /**
+     * A position in the search tree.
+     */
+    private static final class Node {
+        final int move; // the line drawn to reach this position, -1 for the root
+        final boolean rootPlayerMoved; // true if the player of the root drew the line
+        final boolean rootPlayerToMove;
+        final Node[] children;
+        int childCount;
+        // the moves that do not have a child yet, in untriedMoves[0] to untriedMoves[untriedCount - 1]
+        final int[] untriedMoves;
+        int untriedCount;
+        int visits;
+        double wins; // the results of the playouts for the player who drew the line
+
+        Node(int move, boolean rootPlayerMoved, boolean rootPlayerToMove, Board board) {
+            this.move = move;
+            this.rootPlayerMoved = rootPlayerMoved;
+            this.rootPlayerToMove = rootPlayerToMove;
+            untriedMoves = new int[board.getNrOfLines() - board.getNrOfDrawnLines()];
+            for (int line = 0; line < board.getNrOfLines(); line++) {
+                if (board.getLine(line) == null) {
+                    untriedMoves[untriedCount++] = line;
+                }
+            }
+            children = new Node[untriedCount];
+        }
+
+        /**
+         * Gets the child with the highest upper confidence bound.
+         */
+        Node select() {
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            double logVisits = Math.log(visits);
+            for (int i = 0; i < childCount; i++) {
+                Node child = children[i];
+                double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * One tree of the search, grown by one thread on its own copy of the board.
+     */
+    private static final class TreeSearch {
+        private final Board board;
+        private final BoardGeometry geometry;
+        private final int scoreDifference;
+        private final int playouts;
+        private final SplittableRandom random;
+        private final MoveSearch search;
+        private final AtomicLongArray visits; // the visits of the moves of the root, over all trees
+        private final long[] publishedVisits; // the visits of the moves of this root that were added to visits
+        private final int[] drawnLines; // the lines drawn since the root, to remove them after a playout
+        private final int[] remainingLines;
+
+        TreeSearch(Board board, int scoreDifference, int playouts, SplittableRandom random, MoveSearch search,
+                   AtomicLongArray visits) {
+            this.board = board;
+            this.geometry = board.getGeometry();
+            this.scoreDifference = scoreDifference;
+            this.playouts = playouts;
+            this.random = random;
+            this.search = search;
+            this.visits = visits;
+            this.publishedVisits = new long[board.getNrOfLines()];
+            this.drawnLines = new int[board.getNrOfLines()];
+            this.remainingLines = new int[board.getNrOfLines()];
+        }
+
+        /**
+         * Runs the playouts, and adds the visits of every move of the root to the visits of the search.
+         */
+        Void run() {
+            Node root = new Node(-1, false, true, board);
+            Node[] path = new Node[board.getNrOfLines() + 1];
+            for (int i = 0; i < playouts; i++) {
+                if (i % PLAYOUT_BATCH == 0) {
+                    if (i > 0) {
+                        publish(root);
+                    }
+                    if (search.isStopped()) {
+                        break;
+                    }
+                }
+                int depth = 0;
+                int difference = scoreDifference; // boxes of the player of the root minus boxes of the opponent
+                Node node = root;
+                path[0] = root;
+                // walk down to a position that still has untried moves
+                while (node.untriedCount == 0 && node.childCount > 0) {
+                    node = node.select();
+                    difference += draw(depth++, node.move, node.rootPlayerMoved);
+                    path[depth] = node;
+                }
+                if (node.untriedCount > 0) {
+                    int index = random.nextInt(node.untriedCount);
+                    int move = node.untriedMoves[index];
+                    node.untriedMoves[index] = node.untriedMoves[--node.untriedCount];
+                    boolean rootPlayerMoved = node.rootPlayerToMove;
+                    int completed = board.drawLine(move);
+                    drawnLines[depth] = move;
+                    difference += rootPlayerMoved ? completed : -completed;
+                    // the player who completes a box moves again
+                    Node child = new Node(move, rootPlayerMoved, rootPlayerMoved == (completed > 0), board);
+                    node.children[node.childCount++] = child;
+                    node = child;
+                    path[++depth] = node;
+                }
+                difference += playOut(node.rootPlayerToMove);
+                double result = difference > 0 ? 1 : difference < 0 ? 0 : 0.5;
+                for (int j = 0; j <= depth; j++) {
+                    path[j].visits++;
+                    path[j].wins += path[j].rootPlayerMoved ? result : 1 - result;
+                }
+                for (int j = depth - 1; j >= 0; j--) {
+                    board.undrawLine(drawnLines[j]);
+                }
+            }
+            publish(root);
+            return null;
+        }
+
+        /**
+         * Adds the visits of the moves of the root since the last call to the visits of the search, and offers the
+         * move that was tried most often in all trees. Called between playouts, when the board is at the root.
+         *
+         * @param root the root of this tree
+         */
+        private void publish(Node root) {
+            for (int i = 0; i < root.childCount; i++) {
+                Node child = root.children[i];
+                long added = child.visits - publishedVisits[child.move];
+                if (added > 0) {
+                    visits.addAndGet(child.move, added);
+                    publishedVisits[child.move] = child.visits;
+                }
+            }
+            int bestMove = mostVisited(board, visits, -1);
+            if (bestMove >= 0) {
+                search.offer(bestMove);
+            }
+        }
+
+        private int draw(int depth, int move, boolean rootPlayerMoved) {
+            int completed = board.drawLine(move);
+            drawnLines[depth] = move;
+            return rootPlayerMoved ? completed : -completed;
+        }
+
+        /**
+         * Plays the game to the end and removes the moves again. The moves are random, except that a box is
+         * completed whenever possible and a box is only given away when there is no safe move left, like
+         * ExpertStrategy does. Purely random moves give away so many boxes that the results say little.
+         *
+         * @param rootPlayerToMove true if the player of the root is to move
+         * @return the boxes won by the player of the root minus the boxes won by the opponent
+         */
+        private int playOut(boolean rootPlayerToMove) {
+            int count = 0;
+            for (int line = 0; line < board.getNrOfLines(); line++) {
+                if (board.getLine(line) == null) {
+                    remainingLines[count++] = line;
+                }
+            }
+            int difference = 0;
+            for (int i = count; i > 0; i--) {
+                int index = chooseMove(i);
+                int move = remainingLines[index];
+                remainingLines[index] = remainingLines[i - 1];
+                remainingLines[i - 1] = move;
+                int completed = board.drawLine(move);
+                if (completed > 0) {
+                    difference += rootPlayerToMove ? completed : -completed;
+                } else {
+                    rootPlayerToMove = !rootPlayerToMove;
+                }
+            }
+            // the moves of the playout were put in remainingLines from the back to the front, so the first one
+            // removed is the last one drawn
+            for (int i = 0; i < count; i++) {
+                board.undrawLine(remainingLines[i]);
+            }
+            return difference;
+        }
+
+        /**
+         * Chooses the next move of a playout from remainingLines[0] to remainingLines[count - 1]: a move that
+         * completes a box if there is one, otherwise a random safe move, otherwise a random move.
+         *
+         * @param count the number of lines left
+         * @return the index of the move in remainingLines
+         */
+        private int chooseMove(int count) {
+            int start = random.nextInt(count);
+            int safeMove = -1;
+            for (int i = 0; i < count; i++) {
+                // start at a random line, so the safe move that is found first is random too
+                int index = start + i < count ? start + i : start + i - count;
+                int line = remainingLines[index];
+                int first = board.countLines(geometry.getFirstBox(line));
+                int secondBox = geometry.getSecondBox(line);
+                int second = secondBox < 0 ? 0 : board.countLines(secondBox);
+                if (first == 3 || second == 3) {
+                    return index;
+                } else if (safeMove < 0 && first < 2 && second < 2) {
+                    safeMove = index;
+                }
+            }
+            return safeMove >= 0 ? safeMove : start;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package gamelogic.ai;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntSupplier;
+
+/**
+ * A move that is being computed, see Strategy.computeLocationAsync.
+ * A strategy reports the best move it has found so far with offer() and its final move with finish(). When the
+ * deadline passes, the result is completed with the best move so far, so it is never late. Strategies poll
+ * isStopped() to give up when the result is cancelled or the deadline comes close; they are asked to stop a little
+ * before the deadline, so they can still hand in the move they found.
+ * The result is only completed at the deadline if the search is started with run(). A strategy that searches on the
+ * thread of its caller uses a MoveSearch for its deadline alone, and then nothing is scheduled.
+ */
+public final class MoveSearch {
+    // The time before the deadline at which a strategy is asked to stop: a tenth of the time, at most MAX_MARGIN.
+    private static final long MAX_MARGIN = TimeUnit.MILLISECONDS.toNanos(50);
+    // Searches run on daemon threads of their own, so a long search does not hold up the common pool.
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "move-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private final boolean hasDeadline;
+    private final long stopTime; // in System.nanoTime()
+    private final long deadlineTime; // in System.nanoTime()
+    private volatile int bestMove = -1;
+
+    /**
+     * Creates a move search without deadline, which only stops when its result is cancelled.
+     */
+    public MoveSearch() {
+        this.hasDeadline = false;
+        this.stopTime = 0;
+        this.deadlineTime = 0;
+    }
+
+    /**
+     * Creates a move search that has to be done at the deadline. The deadline is only enforced on the result once the
+     * search is started with run(); until then, it only tells isStopped() when to stop.
+     *
+     * @param deadline the moment at which the result is completed with the best move so far.
+     */
+    //@ requires deadline != null;
+    public MoveSearch(Instant deadline) {
+        long remaining;
+        try {
+            remaining = Math.max(0, Duration.between(Instant.now(), deadline).toNanos());
+        } catch (ArithmeticException e) {
+            remaining = Long.MAX_VALUE; // more than 292 years away
+        }
+        // keep the stop time within half the range of nanoTime, so comparing it stays correct
+        remaining = Math.min(remaining, Long.MAX_VALUE / 2);
+        long now = System.nanoTime();
+        this.hasDeadline = true;
+        this.stopTime = now + remaining - Math.min(MAX_MARGIN, remaining / 10);
+        this.deadlineTime = now + remaining;
+    }
+
+    /**
+     * Runs a search on a thread of its own and completes the result with the move it returns. If the search throws
+     * an exception, the result is completed with that exception. If there is a deadline, the result is completed
+     * with the best move so far when it passes.
+     *
+     * @param search the search, which returns its final move.
+     * @return the result of this move search.
+     */
+    public CompletableFuture<Integer> run(IntSupplier search) {
+        if (hasDeadline) {
+            long remaining = Math.max(0, deadlineTime - System.nanoTime());
+            CompletableFuture.delayedExecutor(remaining, TimeUnit.NANOSECONDS).execute(this::expire);
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                finish(search.getAsInt());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Checks whether the search should stop, because its result has been completed or cancelled or its deadline is
+     * close.
+     *
+     * @return true if the search should stop.
+     */
+    public boolean isStopped() {
+        return result.isDone() || hasDeadline && System.nanoTime() - stopTime >= 0;
+    }
+
+    /**
+     * Reports the best move found so far.
+     *
+     * @param move the location of the move.
+     */
+    public void offer(int move) {
+        bestMove = move;
+    }
+
+    /**
+     * Reports the final move of the search and completes the result with it, if it has not been completed yet.
+     *
+     * @param move the location of the move.
+     */
+    public void finish(int move) {
+        bestMove = move;
+        result.complete(move);
+    }
+
+    /**
+     * Gets the best move reported so far.
+     *
+     * @return the location of the move, or -1 if no move has been reported yet.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Gets the result of the search, which completes with the final move or, at the deadline, with the best move so
+     * far. Cancelling the result stops the search.
+     *
+     * @return the result of the search.
+     */
+    public CompletableFuture<Integer> getResult() {
+        return result;
+    }
+
+    private void expire() {
+        int move = bestMove;
+        if (move >= 0) {
+            result.complete(move);
+        } else {
+            result.completeExceptionally(new TimeoutException("No move was found before the deadline"));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package gamelogic.ai;
+
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.BoardGeometry;
+import gamelogic.model.DotsAndBoxesGame;
+import gamelogic.model.Mark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A precomputed book of opening moves, in a read-only file that is memory-mapped, so all processes on a host that
+ * use the same book share its pages in the page cache.
+ * The book maps the canonical hash of a position, see DotsAndBoxesGame.canonicalPositionHash, to the best move in the
+ * orientation of that hash. A lookup finds the symmetry that gives the canonical hash, probes the table with it and
+ * maps the move back to the orientation of the game, so it takes constant time for the few lines of an opening and
+ * does not allocate.
+ * The file holds MAGIC, VERSION, the rows and columns of the board and the number of slots, a power of two, as ints.
+ * The slots follow from HEADER_SIZE on. A slot is SLOT_SIZE bytes: the hash as a long, 0 for an empty slot, and the
+ * move as an int. A hash is stored in the first empty slot from hash & (slots - 1) on, and at most half of the slots
+ * are used, so a lookup stops at an empty slot soon. A lookup still stops after probing every slot, and ignores a move
+ * that is not a line of the board, so a damaged book cannot make it spin or throw.
+ * A book is searched once, with build, so a strategy can take its time for every position of the book.
+ */
+public final class OpeningBook {
+    /**
+     * The first int of a book.
+     */
+    public static final int MAGIC = 0x44424f42; // "DBOB"
+    /**
+     * The version of the format, the second int of a book.
+     */
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_SLOTS = 16;
+
+    private final MappedByteBuffer book;
+    private final BoardGeometry geometry;
+    private final int slotMask;
+
+    /**
+     * Maps a book file into memory.
+     *
+     * @param path the path of the book.
+     * @throws IOException if the book cannot be read, or is not a book.
+     */
+    public OpeningBook(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            book = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (book.limit() < HEADER_SIZE || book.getInt(0) != MAGIC || book.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book of version " + VERSION);
+        }
+        int rows = book.getInt(8);
+        int columns = book.getInt(12);
+        int slots = book.getInt(16);
+        if (rows <= 0 || columns <= 0 || slots <= 0 || Integer.bitCount(slots) != 1
+                || book.limit() != HEADER_SIZE + (long) slots * SLOT_SIZE) {
+            throw new IOException("The opening book is corrupt");
+        }
+        geometry = BoardGeometry.of(rows, columns);
+        slotMask = slots - 1;
+    }
+
+    /**
+     * Gets the size of the board of the book.
+     *
+     * @return the geometry of the positions in the book.
+     */
+    //@ pure
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Looks up the move for the position of a game. Does not allocate, and is safe to call from many threads.
+     *
+     * @param game the game.
+     * @return the location of the move, or -1 if the position is not in the book.
+     */
+    //@ requires game != null;
+    //@ ensures \result == -1 || game.isValidLocation(\result);
+    //@ pure
+    public int lookup(DotsAndBoxesGame game) {
+        if (game.board.getGeometry() != geometry) {
+            return -1;
+        }
+        long canonical = game.positionHash();
+        int symmetry = 0;
+        for (int s = 1; s < geometry.getNrOfSymmetries(); s++) {
+            long hash = game.symmetricPositionHash(s);
+            if (hash < canonical) {
+                canonical = hash;
+                symmetry = s;
+            }
+        }
+        if (canonical == 0) {
+            return -1; // 0 marks an empty slot
+        }
+        int slot = (int) canonical & slotMask;
+        for (int probes = 0; probes <= slotMask; probes++) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            long hash = book.getLong(offset);
+            if (hash == 0) {
+                return -1;
+            }
+            if (hash == canonical) {
+                int stored = book.getInt(offset + 8);
+                if (stored < 0 || stored >= geometry.getNrOfLines()) {
+                    return -1; // the book is damaged
+                }
+                int move = geometry.inverseTransformLine(symmetry, stored);
+                return game.isValidLocation(move) ? move : -1; // -1 for another position with the same hash
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1; // every slot is used, which build never does
+    }
+
+    /**
+     * Builds a book with the moves of a strategy for every position that can be reached in the first plies moves,
+     * one position per canonical hash, and writes it to a file.
+     *
+     * @param path     the path of the book.
+     * @param geometry the size of the board.
+     * @param plies    the number of moves after which the book ends.
+     * @param strategy the strategy that computes the moves of the book.
+     * @return the number of positions in the book.
+     * @throws IOException if the book cannot be written.
+     */
+    //@ requires path != null && geometry != null && plies >= 0 && strategy != null;
+    public static int build(Path path, BoardGeometry geometry, int plies, Strategy strategy) throws IOException {
+        DotsAndBoxesGame game = new DotsAndBoxesGame(new BasicPlayer("1", Mark.X), new BasicPlayer("2", Mark.O),
+                geometry);
+        Map<Long, Integer> moves = new HashMap<>();
+        explore(game, plies, strategy, moves);
+        int slots = MIN_SLOTS;
+        while (slots < 2 * moves.size()) {
+            slots *= 2;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + slots * SLOT_SIZE);
+        bytes.putInt(MAGIC).putInt(VERSION).putInt(geometry.getRows()).putInt(geometry.getColumns()).putInt(slots);
+        for (Map.Entry<Long, Integer> entry : moves.entrySet()) {
+            long hash = entry.getKey();
+            int slot = (int) hash & (slots - 1);
+            while (bytes.getLong(HEADER_SIZE + slot * SLOT_SIZE) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            bytes.putLong(HEADER_SIZE + slot * SLOT_SIZE, hash).putInt(HEADER_SIZE + slot * SLOT_SIZE + 8,
+                    entry.getValue());
+        }
+        bytes.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        return moves.size();
+    }
+
+    /**
+     * Adds the move of the strategy for the position of the game and, recursively, for the positions after every
+     * move, until the plies run out. A position that is already in the book in another orientation is skipped.
+     *
+     * @param game     the game, which is restored before returning.
+     * @param plies    the number of moves that are left.
+     * @param strategy the strategy that computes the moves.
+     * @param moves    the moves of the book so far, in canonical orientation, by canonical hash.
+     */
+    private static void explore(DotsAndBoxesGame game, int plies, Strategy strategy, Map<Long, Integer> moves) {
+        if (plies == 0 || game.isGameOver()) {
+            return;
+        }
+        BoardGeometry geometry = game.board.getGeometry();
+        long canonical = game.positionHash();
+        int symmetry = 0;
+        for (int s = 1; s < geometry.getNrOfSymmetries(); s++) {
+            long hash = game.symmetricPositionHash(s);
+            if (hash < canonical) {
+                canonical = hash;
+                symmetry = s;
+            }
+        }
+        if (canonical == 0 || moves.containsKey(canonical)) {
+            return;
+        }
+        int move = strategy.computeLocation(game.deepCopy());
+        moves.put(canonical, geometry.transformLine(symmetry, move));
+        for (int location = 0; location < geometry.getNrOfLines(); location++) {
+            if (game.isValidLocation(location)) {
+                game.makeMove(location);
+                explore(game, plies - 1, strategy, moves);
+                game.unmakeMove();
+            }
+        }
+    }
+
+    /**
+     * Builds a book with the alpha-beta strategy.
+     * The arguments are the path of the book, the rows and columns of the board, the number of plies and the time
+     * budget of a move in milliseconds, e.g. "opening.book 5 5 3 2000".
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.out.println("Usage: OpeningBook <path> <rows> <columns> <plies> <milliseconds per move>");
+            return;
+        }
+        BoardGeometry geometry = BoardGeometry.of(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        Strategy strategy = new AlphaBetaStrategy("Opening book", Long.parseLong(args[4]));
+        int positions = build(Path.of(args[0]), geometry, Integer.parseInt(args[3]), strategy);
+        System.out.println("Wrote " + positions + " positions to " + args[0]);
+    }
+}
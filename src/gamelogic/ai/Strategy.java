@@ -2,6 +2,10 @@ package gamelogic.ai;
 
 import gamelogic.model.DotsAndBoxesGame;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface that represents a strategy.
  */
@@ -29,4 +33,30 @@ public interface Strategy {
         pure
     */
     int computeLocation(DotsAndBoxesGame game);
+
+    /**
+     * Method that computes a valid line on another thread, given the current state of the game.
+     * The future completes with the best line found before the deadline, and cancelling it stops the computation.
+     * The computation works on a copy of the game, so the game can go on while it runs.
+     * By default, the first valid line is the best line until computeLocation has finished; strategies that search
+     * for longer override this to report better lines as they find them, see MoveSearch.
+     *
+     * @param game     that is currently being played
+     * @param deadline the moment at which a line must be known
+     * @return the future line
+     */
+    /*@
+        requires game != null && deadline != null;
+        ensures \result != null;
+    */
+    default CompletableFuture<Integer> computeLocationAsync(DotsAndBoxesGame game, Instant deadline) {
+        DotsAndBoxesGame copy = game.deepCopy();
+        List<Integer> validLocations = copy.getValidLocations();
+        if (validLocations.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The game is over"));
+        }
+        MoveSearch search = new MoveSearch(deadline);
+        search.offer(validLocations.get(0));
+        return search.run(() -> computeLocation(copy));
+    }
 }
@@ -3,59 +3,150 @@ package gamelogic.model;
 import gamelogic.exceptions.InvalidMoveException;
 import gamelogic.exceptions.NonexistentBoxException;
 
-import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Board of the Dots and Boxes game.
+ * The board has rows x columns boxes; the index math of its lines and boxes comes from a BoardGeometry that is
+ * shared by all boards of the same size. The default board has DIM x DIM boxes.
+ * The lines of the board are kept in bitsets, where bit i stands for line i, and the boxes in a counter of drawn
+ * sides and an owner per box. This keeps a board down to a few small arrays instead of an object per line and per box.
  */
 public class Board {
     public static final int DIM = 5;
-    private /*@ spec_public */ Box[] boxes = new Box[DIM * DIM];
-    private /*@ spec_public */ Mark[] marks;
-    private /*@ spec_public */ Line[] lines = new Line[calculateNrOfLines(DIM)];
+    private final BoardGeometry geometry;
+    private final int nrOfLines;
+    // The tables of the geometry that are used on every move, cached to keep drawing a line cheap.
+    private final int[] lineBoxes;
+    private final long[] lineKeys;
+    private final /*@ spec_public */ long[] lines;        // bit i is set if line i is drawn
+    private final /*@ spec_public */ long[] marksX;       // bit i is set if line i has mark X
+    private final /*@ spec_public */ long[] marksO;       // bit i is set if line i has mark O
+    // The owner of each box: 0 if the box has no owner, otherwise 1 + the index of the owner in owners.
+    private final /*@ spec_public */ byte[] boxOwners;
+    private final /*@ spec_public */ byte[] boxSides;     // the number of drawn lines of each box
+    private /*@ spec_public */ int nrOfDrawnLines;
+    private long hash; // Zobrist hash of the drawn lines, see Zobrist
+    // The (at most two) players that own boxes on this board.
+    private final BasicPlayer[] owners = new BasicPlayer[2];
+    private Box[] boxes; // created when they are first asked for
     private BoardVisualization boardVisualization;
     /*@
-     public invariant lines.length == calculateNrOfLines(DIM);
-     public invariant (\num_of int i; 0 <= i && i < lines.length; (lines[i] != null)) <= calculateNrOfLines(DIM);
-     public invariant (\num_of int i; 0 <= i && i < boxes.length; (boxes[i].getOwner() != null)) <= DIM * DIM;
-     public invariant (\num_of int i; 0 <= i && i < lines.length; (marks[i] == Mark.O)) <= calculateNrOfLines(DIM) / 2;
-     public invariant (\num_of int i; 0 <= i && i < lines.length; (marks[i] == Mark.X)) <= calculateNrOfLines(DIM) / 2;
+     public invariant nrOfDrawnLines >= 0 && nrOfDrawnLines <= getNrOfLines();
+     public invariant (\forall int b; b >= 0 && b < boxSides.length; boxSides[b] >= 0 && boxSides[b] <= 4);
      @*/
 
     // -- Constructor -----------------------------------------------
 
     /**
-     * Creates an empty board.
+     * Creates an empty DIM x DIM board.
      */
-    //@ ensures (\forall int i; (i >= 0 && i < lines.length); lines[i] == null);
-    //@ ensures (\forall int i; (i >= 0 && i < boxes.length); boxes[i].getOwner() == null);
+    //@ ensures isEmpty();
     public Board() {
-        marks = new Mark[calculateNrOfLines(DIM)];
-        Arrays.fill(marks, Mark.EMPTY);
-        for (int i = 0; i < boxes.length; i++) {
-            boxes[i] = new Box(i);
-        }
-        boardVisualization = new BoardVisualization(this);
-        this.setBoardVisualization(boardVisualization);
+        this(BoardGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates an empty board of rows x columns boxes.
+     *
+     * @param rows    the number of rows of boxes.
+     * @param columns the number of columns of boxes.
+     */
+    //@ requires rows > 0 && columns > 0;
+    //@ ensures isEmpty();
+    public Board(int rows, int columns) {
+        this(BoardGeometry.of(rows, columns));
+    }
+
+    /**
+     * Creates an empty board with the given geometry.
+     *
+     * @param geometry the size of the board and its lookup tables.
+     */
+    //@ requires geometry != null;
+    //@ ensures isEmpty();
+    public Board(BoardGeometry geometry) {
+        this.geometry = geometry;
+        this.nrOfLines = geometry.getNrOfLines();
+        this.lineBoxes = geometry.getLineBoxes();
+        this.lineKeys = geometry.getZobrist().getLineKeys();
+        int lineWords = (nrOfLines + Long.SIZE - 1) / Long.SIZE;
+        lines = new long[lineWords];
+        marksX = new long[lineWords];
+        marksO = new long[lineWords];
+        boxOwners = new byte[geometry.getNrOfBoxes()];
+        boxSides = new byte[geometry.getNrOfBoxes()];
     }
 
     // -- Methods -----------------------------------------------
 
+    /**
+     * Gets the geometry of the board, i.e., its size and the lookup tables for lines and boxes.
+     *
+     * @return the geometry of the board.
+     */
+    //@ pure
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Gets the number of lines of the board.
+     *
+     * @return the number of lines.
+     */
+    //@ pure
+    public int getNrOfLines() {
+        return nrOfLines;
+    }
+
+    /**
+     * Gets the number of lines that have been drawn on the board.
+     *
+     * @return the number of drawn lines.
+     */
+    //@ ensures \result >= 0 && \result <= getNrOfLines();
+    //@ pure
+    public int getNrOfDrawnLines() {
+        return nrOfDrawnLines;
+    }
+
+    /**
+     * Gets the number of boxes of the board.
+     *
+     * @return the number of boxes.
+     */
+    //@ pure
+    public int getNrOfBoxes() {
+        return geometry.getNrOfBoxes();
+    }
+
     /**
      * Retrieves the boxes of the board.
+     * The boxes are views on the board: their lines and owner are read from and written to the board.
      *
      * @return the array of boxes.
      */
     public Box[] getBoxes() {
+        if (boxes == null) {
+            boxes = new Box[geometry.getNrOfBoxes()];
+            for (int i = 0; i < boxes.length; i++) {
+                boxes[i] = new Box(i, this);
+            }
+        }
         return this.boxes;
     }
 
     /**
      * Retrieves the marks of the board.
      *
-     * @return the array of marks.
+     * @return a new array with the mark of every line.
      */
     public Mark[] getMarks() {
+        Mark[] marks = new Mark[nrOfLines];
+        for (int i = 0; i < marks.length; i++) {
+            marks[i] = getMark(i);
+        }
         return marks;
     }
 
@@ -79,33 +170,13 @@ public class Board {
 
     /**
      * Associates the lines with the boxes.
-     * There are 25 boxes and 60 lines, and this method associates 4 lines with each box.
-     * For example, box 0 has lines 0, 5, 6, 11; box 1 has lines 1, 6, 7, 12;box 2 has lines 2, 7, 8, 13; etc.
+     * The lines of a box are now derived from the lines drawn on the board, so there is nothing left to associate.
+     *
+     * @deprecated the boxes of a board always reflect the drawn lines.
      */
+    @Deprecated
     public void associateLinesWithBoxes() {
-        int counter = 0;
-        for (int i = 0; i < DIM; i++) {
-            for (int j = 0; j < DIM; j++) { // splits the boxes into a 5 by 5 grid of indices.
-                /*
-                Explanation:
-                Each box should have 4 lines associated with it as follows:
-                    - the top line is at the index x
-                    - the left line is at the index x + DIM (5)
-                    - the right line is at the index x + DIM + 1 (6)
-                    - and the bottom line is at the index x + 2 * DIM + 1 (11)
-                    - Abstractly, x is 2 * the row of the box + the column of the box +
-                    a counter. The counter is necessary because per row there are DIM horizontal lines
-                                                                              and DIM + 1 vertical lines.
-                */
-                Line[] fourLines = new Line[4];
-                fourLines[0] = lines[2 * i * DIM + j + counter];
-                fourLines[1] = lines[2 * i * DIM + j + counter + DIM];
-                fourLines[2] = lines[2 * i * DIM + j + counter + DIM + 1];
-                fourLines[3] = lines[2 * i * DIM + j + counter + 2 * DIM + 1];
-                boxes[i * DIM + j].setLines(fourLines);
-            }
-            counter++;
-        }
+        // nothing to do, see Box#getLines()
     }
 
     /**
@@ -128,28 +199,19 @@ public class Board {
      * Performs a deep copy of the board, with all its fields.
      */
     //@ ensures \result != this;
-    //@ ensures (\forall int i; (i >= 0 && i < lines.length); \result.lines[i] != this.lines[i]);
-    //@ ensures (\forall int i; (i >= 0 && i < boxes.length); \result.boxes[i] != this.boxes[i]);
-    //@ ensures (\forall int i; (i >= 0 && i < marks.length); \result.marks[i] != this.marks[i]);
+    //@ ensures \result.getGeometry() == getGeometry();
     //@ pure
     public Board deepCopy() {
-        Line[] copiedLines = new Line[lines.length];
-        Box[] copiedBoxes = new Box[boxes.length];
-        Mark[] copiedMarks = new Mark[marks.length];
-        for (int i = 0; i < copiedLines.length; i++) {
-            if (lines[i] != null) {
-                copiedLines[i] = new Line(lines[i].getLocation());
-            }
-        }
-        for (int i = 0; i < copiedBoxes.length; i++) {
-            if (boxes[i] != null) {
-                copiedBoxes[i] = new Box(i);
-            }
-        }
-        Board copyBoard = new Board();
-        copyBoard.lines = copiedLines;
-        copyBoard.boxes = copiedBoxes;
-        copyBoard.marks = copiedMarks;
+        Board copyBoard = new Board(geometry);
+        System.arraycopy(lines, 0, copyBoard.lines, 0, lines.length);
+        System.arraycopy(marksX, 0, copyBoard.marksX, 0, marksX.length);
+        System.arraycopy(marksO, 0, copyBoard.marksO, 0, marksO.length);
+        System.arraycopy(boxOwners, 0, copyBoard.boxOwners, 0, boxOwners.length);
+        System.arraycopy(boxSides, 0, copyBoard.boxSides, 0, boxSides.length);
+        copyBoard.nrOfDrawnLines = nrOfDrawnLines;
+        copyBoard.hash = hash;
+        copyBoard.owners[0] = owners[0];
+        copyBoard.owners[1] = owners[1];
         return copyBoard;
     }
 
@@ -160,7 +222,7 @@ public class Board {
      */
     //@ pure
     public boolean isField(int index) {
-        return index >= 0 && index < lines.length;
+        return index >= 0 && index < nrOfLines;
     }
 
     /**
@@ -170,13 +232,12 @@ public class Board {
      * @throws InvalidMoveException if the index is not valid.
      */
     //@ requires isField(index);
-    //@ ensures (lines[index] != null) ==> \result == true;
-    //@ ensures (lines[index] == null) ==> \result == false;
+    //@ ensures \result == (getLine(index) != null);
     public boolean isLine(int index) throws InvalidMoveException {
         if (!isField(index)) {
             throw new InvalidMoveException();
         }
-        return lines[index] != null;
+        return isSet(lines, index);
     }
 
     /**
@@ -185,36 +246,142 @@ public class Board {
      * @param index of the mark, corresponding with the line.
      * @param mark  the mark at that specific location.
      */
+    //@ requires isField(index);
     public void setMark(int index, Mark mark) {
-        marks[index] = mark;
+        Objects.checkIndex(index, nrOfLines);
+        if (mark == Mark.X) {
+            set(marksX, index);
+            clear(marksO, index);
+        } else if (mark == Mark.O) {
+            set(marksO, index);
+            clear(marksX, index);
+        } else {
+            clear(marksX, index);
+            clear(marksO, index);
+        }
     }
 
     /**
      * Draws a line at a specific index.
-     * It also associates the line with the boxes every time a line is drawn.
+     * Only the one or two boxes next to the line are checked for completion.
      *
      * @param l the line to be drawn.
+     * @return the number of boxes (0, 1 or 2) that are completed by this line; 0 if the line was already drawn.
      */
     //@ requires l != null;
     //@ requires isField(l.getLocation());
-    // ensures that each lines is associated with a certain box.
-    //@ ensures ((\forall int i; (i >= 0 && i < boxes.length); (\exists int j ; j >= 0 && j <= boxes[i].getLines().length; boxes[i].getLines()[j] == l)));
-    public void drawLine(Line l) {
-        //every time a line is drawn, a new line object (constructed with the caller) will be passed as parameter.
-        //and the line object will be added to the lines array at the index of the location of the line
-        lines[l.getLocation()] = l;
-        associateLinesWithBoxes(); //important to do this after drawing a line.
+    //@ ensures getLine(l.getLocation()) != null;
+    public int drawLine(Line l) {
+        return drawLine(l.getLocation());
+    }
+
+    /**
+     * Draws the line at a specific index, see drawLine(Line).
+     *
+     * @param location the index of the line to be drawn.
+     * @return the number of boxes (0, 1 or 2) that are completed by this line; 0 if the line was already drawn.
+     */
+    //@ requires isField(location);
+    //@ ensures getLine(location) != null;
+    public int drawLine(int location) {
+        return Math.max(drawLine(location, null), 0);
+    }
+
+    /**
+     * Draws the line at a specific index for a player: the line gets the mark of the player and the player becomes
+     * the owner of the boxes the line completes.
+     *
+     * @param location the index of the line to be drawn.
+     * @param owner    the player who draws the line, or null to leave the line without mark and the completed boxes
+     *                 without owner.
+     * @return the number of boxes (0, 1 or 2) that are completed by this line; -1 if the line was already drawn.
+     */
+    //@ requires isField(location);
+    //@ ensures getLine(location) != null;
+    int drawLine(int location, BasicPlayer owner) {
+        Objects.checkIndex(location, nrOfLines);
+        if (isSet(lines, location)) {
+            return -1;
+        }
+        set(lines, location);
+        if (owner != null && owner.getMark() != Mark.EMPTY) {
+            set(owner.getMark() == Mark.X ? marksX : marksO, location);
+        }
+        nrOfDrawnLines++;
+        hash ^= lineKeys[location];
+        byte ownerSlot = owner == null ? 0 : ownerSlot(owner);
+        int completed = 0;
+        int box = lineBoxes[2 * location];
+        if (++boxSides[box] == 4) {
+            completed++;
+            boxOwners[box] = ownerSlot;
+        }
+        box = lineBoxes[2 * location + 1];
+        if (box >= 0 && ++boxSides[box] == 4) {
+            completed++;
+            boxOwners[box] = ownerSlot;
+        }
+        return completed;
+    }
+
+    /**
+     * Removes a drawn line, together with its mark and the owners of the boxes it completed, which are incomplete
+     * again. Any drawn line can be removed; the other lines and boxes keep their state. This is the inverse of drawing
+     * the line, used to unmake a move or to take back a move in a search. To get back the exact state before a
+     * series of moves, e.g. the owners of the boxes, the lines are removed in the reverse order of drawing, as
+     * DotsAndBoxesGame.unmakeMove does.
+     *
+     * @param location the location of the line.
+     * @return the number of boxes that were completed by the line.
+     * @throws IllegalArgumentException if the line has not been drawn.
+     */
+    //@ requires isField(location) && getLine(location) != null;
+    //@ ensures getLine(location) == null;
+    public int undrawLine(int location) {
+        if (!isDrawn(location)) {
+            throw new IllegalArgumentException("Line " + location + " has not been drawn");
+        }
+        clear(lines, location);
+        clear(marksX, location);
+        clear(marksO, location);
+        nrOfDrawnLines--;
+        hash ^= lineKeys[location];
+        int uncompleted = 0;
+        int box = lineBoxes[2 * location];
+        if (boxSides[box]-- == 4) {
+            uncompleted++;
+            boxOwners[box] = 0;
+        }
+        box = lineBoxes[2 * location + 1];
+        if (box >= 0 && boxSides[box]-- == 4) {
+            uncompleted++;
+            boxOwners[box] = 0;
+        }
+        return uncompleted;
     }
 
     /**
      * Query for getting a line at a specific index.
      *
      * @param index of the line to be retrieved.
-     * @return the line.
+     * @return the line, or null if the line has not been drawn yet.
      */
     //@ requires isField(index);
     public Line getLine(int index) {
-        return lines[index];
+        Line line = geometry.getLine(index);
+        return isSet(lines, index) ? line : null;
+    }
+
+    /**
+     * Checks whether the line at a specific index has been drawn, like isLine but without a checked exception.
+     *
+     * @param index of the line.
+     * @return true if the line has been drawn.
+     */
+    //@ requires isField(index);
+    //@ pure
+    boolean isDrawn(int index) {
+        return isSet(lines, Objects.checkIndex(index, nrOfLines));
     }
 
     /**
@@ -225,7 +392,47 @@ public class Board {
      */
     //@ requires isField(index);
     public Mark getMark(int index) {
-        return marks[index];
+        Objects.checkIndex(index, nrOfLines);
+        if (isSet(marksX, index)) {
+            return Mark.X;
+        } else if (isSet(marksO, index)) {
+            return Mark.O;
+        }
+        return Mark.EMPTY;
+    }
+
+    /**
+     * Gets the Zobrist hash of the drawn lines. It is updated with every line that is drawn or removed.
+     *
+     * @return the hash of the lines on the board; 0 for an empty board.
+     */
+    //@ pure
+    public long positionHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the Zobrist hash that the drawn lines would have after a symmetry of the board, see BoardGeometry. The
+     * smallest of these hashes identifies the position regardless of its orientation. Unlike positionHash, it is
+     * computed from the drawn lines, so it takes longer as more lines are drawn; it does not allocate.
+     *
+     * @param symmetry the symmetry, from 0 to getGeometry().getNrOfSymmetries() - 1.
+     * @return the hash of the transformed lines; positionHash() for symmetry 0.
+     */
+    //@ requires symmetry >= 0 && symmetry < getGeometry().getNrOfSymmetries();
+    //@ ensures symmetry == 0 ==> \result == positionHash();
+    //@ pure
+    public long symmetricHash(int symmetry) {
+        long symmetricHash = 0;
+        for (int word = 0; word < lines.length; word++) {
+            long bits = lines[word];
+            while (bits != 0) {
+                int location = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                symmetricHash ^= lineKeys[geometry.transformLine(symmetry, location)];
+                bits &= bits - 1;
+            }
+        }
+        return symmetricHash;
     }
 
     /**
@@ -233,15 +440,9 @@ public class Board {
      *
      * @return the full condition of the board.
      */
-    //@ ensures (\forall int i; (i >= 0 && i < lines.length); lines[i] != null) ==> \result == true;
-    //@ ensures (\exists int i; (i >= 0 && i < lines.length); lines[i] == null) ==> \result == false;
+    //@ ensures \result == (nrOfDrawnLines == getNrOfLines());
     public boolean isFull() {
-        for (Line line : lines) {
-            if (line == null) {
-                return false;
-            }
-        }
-        return true;
+        return nrOfDrawnLines == nrOfLines;
     }
 
     /**
@@ -249,15 +450,9 @@ public class Board {
      *
      * @return the empty condition of the board.
      */
-    //@ ensures (\forall int i; (i >= 0 && i < lines.length); lines[i] == null) ==> \result == true;
-    //@ ensures (\exists int i; (i >= 0 && i < lines.length); lines[i] != null) ==> \result == false;
+    //@ ensures \result == (nrOfDrawnLines == 0);
     public boolean isEmpty() {
-        for (Line line : lines) {
-            if (line != null) {
-                return false;
-            }
-        }
-        return true;
+        return nrOfDrawnLines == 0;
     }
 
     /**
@@ -266,36 +461,145 @@ public class Board {
      * @param boxIndex the index of the box.
      * @throws NonexistentBoxException if the index of the box is not valid.
      */
-    //@ requires isField(boxIndex);
-    //@ ensures boxes[boxIndex].isComplete() ==> \result == true;
+    //@ requires boxIndex >= 0 && boxIndex < getNrOfBoxes();
+    //@ ensures isBoxComplete(boxIndex) ==> \result == true;
     public boolean determineBox(int boxIndex) throws NonexistentBoxException {
-        if (boxIndex < 0 || boxIndex >= boxes.length) {
+        if (boxIndex < 0 || boxIndex >= geometry.getNrOfBoxes()) {
             throw new NonexistentBoxException(); // in case the box does not exist
         }
-        return boxes[boxIndex].isComplete();
+        return isBoxComplete(boxIndex);
+    }
+
+    /**
+     * Counts the lines of a box that have been drawn.
+     *
+     * @param boxIndex the index of the box.
+     * @return the number of drawn lines of the box, between 0 and 4.
+     */
+    //@ requires boxIndex >= 0 && boxIndex < getNrOfBoxes();
+    //@ ensures \result >= 0 && \result <= 4;
+    //@ pure
+    public int countLines(int boxIndex) {
+        return boxSides[boxIndex];
+    }
+
+    /**
+     * Checks if all 4 lines of a box are drawn, without validating the index.
+     *
+     * @param boxIndex the index of the box.
+     * @return true if the box is complete.
+     */
+    //@ pure
+    boolean isBoxComplete(int boxIndex) {
+        return boxSides[boxIndex] == 4;
+    }
+
+    /**
+     * Retrieves the 4 lines of a box, in the order top, left, right, bottom.
+     *
+     * @param boxIndex the index of the box.
+     * @return a new array of lines. Note: the elements can be null (if a line has not been drawn yet).
+     */
+    Line[] getBoxLines(int boxIndex) {
+        Line[] boxLines = new Line[4];
+        for (int i = 0; i < 4; i++) {
+            boxLines[i] = getLine(geometry.getBoxLine(boxIndex, i));
+        }
+        return boxLines;
+    }
+
+    /**
+     * Gets the owner of a box.
+     *
+     * @param boxIndex the index of the box.
+     * @return the owner, or null if the box has no owner.
+     */
+    //@ pure
+    BasicPlayer getBoxOwner(int boxIndex) {
+        int slot = boxOwners[boxIndex];
+        return slot == 0 ? null : owners[slot - 1];
+    }
+
+    /**
+     * Sets the owner of a box.
+     * A board keeps track of at most two distinct owners, one for each player of the game.
+     *
+     * @param boxIndex the index of the box.
+     * @param owner    the new owner, or null to clear the owner.
+     */
+    //@ requires boxIndex >= 0 && boxIndex < getNrOfBoxes();
+    void setBoxOwner(int boxIndex, BasicPlayer owner) {
+        boxOwners[boxIndex] = owner == null ? 0 : ownerSlot(owner);
+    }
+
+    /**
+     * Gets the value that marks a box as owned by a player in boxOwners, registering the player as one of the two
+     * owners of the board if it is not known yet.
+     *
+     * @param owner the player.
+     * @return 1 for the first owner of the board, 2 for the second one.
+     * @throws IllegalArgumentException if the board already has two other owners.
+     */
+    private byte ownerSlot(BasicPlayer owner) {
+        if (owner == owners[0]) {
+            return 1;
+        } else if (owner == owners[1]) {
+            return 2;
+        } else if (owners[0] == null) {
+            owners[0] = owner;
+            return 1;
+        } else if (owners[1] == null) {
+            owners[1] = owner;
+            return 2;
+        }
+        throw new IllegalArgumentException("A board can only have two box owners");
     }
 
     /**
      * Resets the board to its initial state, e.g. no lines, no marks, no box owners.
      */
-    //@ ensures (\forall int i; (i >= 0 && i < lines.length); lines[i] == null);
-    //@ ensures (\forall int i; (i >= 0 && i < marks.length); marks[i] == Mark.EMPTY);
-    //@ ensures (\forall int i; (i >= 0 && i < boxes.length); boxes[i].getOwner() == null);
+    //@ ensures isEmpty();
+    //@ ensures (\forall int b; b >= 0 && b < getNrOfBoxes(); getBoxOwner(b) == null);
     public void reset() {
-        Arrays.fill(marks, Mark.EMPTY);
-        Arrays.fill(lines, null);
-        for (Box box : boxes) {
-            box.setOwner(null);
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = 0;
+            marksX[i] = 0;
+            marksO[i] = 0;
         }
+        for (int i = 0; i < boxSides.length; i++) {
+            boxSides[i] = 0;
+            boxOwners[i] = 0;
+        }
+        nrOfDrawnLines = 0;
+        hash = 0;
+        owners[0] = null;
+        owners[1] = null;
     }
 
     /**
      * Displays the board in the TUI.
+     * The board visualization is only created when the board is displayed for the first time.
      *
      * @return a string of the board;
      */
     public String toString() {
+        if (boardVisualization == null) {
+            boardVisualization = new BoardVisualization(this);
+        }
         return boardVisualization.toString();
     }
 
+    // -- Bitsets -----------------------------------------------
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
 }
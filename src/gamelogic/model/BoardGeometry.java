@@ -0,0 +1,328 @@
+package gamelogic.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shape of a board of rows x columns boxes, with the lookup tables for the index math of lines and boxes.
+ * The tables are built once per size and shared by all boards of that size, see of(int, int).
+ * Lines are numbered row by row: per row of boxes, first the columns horizontal lines above the boxes, then the
+ * columns + 1 vertical lines next to them. The last columns lines are the horizontal lines below the last row.
+ * The symmetries of the board map every line to a line: a rectangle has 4 symmetries (the identity, the two mirrors
+ * and the half turn), a square also has the quarter turns and the mirrors in its diagonals. Symmetry 0 is the identity.
+ */
+public final class BoardGeometry {
+    private static final Map<Long, BoardGeometry> GEOMETRIES = new ConcurrentHashMap<>();
+    /**
+     * The geometry of the default DIM x DIM board.
+     */
+    public static final BoardGeometry DEFAULT = of(Board.DIM, Board.DIM);
+
+    private final int rows;
+    private final int columns;
+    private final int nrOfLines;
+    private final int nrOfBoxes;
+    // The 4 lines of box b are at 4 * b + side, with side 0 = top, 1 = left, 2 = right, 3 = bottom.
+    private final int[] boxLines;
+    // The boxes next to line l are at 2 * l and 2 * l + 1. A line on the edge of the board has -1 as second box.
+    private final int[] lineBoxes;
+    // Lines are immutable, so one instance per location is shared by all boards of this size.
+    private final Line[] lines;
+    private final Zobrist zobrist;
+    private final int nrOfSymmetries;
+    // Symmetry s maps line l to symmetries[s * nrOfLines + l], and inverseSymmetries maps it back.
+    private final int[] symmetries;
+    private final int[] inverseSymmetries;
+
+    private BoardGeometry(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.nrOfLines = 2 * rows * columns + rows + columns;
+        this.nrOfBoxes = rows * columns;
+        this.boxLines = new int[4 * nrOfBoxes];
+        this.lineBoxes = new int[2 * nrOfLines];
+        this.lines = new Line[nrOfLines];
+        Arrays.fill(lineBoxes, -1);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                /*
+                Explanation:
+                Each box has 4 lines associated with it as follows:
+                    - the top line is at the index x
+                    - the left line is at the index x + columns
+                    - the right line is at the index x + columns + 1
+                    - and the bottom line is at the index x + 2 * columns + 1
+                    - x is (2 * columns + 1) * the row of the box + the column of the box, because
+                    per row there are columns horizontal lines and columns + 1 vertical lines.
+                */
+                int box = i * columns + j;
+                int top = i * (2 * columns + 1) + j;
+                boxLines[4 * box] = top;
+                boxLines[4 * box + 1] = top + columns;
+                boxLines[4 * box + 2] = top + columns + 1;
+                boxLines[4 * box + 3] = top + 2 * columns + 1;
+                for (int side = 0; side < 4; side++) {
+                    int line = boxLines[4 * box + side];
+                    // the box above or to the left of a line is visited first
+                    lineBoxes[lineBoxes[2 * line] < 0 ? 2 * line : 2 * line + 1] = box;
+                }
+            }
+        }
+        for (int i = 0; i < nrOfLines; i++) {
+            lines[i] = new Line(i);
+        }
+        this.zobrist = new Zobrist(nrOfLines, nrOfBoxes, ((long) rows << 32) | columns);
+        this.nrOfSymmetries = rows == columns ? 8 : 4;
+        this.symmetries = new int[nrOfSymmetries * nrOfLines];
+        this.inverseSymmetries = new int[nrOfSymmetries * nrOfLines];
+        for (int s = 0; s < nrOfSymmetries; s++) {
+            for (int line = 0; line < nrOfLines; line++) {
+                int image = transform(s, line);
+                symmetries[s * nrOfLines + line] = image;
+                inverseSymmetries[s * nrOfLines + image] = line;
+            }
+        }
+    }
+
+    /**
+     * Computes the image of a line under a symmetry, by mapping the dots at both ends of the line.
+     * A dot is at row r and column c, with 0 <= r <= rows and 0 <= c <= columns.
+     *
+     * @param symmetry the symmetry.
+     * @param line     the location of the line.
+     * @return the location of the image of the line.
+     */
+    private int transform(int symmetry, int line) {
+        int row = line / (2 * columns + 1);
+        int offset = line % (2 * columns + 1);
+        boolean horizontal = offset < columns;
+        int column = horizontal ? offset : offset - columns;
+        int dot1 = transformDot(symmetry, row, column);
+        int dot2 = horizontal ? transformDot(symmetry, row, column + 1) : transformDot(symmetry, row + 1, column);
+        // the dots are packed as row * (columns + 1) + column, so the smaller one is above or left of the other
+        int first = Math.min(dot1, dot2);
+        int firstRow = first / (columns + 1);
+        int firstColumn = first % (columns + 1);
+        boolean imageHorizontal = Math.max(dot1, dot2) == first + 1;
+        return firstRow * (2 * columns + 1) + (imageHorizontal ? firstColumn : columns + firstColumn);
+    }
+
+    /**
+     * Computes the image of a dot under a symmetry.
+     *
+     * @return the image, packed as row * (columns + 1) + column.
+     */
+    private int transformDot(int symmetry, int row, int column) {
+        int r;
+        int c;
+        switch (symmetry) {
+            case 0: // identity
+                r = row;
+                c = column;
+                break;
+            case 1: // mirror in the horizontal axis
+                r = rows - row;
+                c = column;
+                break;
+            case 2: // mirror in the vertical axis
+                r = row;
+                c = columns - column;
+                break;
+            case 3: // half turn
+                r = rows - row;
+                c = columns - column;
+                break;
+            case 4: // mirror in the main diagonal, only for squares like the ones below
+                r = column;
+                c = row;
+                break;
+            case 5: // mirror in the other diagonal
+                r = columns - column;
+                c = rows - row;
+                break;
+            case 6: // quarter turn
+                r = column;
+                c = rows - row;
+                break;
+            default: // quarter turn the other way
+                r = columns - column;
+                c = row;
+                break;
+        }
+        return r * (columns + 1) + c;
+    }
+
+    /**
+     * Gets the geometry of a board of the given size. Geometries are cached, so the tables of a size are only built
+     * the first time the size is used.
+     *
+     * @param rows    the number of rows of boxes.
+     * @param columns the number of columns of boxes.
+     * @return the geometry of the board.
+     * @throws IllegalArgumentException if the number of rows or columns is not positive.
+     */
+    //@ requires rows > 0 && columns > 0;
+    //@ ensures \result.getRows() == rows && \result.getColumns() == columns;
+    public static BoardGeometry of(int rows, int columns) {
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("A board needs at least one row and one column");
+        }
+        return GEOMETRIES.computeIfAbsent(((long) rows << 32) | columns, key -> new BoardGeometry(rows, columns));
+    }
+
+    /**
+     * Gets the number of rows of boxes.
+     *
+     * @return the number of rows.
+     */
+    //@ pure
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of boxes.
+     *
+     * @return the number of columns.
+     */
+    //@ pure
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the number of lines on the board.
+     *
+     * @return rows * (columns + 1) vertical lines plus (rows + 1) * columns horizontal lines.
+     */
+    //@ ensures \result == 2 * rows * columns + rows + columns;
+    //@ pure
+    public int getNrOfLines() {
+        return nrOfLines;
+    }
+
+    /**
+     * Gets the number of boxes on the board.
+     *
+     * @return rows * columns.
+     */
+    //@ ensures \result == rows * columns;
+    //@ pure
+    public int getNrOfBoxes() {
+        return nrOfBoxes;
+    }
+
+    /**
+     * Gets the location of one of the sides of a box.
+     *
+     * @param box  the index of the box.
+     * @param side the side of the box: 0 = top, 1 = left, 2 = right, 3 = bottom.
+     * @return the location of the line.
+     */
+    //@ requires box >= 0 && box < getNrOfBoxes() && side >= 0 && side < 4;
+    //@ pure
+    public int getBoxLine(int box, int side) {
+        return boxLines[4 * box + side];
+    }
+
+    /**
+     * Gets the box above or to the left of a line, or the only box next to a line on the edge of the board.
+     *
+     * @param line the location of the line.
+     * @return the index of the box.
+     */
+    //@ requires line >= 0 && line < getNrOfLines();
+    //@ ensures \result >= 0;
+    //@ pure
+    public int getFirstBox(int line) {
+        return lineBoxes[2 * line];
+    }
+
+    /**
+     * Gets the box below or to the right of a line.
+     *
+     * @param line the location of the line.
+     * @return the index of the box, or -1 if the line is on the edge of the board and has only one box.
+     */
+    //@ requires line >= 0 && line < getNrOfLines();
+    //@ pure
+    public int getSecondBox(int line) {
+        return lineBoxes[2 * line + 1];
+    }
+
+    /**
+     * Gets the table with the boxes next to every line, see getFirstBox and getSecondBox.
+     * The array is shared and must not be modified.
+     *
+     * @return the boxes next to the lines, at 2 * line and 2 * line + 1.
+     */
+    //@ pure
+    int[] getLineBoxes() {
+        return lineBoxes;
+    }
+
+    /**
+     * Gets the shared line object for a location.
+     *
+     * @param location the location of the line.
+     * @return the line.
+     */
+    //@ pure
+    Line getLine(int location) {
+        return lines[location];
+    }
+
+    /**
+     * Gets the number of symmetries of the board.
+     *
+     * @return 8 for a square board, 4 otherwise.
+     */
+    //@ ensures \result == (rows == columns ? 8 : 4);
+    //@ pure
+    public int getNrOfSymmetries() {
+        return nrOfSymmetries;
+    }
+
+    /**
+     * Gets the image of a line under a symmetry of the board.
+     *
+     * @param symmetry the symmetry, from 0 to getNrOfSymmetries() - 1.
+     * @param location the location of the line.
+     * @return the location of the image of the line.
+     */
+    //@ requires symmetry >= 0 && symmetry < getNrOfSymmetries() && location >= 0 && location < getNrOfLines();
+    //@ pure
+    public int transformLine(int symmetry, int location) {
+        return symmetries[symmetry * nrOfLines + location];
+    }
+
+    /**
+     * Gets the line of which a line is the image under a symmetry, i.e., undoes transformLine.
+     *
+     * @param symmetry the symmetry, from 0 to getNrOfSymmetries() - 1.
+     * @param location the location of the image.
+     * @return the location of the line that the symmetry maps to the given line.
+     */
+    //@ requires symmetry >= 0 && symmetry < getNrOfSymmetries() && location >= 0 && location < getNrOfLines();
+    //@ ensures transformLine(symmetry, \result) == location;
+    //@ pure
+    public int inverseTransformLine(int symmetry, int location) {
+        return inverseSymmetries[symmetry * nrOfLines + location];
+    }
+
+    /**
+     * Gets the Zobrist keys for positions on boards of this size.
+     *
+     * @return the Zobrist keys.
+     */
+    //@ pure
+    public Zobrist getZobrist() {
+        return zobrist;
+    }
+
+    @Override
+    public String toString() {
+        return rows + "x" + columns;
+    }
+}
@@ -2,7 +2,8 @@ package gamelogic.model;
 
 public class BoardVisualization {
     public Board board;
-    private final int size;
+    private final int rows;
+    private final int columns;
     public static final String RESET = "\u001B[0m";
     public static final String RED = "\u001B[31m";
     public static final String BLUE = "\u001B[34m";
@@ -19,7 +20,8 @@ public class BoardVisualization {
      */
     public BoardVisualization(Board board) {
         this.board = board;
-        this.size = Board.DIM * 4 + 1;
+        this.rows = board.getGeometry().getRows() * 4 + 1;
+        this.columns = board.getGeometry().getColumns() * 4 + 1;
     }
 
     /**
@@ -28,9 +30,9 @@ public class BoardVisualization {
      * @return empty two-dimensional array
      */
     public String[][] createEmptyArray() {
-        String[][] emptyBoard = new String[size][size];
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
+        String[][] emptyBoard = new String[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
                 emptyBoard[row][column] = String.format("%3s", FIELD_EMPTY_SPACE);
             }
         }
@@ -94,8 +96,8 @@ public class BoardVisualization {
         int counterLines = 0;
         int counterBoxes = 0;
         //Iterate through all coordinates.
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
                 // Place the field corner
                 if (row % 2 == 0 && column % 2 == 0 && row % 4 != 2 && column % 4 != 2) {
                     emptyArray[row][column] = String.format("%3s", FIELD_CORNER);
@@ -199,4 +201,4 @@ public class BoardVisualization {
     public String toString() {
         return arrayToSting(fillArray(createEmptyArray()));
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
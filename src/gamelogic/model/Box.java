@@ -3,9 +3,11 @@ package gamelogic.model;
 /**
  * A class of boxes for the Dots and Boxes game.
  * The location of each box must be a valid location for any box.
+ * A box that belongs to a board is a view on that board: its lines and owner are stored in the board.
  */
 public class Box {
     private final int location;
+    private final Board board; // null if the box does not belong to a board
 
     private BasicPlayer owner;
     private Line[] lines = new Line[4];
@@ -14,7 +16,18 @@ public class Box {
      * Creates a new Box object.
      */
     public Box(int location) {
+        this(location, null);
+    }
+
+    /**
+     * Creates a new Box object that is a view on the given board.
+     *
+     * @param location the location of the box.
+     * @param board    the board the box belongs to.
+     */
+    Box(int location, Board board) {
         this.location = location;
+        this.board = board;
     }
 
     /**
@@ -22,6 +35,9 @@ public class Box {
      */
     //@pure
     public boolean isComplete() {
+        if (board != null) {
+            return board.isBoxComplete(location);
+        }
         return lines[0] != null && lines[1] != null && lines[2] != null && lines[3] != null;
     }
 
@@ -32,6 +48,9 @@ public class Box {
      */
     //@ pure
     public Line[] getLines() {
+        if (board != null) {
+            return board.getBoxLines(location);
+        }
         return lines;
     }
 
@@ -41,7 +60,11 @@ public class Box {
      * @param owner the player who completed the box.
      */
     public void setOwner(BasicPlayer owner) {
-        this.owner = owner;
+        if (board != null) {
+            board.setBoxOwner(location, owner);
+        } else {
+            this.owner = owner;
+        }
     }
 
     /**
@@ -51,6 +74,9 @@ public class Box {
      */
     //@ pure
     public BasicPlayer getOwner() {
+        if (board != null) {
+            return board.getBoxOwner(location);
+        }
         return owner;
     }
 
@@ -66,10 +92,13 @@ public class Box {
     /**
      * Establishes an array of 4 lines.
      * It is not necessary that the array is populated.
+     * Has no effect on a box that belongs to a board, since its lines are the lines drawn on the board.
      *
      * @param lines the lines of the box.
      */
     public void setLines(Line[] lines) {
-        this.lines = lines;
+        if (board == null) {
+            this.lines = lines;
+        }
     }
 }
@@ -14,15 +14,45 @@ public class DotsAndBoxesGame implements Game {
     private final BasicPlayer player1;
     private final BasicPlayer player2;
     private BasicPlayer currentPlayer;
+    // Undo stack with the location of every move made so far. Every line can be drawn only once, so the stack
+    // never holds more moves than there are lines. The boxes a move completed follow from the board when it is undone.
+    private final int[] moveLocations;
+    private int moveCount;
+    private final Zobrist zobrist;
 
     // -- Constructor -----------------------------------------------
 
     public DotsAndBoxesGame(BasicPlayer player1, BasicPlayer player2) {
-        this.board = new Board(); //because the game should create a board as soon as it is created i.e.,
+        this(player1, player2, BoardGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates a game on a board of rows x columns boxes.
+     *
+     * @param player1 the player who starts.
+     * @param player2 the other player.
+     * @param rows    the number of rows of boxes.
+     * @param columns the number of columns of boxes.
+     */
+    public DotsAndBoxesGame(BasicPlayer player1, BasicPlayer player2, int rows, int columns) {
+        this(player1, player2, BoardGeometry.of(rows, columns));
+    }
+
+    /**
+     * Creates a game on a board with the given geometry.
+     *
+     * @param player1  the player who starts.
+     * @param player2  the other player.
+     * @param geometry the size of the board.
+     */
+    public DotsAndBoxesGame(BasicPlayer player1, BasicPlayer player2, BoardGeometry geometry) {
+        this.board = new Board(geometry); //because the game should create a board as soon as it is created i.e.,
         //the game needs a board to be playable
         this.player1 = player1;
         this.player2 = player2;
         this.currentPlayer = player1;
+        this.moveLocations = new int[geometry.getNrOfLines()];
+        this.zobrist = geometry.getZobrist();
     }
 
     // -- Methods ---------------------------------------------------
@@ -63,7 +93,7 @@ public class DotsAndBoxesGame implements Game {
     //@ pure
     public List<Integer> getValidLocations() {
         List<Integer> validLocations = new ArrayList<>();
-        for (int i = 0; i < board.calculateNrOfLines(Board.DIM); i++) {
+        for (int i = 0; i < board.getNrOfLines(); i++) {
             if (isValidLocation(i)) {
                 validLocations.add(i);
             }
@@ -79,24 +109,96 @@ public class DotsAndBoxesGame implements Game {
         player1.setScore(0);
         player2.setScore(0);
         currentPlayer = player1;
+        moveCount = 0;
     }
 
     //@ pure
     public boolean isValidLocation(int location) {
-        return board.getLine(location) == null;
+        return !board.isDrawn(location);
     }
 
     //@ requires isValidLocation(l.getLocation());
     public void drawLine(Line l) {
-        if (getValidLocations().contains(l.getLocation())) {
-            board.drawLine(l);
-            board.setMark(l.getLocation(), currentPlayer.getMark()); //TODO: check if this is necessary
-            toggleTurn();
+        if (board.isField(l.getLocation()) && isValidLocation(l.getLocation())) {
+            makeMove(l.getLocation());
         } else {
             System.out.println("Invalid location"); //TODO: add exception
         }
     }
 
+    /**
+     * Performs a move without allocating: draws the line, gives the completed boxes to the current player and
+     * passes the turn if no box was completed. The move is pushed on the undo stack, see unmakeMove.
+     *
+     * @param location the location of the line to be drawn.
+     * @return the number of boxes (0, 1 or 2) that were completed by the move.
+     * @throws IllegalArgumentException if the line has already been drawn.
+     */
+    //@ requires board.isField(location);
+    //@ ensures !isValidLocation(location);
+    public int makeMove(int location) {
+        int completedBoxes = board.drawLine(location, currentPlayer);
+        if (completedBoxes < 0) {
+            throw new IllegalArgumentException("Line " + location + " has already been drawn");
+        } else if (completedBoxes == 0) {
+            currentPlayer = getOther();
+        } else {
+            // the current player completed a box, so they get a point for it and another turn
+            currentPlayer.setScore(currentPlayer.getScore() + completedBoxes);
+        }
+        moveLocations[moveCount++] = location;
+        return completedBoxes;
+    }
+
+    /**
+     * Takes back the last move: removes its line, mark and box owners, restores the scores and gives the turn
+     * back to the player who made the move. Runs in constant time.
+     *
+     * @return the location of the line that was removed.
+     * @throws IllegalStateException if no move has been made since the game was created or reset.
+     */
+    //@ requires getMoveCount() > 0;
+    //@ ensures isValidLocation(\result);
+    public int unmakeMove() {
+        if (moveCount == 0) {
+            throw new IllegalStateException("There is no move to unmake");
+        }
+        int location = moveLocations[--moveCount];
+        int completedBoxes = board.undrawLine(location);
+        if (completedBoxes == 0) {
+            currentPlayer = getOther(); // the turn passed after the move, so the other player made it
+        } else {
+            currentPlayer.setScore(currentPlayer.getScore() - completedBoxes);
+        }
+        return location;
+    }
+
+    /**
+     * Gets the number of moves on the undo stack, i.e., the moves made since the game was created or reset.
+     *
+     * @return the number of moves made.
+     */
+    //@ pure
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets a move on the undo stack, so the game can be recorded or replayed.
+     *
+     * @param index the index of the move, 0 for the first move.
+     * @return the location of the line of the move.
+     * @throws IndexOutOfBoundsException if there is no move with that index.
+     */
+    //@ requires index >= 0 && index < getMoveCount();
+    //@ pure
+    public int getMove(int index) {
+        if (index < 0 || index >= moveCount) {
+            throw new IndexOutOfBoundsException("There is no move " + index);
+        }
+        return moveLocations[index];
+    }
+
     /**
      * Toggles the turns of the players whenever a line is drawn.
      * If a player completes a box, they get another turn.
@@ -123,6 +225,48 @@ public class DotsAndBoxesGame implements Game {
         }
     }
 
+    /**
+     * Gets the Zobrist hash of the position: the drawn lines, the player to move and the score difference.
+     * Two games with the same position have the same hash, regardless of the order of the moves.
+     *
+     * @return the 64-bit hash of the position.
+     */
+    //@ pure
+    public long positionHash() {
+        long hash = board.positionHash() ^ zobrist.scoreKey(player1.getScore() - player2.getScore());
+        return currentPlayer == player1 ? hash : hash ^ zobrist.sideKey();
+    }
+
+    /**
+     * Gets the Zobrist hash of the position after a symmetry of the board, see Board.symmetricHash. The scores and
+     * the player to move do not change under a symmetry.
+     *
+     * @param symmetry the symmetry, from 0 to board.getGeometry().getNrOfSymmetries() - 1.
+     * @return the hash of the transformed position; positionHash() for symmetry 0.
+     */
+    //@ requires symmetry >= 0 && symmetry < board.getGeometry().getNrOfSymmetries();
+    //@ ensures symmetry == 0 ==> \result == positionHash();
+    //@ pure
+    public long symmetricPositionHash(int symmetry) {
+        long hash = board.symmetricHash(symmetry) ^ zobrist.scoreKey(player1.getScore() - player2.getScore());
+        return currentPlayer == player1 ? hash : hash ^ zobrist.sideKey();
+    }
+
+    /**
+     * Gets the canonical hash of the position: the smallest of its symmetric hashes, which is the same for a
+     * position and all its mirror images and rotations.
+     *
+     * @return the canonical hash of the position.
+     */
+    //@ pure
+    public long canonicalPositionHash() {
+        long canonical = positionHash();
+        for (int s = 1; s < board.getGeometry().getNrOfSymmetries(); s++) {
+            canonical = Math.min(canonical, symmetricPositionHash(s));
+        }
+        return canonical;
+    }
+
     /**
      * Retrieves the 2 players of the game.
      *
@@ -140,12 +284,11 @@ public class DotsAndBoxesGame implements Game {
     }
 
     public DotsAndBoxesGame deepCopy() {
-        DotsAndBoxesGame copy = new DotsAndBoxesGame(player1, player2);
-        copy.board = board.deepCopy();
+        DotsAndBoxesGame copy = new DotsAndBoxesGame(player1, player2, board.getGeometry());
+        copy.board = board.deepCopy(); // also copies the owners of the boxes
         copy.currentPlayer = currentPlayer;
-        for (Box box : copy.board.getBoxes()) {
-            box.setOwner(board.getBoxes()[box.getLocation()].getOwner());
-        }
+        System.arraycopy(moveLocations, 0, copy.moveLocations, 0, moveCount);
+        copy.moveCount = moveCount;
         return copy;
     }
 }
\ No newline at end of file
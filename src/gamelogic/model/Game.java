@@ -66,6 +66,24 @@ public interface Game {
     //@ requires isValidLocation(line.getLocation());
     void drawLine(Line line);
 
+    /**
+     * Performs the move at a location and remembers it, so that it can be taken back with unmakeMove.
+     *
+     * @param location the location of the line to be drawn.
+     * @return the number of boxes completed by the move.
+     */
+    //@ requires isValidLocation(location);
+    //@ ensures !isValidLocation(location);
+    int makeMove(int location);
+
+    /**
+     * Takes back the last move, restoring the lines, box owners, scores and turn from before that move.
+     *
+     * @return the location of the move that was taken back.
+     */
+    //@ ensures isValidLocation(\result);
+    int unmakeMove();
+
     /**
      * Updates the scores of the players when boxes have been drawn.
      * A completed box corresponds to a score increase of 1.
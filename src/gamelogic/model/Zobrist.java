@@ -0,0 +1,84 @@
+package gamelogic.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for the Zobrist hash of a position.
+ * The hash of a position is the XOR of the keys of its drawn lines, the key of the side to move (if it is the
+ * second player) and the key of the score difference. Drawing or removing a line only flips one key.
+ * Every board size has its own keys, see BoardGeometry.getZobrist(). The keys are generated from a fixed seed,
+ * so a position has the same hash in every process.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5EED_D075_B0C5L;
+    private final long[] lineKeys;
+    // One key for every score difference between -nrOfBoxes and nrOfBoxes.
+    private final long[] scoreKeys;
+    private final int nrOfBoxes;
+    private final long sideKey;
+
+    /**
+     * Generates the keys for a board size.
+     *
+     * @param nrOfLines the number of lines on the board.
+     * @param nrOfBoxes the number of boxes on the board.
+     * @param salt      a value that is different for every board size.
+     */
+    Zobrist(int nrOfLines, int nrOfBoxes, long salt) {
+        SplittableRandom random = new SplittableRandom(SEED ^ salt);
+        this.nrOfBoxes = nrOfBoxes;
+        lineKeys = new long[nrOfLines];
+        for (int i = 0; i < lineKeys.length; i++) {
+            lineKeys[i] = random.nextLong();
+        }
+        scoreKeys = new long[2 * nrOfBoxes + 1];
+        for (int i = 0; i < scoreKeys.length; i++) {
+            scoreKeys[i] = random.nextLong();
+        }
+        sideKey = random.nextLong();
+    }
+
+    /**
+     * Gets the key of a drawn line.
+     *
+     * @param location the location of the line.
+     * @return the key of the line.
+     */
+    //@ requires location >= 0 && location < lineKeys.length;
+    //@ pure
+    public long lineKey(int location) {
+        return lineKeys[location];
+    }
+
+    /**
+     * Gets the keys of all lines, indexed by location. The array is shared and must not be modified.
+     *
+     * @return the keys of the lines.
+     */
+    //@ pure
+    long[] getLineKeys() {
+        return lineKeys;
+    }
+
+    /**
+     * Gets the key of a score difference.
+     *
+     * @param scoreDifference the score of the first player minus the score of the second player.
+     * @return the key of the score difference.
+     */
+    //@ requires scoreDifference >= -nrOfBoxes && scoreDifference <= nrOfBoxes;
+    //@ pure
+    public long scoreKey(int scoreDifference) {
+        return scoreKeys[scoreDifference + nrOfBoxes];
+    }
+
+    /**
+     * Gets the key that is included in the hash when the second player is to move.
+     *
+     * @return the key of the side to move.
+     */
+    //@ pure
+    public long sideKey() {
+        return sideKey;
+    }
+}
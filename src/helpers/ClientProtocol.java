@@ -13,6 +13,14 @@ public final class ClientProtocol {
     public static final String MOVE = "MOVE";
     public static final String ERROR = "ERROR";
     public static final String SEPARATOR = "~";
+    // The HELLO extension of the binary protocol. If both sides announce it, all later messages are binary frames.
+    public static final String BINARY = "BINARY";
+    // The type of the binary frame of a move, which carries the location.
+    public static final int MOVE_FRAME = 1;
+    // LIST~PAGE~offset~limit asks for a page of the usernames, which the server answers with LISTPAGE.
+    public static final String PAGE = "PAGE";
+    // LIST~SINCE~version asks for the changes since a version of the list, which the server answers with LISTDELTA.
+    public static final String SINCE = "SINCE";
 
 
     private ClientProtocol() {
@@ -2,7 +2,7 @@ package helpers;
 
 /**
  * Record class for storing a pair of objects.
- * Helps to associate two players with a game, in a map.
+ * Helps to pair two players for a game, in the matchmaking queue.
  */
 public record Pair<T, U>(T first, U second) {
 }
\ No newline at end of file
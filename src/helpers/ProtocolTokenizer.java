@@ -0,0 +1,155 @@
+package helpers;
+
+/**
+ * Tokenizer for protocol messages, which splits a message at the separator without allocating.
+ * The tokens are read one by one from the message itself: a command is matched against the known commands, and a
+ * number is parsed straight from the characters. Only tokenAsString() creates a string, for tokens such as usernames.
+ * The number of tokens is counted like String.split(SEPARATOR) would, so trailing empty tokens are not counted.
+ * A tokenizer can be reused for every message of a connection, but it is not thread-safe.
+ */
+public final class ProtocolTokenizer {
+    private static final char SEPARATOR = ServerProtocol.SEPARATOR.charAt(0);
+
+    private CharSequence message = "";
+    private int count; // the number of tokens, as counted by split
+    private int index; // the number of tokens that were read
+    private int start; // the start of the current token
+    private int end; // the end of the current token, exclusive
+
+    /**
+     * Starts tokenizing a new message.
+     *
+     * @param newMessage the message to tokenize
+     * @return this tokenizer
+     */
+    //@ requires newMessage != null;
+    public ProtocolTokenizer reset(CharSequence newMessage) {
+        message = newMessage;
+        index = 0;
+        start = 0;
+        end = -1;
+        int length = newMessage.length();
+        if (length == 0) {
+            count = 1; // like split, an empty message is a single empty token
+            return this;
+        }
+        // trailing empty tokens are not counted
+        int last = length;
+        while (last > 0 && newMessage.charAt(last - 1) == SEPARATOR) {
+            last--;
+        }
+        count = last == 0 ? 0 : 1;
+        for (int i = 0; i < last; i++) {
+            if (newMessage.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of tokens of the message, like the length of the array that String.split would return.
+     *
+     * @return the number of tokens
+     */
+    //@ pure
+    public int countTokens() {
+        return count;
+    }
+
+    /**
+     * Checks whether there is another token.
+     *
+     * @return true if nextToken can be called
+     */
+    //@ pure
+    public boolean hasMoreTokens() {
+        return index < count;
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return this tokenizer
+     * @throws IllegalStateException if there are no more tokens
+     */
+    public ProtocolTokenizer nextToken() {
+        if (!hasMoreTokens()) {
+            throw new IllegalStateException("No more tokens");
+        }
+        start = end + 1;
+        end = start;
+        while (end < message.length() && message.charAt(end) != SEPARATOR) {
+            end++;
+        }
+        index++;
+        return this;
+    }
+
+    /**
+     * Moves to the next token and returns the known token it is equal to, without allocating.
+     *
+     * @param known the known tokens, e.g. the commands of the protocol
+     * @return the element of known that is equal to the token, or null if there is none
+     * @throws IllegalStateException if there are no more tokens
+     */
+    //@ requires known != null;
+    public String nextKnownToken(String[] known) {
+        nextToken();
+        for (String token : known) {
+            if (tokenEquals(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the current token is equal to the given string.
+     *
+     * @param expected the string to compare with
+     * @return true if the token consists of the same characters
+     */
+    //@ pure
+    public boolean tokenEquals(String expected) {
+        int length = end - start;
+        if (expected.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (message.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the current token as a decimal int, without allocating.
+     *
+     * @return the value of the token
+     * @throws NumberFormatException if the token is not an int
+     */
+    public int tokenAsInt() {
+        return Integer.parseInt(message, start, end, 10);
+    }
+
+    /**
+     * Parses the current token as a decimal long, without allocating.
+     *
+     * @return the value of the token
+     * @throws NumberFormatException if the token is not a long
+     */
+    public long tokenAsLong() {
+        return Long.parseLong(message, start, end, 10);
+    }
+
+    /**
+     * Returns the current token as a string. This allocates, so it is meant for tokens that are kept, such as names.
+     *
+     * @return the token
+     */
+    public String tokenAsString() {
+        return message.subSequence(start, end).toString();
+    }
+}
@@ -18,6 +18,14 @@ public final class ServerProtocol {
     public static final String DISCONNECT = "DISCONNECT";
     public static final String ERROR = "ERROR";
     public static final String SEPARATOR = "~";
+    // The HELLO extension of the binary protocol. If both sides announce it, all later messages are binary frames.
+    public static final String BINARY = "BINARY";
+    // The type of the binary frame of a move, which carries the location.
+    public static final int MOVE_FRAME = 1;
+    // The reply to LIST~PAGE: LISTPAGE~version~total~offset, followed by the usernames of the page.
+    public static final String LIST_PAGE = "LISTPAGE";
+    // The reply to LIST~SINCE: LISTDELTA~version~number of joined usernames, followed by the joined and the left ones.
+    public static final String LIST_DELTA = "LISTDELTA";
 
     private ServerProtocol() {
         // Private constructor to prevent instantiation
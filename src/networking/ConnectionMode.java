@@ -0,0 +1,21 @@
+package networking;
+
+/**
+ * The ways in which a SocketServer can run the connections it accepts.
+ */
+public enum ConnectionMode {
+    /**
+     * Every connection receives its messages on a thread of its own, which blocks while waiting for a message.
+     */
+    THREAD,
+    /**
+     * Every connection receives its messages on a virtual thread of its own. The code still blocks while waiting for
+     * a message, but a waiting virtual thread does not hold a platform thread, so an idle connection costs little.
+     */
+    VIRTUAL_THREAD,
+    /**
+     * The connections are multiplexed over a few SelectorLoops, which only handle a connection when it has data.
+     * An idle connection costs no thread, only a few small buffers.
+     */
+    SELECTOR
+}
@@ -0,0 +1,244 @@
+package networking;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes the messages of a SocketConnection, for connections with a thread and for those of a
+ * SelectorLoop alike.
+ * At first, a message is a line of text that ends with \n, \r or \r\n, like BufferedReader.readLine expects. After
+ * useBinaryFraming, a message is a frame: its length as a varint (7 bits per byte, least significant first, the high
+ * bit set on all but the last byte), followed by that many bytes. The first byte of a frame is its type. A frame of
+ * type TEXT_FRAME carries a text message; any other type carries a single varint value, e.g. the location of a move.
+ * A decoder is used by one thread at a time, and delivers the messages to the connection that is passed to decode.
+ */
+final class MessageCodec {
+    /**
+     * The type of frames that carry a text message.
+     */
+    static final int TEXT_FRAME = 0;
+    // The initial size of the buffer that holds the part of a message that was received so far.
+    private static final int INITIAL_LENGTH = 128;
+    // The longest message that is accepted. A connection that sends a longer message is closed.
+    private static final int MAX_MESSAGE_LENGTH = 1 << 20;
+    // A frame length fits in 3 varint bytes, as 2^21 > MAX_MESSAGE_LENGTH.
+    private static final int MAX_PREFIX_SHIFT = 14;
+    // The same charset and line separator as the readers and writers of the standard library would use.
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(CHARSET);
+
+    private volatile boolean binary = false;
+    private byte[] message = new byte[INITIAL_LENGTH];
+    private int length; // the number of bytes of the message that were received so far
+    private boolean skipLineFeed; // true if the last line ended with \r, which may be followed by \n
+    private int frameLength = -1; // -1 while the length of a frame is being read
+    private int prefix; // the part of the length that was read so far
+    private int prefixShift;
+
+    /**
+     * Switches to binary frames, in both directions.
+     */
+    void useBinaryFraming() {
+        binary = true;
+    }
+
+    /**
+     * Checks whether the messages are binary frames.
+     *
+     * @return true after useBinaryFraming
+     */
+    boolean isBinaryFraming() {
+        return binary;
+    }
+
+    /**
+     * Encodes a text message, as a line or as a text frame.
+     *
+     * @param text the message, without newlines
+     * @return the bytes to send
+     */
+    byte[] encode(String text) {
+        byte[] bytes = text.getBytes(CHARSET);
+        if (!binary) {
+            byte[] line = Arrays.copyOf(bytes, bytes.length + LINE_SEPARATOR.length);
+            System.arraycopy(LINE_SEPARATOR, 0, line, bytes.length, LINE_SEPARATOR.length);
+            return line;
+        }
+        int frameSize = bytes.length + 1;
+        byte[] frame = new byte[varintSize(frameSize) + frameSize];
+        int offset = putVarint(frame, 0, frameSize);
+        frame[offset] = TEXT_FRAME;
+        System.arraycopy(bytes, 0, frame, offset + 1, bytes.length);
+        return frame;
+    }
+
+    /**
+     * Encodes a frame that carries a single value. A move, for example, takes 3 bytes if its location is below 128.
+     *
+     * @param type  the type of the frame, from 1 to 127
+     * @param value the value, which is not negative
+     * @return the bytes to send
+     */
+    static byte[] encodeFrame(int type, int value) {
+        if (type <= TEXT_FRAME || type > 127 || value < 0) {
+            throw new IllegalArgumentException("Invalid frame " + type + " with value " + value);
+        }
+        int frameSize = 1 + varintSize(value);
+        byte[] frame = new byte[1 + frameSize]; // the frame size is less than 128, so its varint is a single byte
+        frame[0] = (byte) frameSize;
+        frame[1] = (byte) type;
+        putVarint(frame, 2, value);
+        return frame;
+    }
+
+    /**
+     * Decodes the bytes that remain in the buffer, and delivers every message that is complete to the connection.
+     * Stops early if a handler closes the connection.
+     *
+     * @param buffer     the bytes that were received
+     * @param connection the connection whose handleMessage and handleFrame are called
+     * @return false if the bytes break the protocol, in which case the connection should be closed
+     */
+    boolean decode(ByteBuffer buffer, SocketConnection connection) {
+        while (buffer.hasRemaining()) {
+            byte next = buffer.get();
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (next == '\n') {
+                    continue; // the \n of \r\n
+                }
+            }
+            if (!binary) {
+                if (next == '\n' || next == '\r') {
+                    skipLineFeed = next == '\r';
+                    deliverLine(connection);
+                    if (connection.isClosed()) {
+                        return true;
+                    }
+                } else if (!append(next)) {
+                    return false;
+                }
+            } else if (frameLength < 0) {
+                prefix |= (next & 0x7F) << prefixShift;
+                if (next < 0) { // the high bit is set, so another byte follows
+                    prefixShift += 7;
+                    if (prefixShift > MAX_PREFIX_SHIFT) {
+                        return false;
+                    }
+                } else {
+                    frameLength = prefix;
+                    prefix = 0;
+                    prefixShift = 0;
+                    if (frameLength == 0 || frameLength > MAX_MESSAGE_LENGTH) {
+                        return false;
+                    }
+                }
+            } else {
+                append(next);
+                if (length == frameLength) {
+                    frameLength = -1;
+                    if (!deliverFrame(connection)) {
+                        return false;
+                    }
+                    if (connection.isClosed()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Delivers the last line, if it was not ended by a newline when the connection was closed, like
+     * BufferedReader.readLine does.
+     *
+     * @param connection the connection whose handleMessage is called
+     */
+    void finish(SocketConnection connection) {
+        if (!binary && length > 0) {
+            deliverLine(connection);
+        }
+    }
+
+    /**
+     * Delivers the line that was received.
+     *
+     * @param connection the connection whose handleMessage is called
+     */
+    private void deliverLine(SocketConnection connection) {
+        String line = new String(message, 0, length, CHARSET);
+        length = 0;
+        connection.handleMessage(line);
+    }
+
+    /**
+     * Delivers the frame that was received.
+     *
+     * @param connection the connection whose handleMessage or handleFrame is called
+     * @return false if the frame is invalid
+     */
+    private boolean deliverFrame(SocketConnection connection) {
+        int size = length;
+        length = 0;
+        int type = message[0] & 0xFF;
+        if (type == TEXT_FRAME) {
+            connection.handleMessage(new String(message, 1, size - 1, CHARSET));
+            return true;
+        }
+        // the rest of the frame is a single varint of at most 5 bytes
+        int value = 0;
+        int shift = 0;
+        for (int i = 1; i < size; i++) {
+            byte next = message[i];
+            value |= (next & 0x7F) << shift;
+            if (next >= 0) {
+                if (i != size - 1) {
+                    return false;
+                }
+                connection.handleFrame(type, value);
+                return true;
+            }
+            shift += 7;
+            if (shift > 28) {
+                return false;
+            }
+        }
+        return false; // the varint was not ended
+    }
+
+    /**
+     * Appends a byte to the message that is being received.
+     *
+     * @param next the byte
+     * @return false if the message is too long
+     */
+    private boolean append(byte next) {
+        if (length == message.length) {
+            if (length == MAX_MESSAGE_LENGTH) {
+                return false;
+            }
+            message = Arrays.copyOf(message, Math.min(2 * length, MAX_MESSAGE_LENGTH));
+        }
+        message[length++] = next;
+        return true;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int putVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+}
@@ -0,0 +1,327 @@
+package networking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An event loop which handles many SocketConnections on a single thread, using a Selector.
+ * The channels of the connections are non-blocking. The loop only reads from a connection when data has arrived,
+ * decodes the messages in it and calls handleMessage for every message, on the thread of the loop. A message that cannot
+ * be written at once is queued, and written by the loop as soon as the connection can take more data. The messages
+ * that a handler sends on the thread of the loop are always queued, so the loop writes them with a single call.
+ * As all connections of a loop share its thread, the handlers should not block.
+ */
+public final class SelectorLoop {
+    // The size of the buffer that data is read into, which is shared by all connections of the loop.
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    // The endpoints that were started, have to write or were closed. They are updated by the thread of the loop.
+    private final Queue<Endpoint> changes = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new selector loop and starts its thread.
+     *
+     * @param name the name of the thread of the loop
+     * @throws IOException if the selector cannot be opened
+     */
+    public SelectorLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this::run, name);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop. All connections of the loop are closed, and their handleDisconnect method is called.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Makes the channel of a connection non-blocking and attaches it to this loop.
+     * The loop starts receiving messages when the endpoint is started with its connection.
+     *
+     * @param channel the channel of the connection
+     * @return the endpoint through which the connection sends messages
+     * @throws IOException if the channel cannot be made non-blocking
+     */
+    Endpoint attach(SocketChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("A socket without a channel cannot be handled by a selector");
+        }
+        channel.configureBlocking(false);
+        return new Endpoint(channel);
+    }
+
+    /**
+     * The thread of the loop. It updates the endpoints that changed and handles the channels that are ready, until
+     * the loop is closed.
+     */
+    private void run() {
+        try {
+            while (running) {
+                Endpoint endpoint;
+                while ((endpoint = changes.poll()) != null) {
+                    endpoint.update();
+                }
+                selector.select(this::handleKey);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                Endpoint endpoint = (Endpoint) key.attachment();
+                endpoint.close();
+                endpoint.disconnect();
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // ignore, we are closing the selector anyway
+            }
+        }
+    }
+
+    /**
+     * Handles a channel that is ready to be written to or read from.
+     *
+     * @param key the key of the channel
+     */
+    private void handleKey(SelectionKey key) {
+        Endpoint endpoint = (Endpoint) key.attachment();
+        try {
+            if (key.isWritable()) {
+                endpoint.flush();
+            }
+            if (key.isValid() && key.isReadable()) {
+                endpoint.read();
+            }
+        } catch (CancelledKeyException e) {
+            // the connection was closed by another thread, its disconnect is already queued
+        } catch (RuntimeException e) {
+            // an exception of a handler would end the thread of a connection, so it only ends this connection
+            e.printStackTrace();
+            endpoint.close();
+        }
+    }
+
+    /**
+     * The part of a connection that is handled by the loop: its channel and the data it still has to send.
+     */
+    final class Endpoint {
+        private final SocketChannel channel;
+        // The data that could not be written yet, guarded by this.
+        private final Queue<ByteBuffer> output = new ArrayDeque<>();
+        // The connection of this endpoint, set when it is started, guarded by this. The loop only uses the endpoint
+        // after it was started.
+        private SocketConnection connection;
+        private boolean started; // guarded by this
+        private boolean closed; // guarded by this
+        // Only used by the thread of the loop.
+        private SelectionKey key;
+        private boolean disconnected;
+
+        private Endpoint(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Starts receiving messages for a connection. The loop calls handleStart and registers the channel.
+         *
+         * @param startedConnection the connection whose methods the loop calls
+         */
+        void start(SocketConnection startedConnection) {
+            synchronized (this) {
+                connection = startedConnection;
+                started = true;
+            }
+            changes.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * Sends an encoded message. On another thread than the loop, the message is written right away if
+         * nothing else is waiting to be written. Otherwise, or if the connection cannot take all of it, the rest is
+         * written by the loop. If MAX_QUEUED_MESSAGES messages are still waiting, the message is refused and
+         * handleBackpressure is called.
+         *
+         * @param message the encoded message to send
+         * @return true if the message was sent or queued, false if the connection was closed or is too far behind
+         */
+        boolean send(byte[] message) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            boolean onLoop = Thread.currentThread() == thread;
+            boolean wakeLoop = false;
+            SocketConnection sender;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                sender = connection;
+                if (output.size() < SocketConnection.MAX_QUEUED_MESSAGES) {
+                    if (output.isEmpty() && !onLoop) {
+                        try {
+                            channel.write(buffer);
+                        } catch (IOException e) {
+                            close();
+                            return false;
+                        }
+                    }
+                    if (buffer.hasRemaining()) {
+                        output.add(buffer);
+                        // the loop has to write the output, at the latest when the connection can take more data
+                        wakeLoop = started && output.size() == 1;
+                    }
+                    buffer = null;
+                }
+            }
+            if (buffer != null) {
+                if (sender != null) {
+                    sender.handleBackpressure();
+                }
+                return false;
+            }
+            if (wakeLoop) {
+                changes.add(this);
+                if (!onLoop) {
+                    selector.wakeup();
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether the channel was closed.
+         *
+         * @return true if the channel is closed
+         */
+        boolean isClosed() {
+            return !channel.isOpen();
+        }
+
+        /**
+         * Closes the channel. The loop calls handleDisconnect, if the connection was started.
+         */
+        void close() {
+            boolean wasStarted;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                wasStarted = started;
+                output.clear();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // do nothing, the connection is already closed
+            }
+            if (wasStarted) {
+                changes.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Registers the channel when the connection is started, writes the queued data, and calls handleDisconnect
+         * when the connection is closed.
+         */
+        private void update() {
+            if (disconnected) {
+                return;
+            }
+            try {
+                if (key == null) {
+                    connection.handleStart();
+                    key = channel.register(selector, SelectionKey.OP_READ, this);
+                }
+                synchronized (this) {
+                    if (!closed) {
+                        flush();
+                        return;
+                    }
+                }
+            } catch (IOException ignored) {
+                // the channel was closed before it could be registered
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            close();
+            disconnect();
+        }
+
+        /**
+         * Writes the queued data with a single gathering write, as far as the connection can take it. If data is
+         * left, the loop waits until the connection can take more.
+         */
+        private synchronized void flush() {
+            if (closed) {
+                return;
+            }
+            if (!output.isEmpty()) {
+                try {
+                    channel.write(output.toArray(new ByteBuffer[0]));
+                } catch (IOException e) {
+                    close();
+                    return;
+                }
+                while (!output.isEmpty() && !output.peek().hasRemaining()) {
+                    output.remove();
+                }
+            }
+            key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Reads the data that has arrived and delivers the messages that are complete.
+         */
+        private void read() {
+            ByteBuffer buffer = readBuffer;
+            buffer.clear();
+            int count;
+            try {
+                count = channel.read(buffer);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (count < 0) {
+                connection.finishMessages();
+                close();
+                return;
+            }
+            buffer.flip();
+            if (!connection.decode(buffer)) {
+                close(); // the other side broke the protocol
+            }
+        }
+
+        /**
+         * Calls handleDisconnect, once.
+         */
+        private void disconnect() {
+            if (!disconnected) {
+                disconnected = true;
+                try {
+                    connection.handleDisconnect();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
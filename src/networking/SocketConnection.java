@@ -3,29 +3,73 @@ package networking;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Wrapper for a Socket and implements reading messages that consist of a single line from the socket.
+ * Both sides can agree to switch to binary frames instead of lines, see useBinaryFraming.
+ * The messages are received by a thread of the connection, or by a SelectorLoop that handles many connections.
  * This class is not thread-safe.
  * Inspired by the networking classes from Software Systems, week 7.
  */
 public abstract class SocketConnection {
+    // The size of the read and write buffers in bytes. The messages are short, and a server may hold tens of
+    // thousands of connections, so the default of 8192 would mostly be wasted.
+    private static final int BUFFER_SIZE = 1024;
+    // The number of messages that may wait to be written. A client that falls further behind causes backpressure.
+    static final int MAX_QUEUED_MESSAGES = 1024;
+    // The platform threads that drain the outboxes, unless a connection is started with writers of its own. A writer
+    // only runs while its outbox has messages, so the pool keeps idle threads for a while instead of starting a
+    // thread for every batch.
+    static final Executor PLATFORM_WRITERS = platformWriters();
     private final Socket socket;
-    private final BufferedReader in;
-    private final BufferedWriter out;
+    private final InputStream in; // null if the connection is handled by a SelectorLoop
+    private final OutputStream out; // null if the connection is handled by a SelectorLoop
+    private final SelectorLoop.Endpoint endpoint; // null if the connection has a thread of its own
+    private final MessageCodec codec = new MessageCodec();
+    // The encoded messages that wait to be written, guarded by itself. Not used by a connection of a SelectorLoop.
+    private final Queue<byte[]> outbox = new ArrayDeque<>();
+    private boolean writing = false; // true while a writer drains the outbox, guarded by outbox
     private boolean started = false;
+    private Executor writers = PLATFORM_WRITERS; // guarded by outbox
 
     /**
      * Create a new SocketConnection. This is not meant to be used directly.
      * Instead, the SocketServer and SocketClient classes should be used.
      *
      * @param socket the socket for this connection
-     * @throws IOException if there is an I/O exception while initializing the Reader/Writer objects
+     * @throws IOException if there is an I/O exception while initializing the streams
      */
     protected SocketConnection(Socket socket) throws IOException {
+        this(socket, null);
+    }
+
+    /**
+     * Create a new SocketConnection that is handled by the given selector loop instead of a thread of its own.
+     * The socket is made non-blocking. If the loop is null, this is the same as SocketConnection(socket).
+     *
+     * @param socket the socket for this connection, which must have a channel if a loop is given
+     * @param loop   the selector loop that receives the messages of this connection, or null
+     * @throws IOException if there is an I/O exception while initializing the streams or the channel
+     */
+    protected SocketConnection(Socket socket, SelectorLoop loop) throws IOException {
         this.socket = socket;
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+        if (loop == null) {
+            in = socket.getInputStream();
+            out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            endpoint = null;
+        } else {
+            in = null;
+            out = null;
+            endpoint = loop.attach(socket.getChannel());
+        }
     }
 
     /**
@@ -57,11 +101,42 @@ public abstract class SocketConnection {
      * This method may only be called once.
      */
     protected void start() {
+        start(Thread::new);
+    }
+
+    /**
+     * Start receiving messages on a thread made by the given factory, e.g., a virtual thread.
+     * A connection that is handled by a SelectorLoop does not need a thread, so it ignores the factory.
+     * This method may only be called once.
+     *
+     * @param threadFactory the factory of the thread that receives the messages
+     */
+    protected void start(ThreadFactory threadFactory) {
+        start(threadFactory, PLATFORM_WRITERS);
+    }
+
+    /**
+     * Start receiving messages on a thread made by the given factory, and write the queued messages on threads of
+     * the given executor, e.g., virtual threads for both.
+     * A connection that is handled by a SelectorLoop is written by its loop, so it ignores both.
+     * This method may only be called once.
+     *
+     * @param threadFactory  the factory of the thread that receives the messages
+     * @param writerExecutor the executor that runs the writers of this connection
+     */
+    protected void start(ThreadFactory threadFactory, Executor writerExecutor) {
         if (started) {
             throw new IllegalStateException("Cannot start a SocketConnection twice");
         }
         started = true;
-        Thread thread = new Thread(this::receiveMessages);
+        synchronized (outbox) {
+            writers = writerExecutor;
+        }
+        if (endpoint != null) {
+            endpoint.start(this);
+            return;
+        }
+        Thread thread = threadFactory.newThread(this::receiveMessages);
         thread.start();
     }
 
@@ -73,10 +148,16 @@ public abstract class SocketConnection {
     private void receiveMessages() {
         handleStart();
         try {
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                handleMessage(inputLine);
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int count;
+            while ((count = in.read(bytes)) >= 0) {
+                buffer.position(0).limit(count);
+                if (!codec.decode(buffer, this) || isClosed()) {
+                    return; // the other side broke the protocol, or a handler closed the connection
+                }
             }
+            codec.finish(this);
         } catch (IOException e) {
             // ignore the exception, just close the connection
         } finally {
@@ -88,27 +169,134 @@ public abstract class SocketConnection {
     /**
      * Send a message over the network. The message will be sent as a single line.
      * The message should not contain any newlines.
+     * The message is queued and written by a writer, so the caller never waits for a slow client. The writer writes
+     * all messages that are queued at once, with a single flush. If MAX_QUEUED_MESSAGES messages are still waiting,
+     * the message is refused and handleBackpressure is called.
      *
      * @param message the message to send
-     * @return true if the message was sent successfully, false if the connection was closed
+     * @return true if the message was queued, false if the connection was closed or the client is too far behind
      */
     protected boolean sendMessage(String message) {
+        return send(codec.encode(message));
+    }
+
+    /**
+     * Send a binary frame that carries a single value, e.g. the location of a move. This is only possible after
+     * useBinaryFraming. Like sendMessage, the frame is queued.
+     *
+     * @param type  the type of the frame, from 1 to 127, which tells the other side what the value means
+     * @param value the value, which is not negative
+     * @return true if the frame was queued, false if the connection was closed or the client is too far behind
+     * @throws IllegalStateException if the connection does not use binary frames
+     */
+    //@ requires type > 0 && type < 128 && value >= 0;
+    protected boolean sendFrame(int type, int value) {
+        if (!codec.isBinaryFraming()) {
+            throw new IllegalStateException("Frames can only be sent after switching to binary frames");
+        }
+        return send(MessageCodec.encodeFrame(type, value));
+    }
+
+    /**
+     * Switches to binary frames, in both directions: every message that is sent or received after this call is a
+     * frame, see MessageCodec. Text messages are still possible, as text frames.
+     * Both sides have to switch at the same point of the conversation, which they agree on in their messages, e.g.
+     * right after a handshake. So this should be called by the receiving thread, in handleMessage.
+     */
+    protected void useBinaryFraming() {
+        codec.useBinaryFraming();
+    }
+
+    /**
+     * Checks whether the connection uses binary frames.
+     *
+     * @return true after useBinaryFraming
+     */
+    protected boolean isBinaryFraming() {
+        return codec.isBinaryFraming();
+    }
+
+    /**
+     * Queues encoded bytes to be sent.
+     *
+     * @param bytes the encoded message
+     * @return true if the message was queued, false if the connection was closed or the client is too far behind
+     */
+    private boolean send(byte[] bytes) {
+        if (endpoint != null) {
+            return endpoint.send(bytes);
+        }
+        synchronized (outbox) {
+            if (socket.isClosed()) {
+                return false;
+            }
+            if (outbox.size() < MAX_QUEUED_MESSAGES) {
+                outbox.add(bytes);
+                if (!writing) {
+                    writing = true;
+                    writers.execute(this::writeMessages);
+                }
+                return true;
+            }
+        }
+        handleBackpressure();
+        return false;
+    }
+
+    /**
+     * The writer, which writes the queued messages until the outbox is empty. Messages that are queued while it
+     * writes are written in the next batch, so a client that receives many messages gets few flushes.
+     */
+    private void writeMessages() {
+        List<byte[]> batch = new ArrayList<>();
         try {
-            out.write(message);
-            out.newLine();
-            out.flush();
-            return true;
+            while (true) {
+                synchronized (outbox) {
+                    if (outbox.isEmpty()) {
+                        writing = false;
+                        return;
+                    }
+                    batch.addAll(outbox);
+                    outbox.clear();
+                }
+                for (byte[] message : batch) {
+                    out.write(message);
+                }
+                out.flush();
+                batch.clear();
+            }
         } catch (IOException e) {
-            // an error occurred while writing, close the connection and return false
+            // an error occurred while writing, close the connection and drop the remaining messages
+            synchronized (outbox) {
+                outbox.clear();
+                writing = false;
+            }
             close();
-            return false;
         }
     }
 
+    /**
+     * Creates the pool of platform writers. Its threads are daemons, so a client can exit while the pool is idle.
+     *
+     * @return the pool
+     */
+    private static Executor platformWriters() {
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "socket-writer");
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
     /**
      * Close the network connection. This will also cause the thread that receives messages to stop.
      */
     protected void close() {
+        if (endpoint != null) {
+            endpoint.close();
+            return;
+        }
         try {
             // the way TCP works, the other side will receive a close event, and will then close the socket
             // from its side as well, resulting in a closed connection in the reading thread.
@@ -120,6 +308,42 @@ public abstract class SocketConnection {
         }
     }
 
+    /**
+     * Checks whether the connection was closed, by either side.
+     *
+     * @return true if the connection is closed
+     */
+    boolean isClosed() {
+        return endpoint != null ? endpoint.isClosed() : socket.isClosed();
+    }
+
+    /**
+     * Decodes bytes that a SelectorLoop received and delivers the messages that are complete.
+     *
+     * @param buffer the bytes that were received
+     * @return false if the bytes break the protocol
+     */
+    boolean decode(ByteBuffer buffer) {
+        return codec.decode(buffer, this);
+    }
+
+    /**
+     * Delivers the last message that a SelectorLoop received, if it was not ended by a newline when the other side
+     * closed the connection.
+     */
+    void finishMessages() {
+        codec.finish(this);
+    }
+
+    /**
+     * Handles a client that does not keep up with the messages that are sent to it, i.e., MAX_QUEUED_MESSAGES
+     * messages are still waiting to be written. By default, the connection is closed, because the client would miss
+     * the messages that are refused.
+     */
+    protected void handleBackpressure() {
+        close();
+    }
+
     /**
      * Handles a start of the connection. This is invoked when the reading thread is started.
      */
@@ -134,6 +358,17 @@ public abstract class SocketConnection {
      */
     protected abstract void handleMessage(String message);
 
+    /**
+     * Handles a binary frame that carries a single value, received after useBinaryFraming.
+     * By default, the frame is ignored.
+     *
+     * @param type  the type of the frame
+     * @param value the value the frame carries
+     */
+    protected void handleFrame(int type, int value) {
+        // do nothing by default
+    }
+
     /**
      * Handles a disconnect from the connection, i.e., when the connection is closed.
      */
@@ -1,16 +1,31 @@
 package networking;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements a networking server which accepts connection from clients.
+ * The connections either get a thread of their own, or are shared by a few SelectorLoops, see ConnectionMode.
  * Inspired from networking classes from Software Systems, week 7.
  */
 public abstract class SocketServer {
+    // The number of connections that may wait to be accepted. The default of 50 makes bursts of clients retry.
+    private static final int ACCEPT_BACKLOG = 1024;
+
     private final ServerSocket serverSocket;
+    private final ConnectionMode connectionMode;
+    private final SelectorLoop[] selectorLoops; // empty unless the connection mode is SELECTOR
+    private final ThreadFactory connectionThreadFactory;
+    private final Executor connectionWriters;
+    private final AtomicInteger nextSelectorLoop = new AtomicInteger();
 
     /**
      * Creates a new Server that listens for connections on the given port.
@@ -20,7 +35,47 @@ public abstract class SocketServer {
      * @throws IOException if an I/O error occurs when opening the socket
      */
     protected SocketServer(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
+        this(port, ConnectionMode.THREAD);
+    }
+
+    /**
+     * Creates a new Server that listens for connections on the given port and handles them in the given mode.
+     * Use port 0 to let the system pick a free port.
+     * In SELECTOR mode, the server starts one SelectorLoop per processor.
+     *
+     * @param port           the port on which this server listens for connections
+     * @param connectionMode the way in which the connections are handled
+     * @throws IOException                   if an I/O error occurs when opening the socket or the selectors
+     * @throws UnsupportedOperationException if the mode is VIRTUAL_THREAD and the runtime is older than Java 21
+     */
+    protected SocketServer(int port, ConnectionMode connectionMode) throws IOException {
+        this.connectionMode = connectionMode;
+        if (connectionMode == ConnectionMode.VIRTUAL_THREAD) {
+            ThreadFactory virtualThreads = virtualThreadFactory();
+            connectionThreadFactory = virtualThreads;
+            connectionWriters = command -> virtualThreads.newThread(command).start();
+        } else {
+            connectionThreadFactory = Thread::new;
+            connectionWriters = SocketConnection.PLATFORM_WRITERS;
+        }
+        if (connectionMode != ConnectionMode.SELECTOR) {
+            serverSocket = new ServerSocket(port, ACCEPT_BACKLOG);
+            selectorLoops = new SelectorLoop[0];
+            return;
+        }
+        // the accepted sockets need a channel, so they can be registered with a selector
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverSocket = serverChannel.socket();
+        selectorLoops = new SelectorLoop[Runtime.getRuntime().availableProcessors()];
+        try {
+            serverSocket.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            for (int i = 0; i < selectorLoops.length; i++) {
+                selectorLoops[i] = new SelectorLoop("selector-" + i);
+            }
+        } catch (IOException e) {
+            closeSocketAndLoops();
+            throw e;
+        }
     }
 
     /**
@@ -32,6 +87,47 @@ public abstract class SocketServer {
         return serverSocket.getLocalPort();
     }
 
+    /**
+     * Returns the way in which this server handles its connections.
+     *
+     * @return the connection mode of this server
+     */
+    protected ConnectionMode getConnectionMode() {
+        return connectionMode;
+    }
+
+    /**
+     * Returns the factory of the threads that receive the messages of the connections: virtual threads in
+     * VIRTUAL_THREAD mode, platform threads otherwise.
+     *
+     * @return the factory of the threads of the connections
+     */
+    protected ThreadFactory getConnectionThreadFactory() {
+        return connectionThreadFactory;
+    }
+
+    /**
+     * Returns the executor that runs the writers of the connections: a virtual thread per writer in VIRTUAL_THREAD
+     * mode, a shared pool of platform threads otherwise.
+     *
+     * @return the executor of the writers of the connections
+     */
+    protected Executor getConnectionWriters() {
+        return connectionWriters;
+    }
+
+    /**
+     * Returns the selector loop that should handle the next connection. The loops take turns.
+     *
+     * @return a selector loop of this server, or null if the connections get a thread of their own
+     */
+    protected SelectorLoop nextSelectorLoop() {
+        if (selectorLoops.length == 0) {
+            return null;
+        }
+        return selectorLoops[Math.floorMod(nextSelectorLoop.getAndIncrement(), selectorLoops.length)];
+    }
+
     /**
      * Accepts connections and starts a new thread for each connection.
      * This method will block until the server socket is closed, for example by invoking closeServerSocket.
@@ -43,9 +139,9 @@ public abstract class SocketServer {
             try {
                 Socket socket = serverSocket.accept();
                 handleConnection(socket);
-            } catch (SocketException ignored) {
+            } catch (SocketException | AsynchronousCloseException ignored) {
                 // this can happen if the ServerSocket is closed while accepting,
-                // in which case we just ignore the exception
+                // in which case we just ignore the exception (the latter if the ServerSocket has a channel)
             }
         }
     }
@@ -53,9 +149,16 @@ public abstract class SocketServer {
     /**
      * Closes the server socket. This will cause the server to stop accepting new connections.
      * If called from a different thread than the one running acceptConnections, then that thread will return from
-     * acceptConnections.
+     * acceptConnections. The selector loops, if any, are stopped, which closes their connections.
      */
     protected synchronized void close() {
+        closeSocketAndLoops();
+    }
+
+    /**
+     * Closes the server socket and stops the selector loops that were started.
+     */
+    private void closeSocketAndLoops() {
         try {
             if (!serverSocket.isClosed()) {
                 serverSocket.close();
@@ -63,10 +166,36 @@ public abstract class SocketServer {
         } catch (IOException ignored) {
             // ignore, we are closing the server socket anyway
         }
+        for (SelectorLoop selectorLoop : selectorLoops) {
+            if (selectorLoop != null) {
+                selectorLoop.close();
+            }
+        }
+    }
+
+    /**
+     * Creates a factory of virtual threads. The project is built for Java 17, so the factory is looked up at run time,
+     * and only the VIRTUAL_THREAD mode needs Java 21.
+     *
+     * @return the factory
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "connection-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("The VIRTUAL_THREAD mode requires Java 21", e);
+        }
     }
 
     /**
      * Creates a new connection handler for the given socket.
+     * In SELECTOR mode, the socket has a channel, and the connection should be given to nextSelectorLoop().
+     * Otherwise, the connection should be started on a thread of getConnectionThreadFactory(), with the writers of
+     * getConnectionWriters().
      *
      * @param socket the socket for the connection
      */
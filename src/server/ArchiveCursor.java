@@ -0,0 +1,170 @@
+package server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the games of a segment of a GameArchive, one at a time, straight from the memory-mapped file.
+ * The cursor is positioned on a game by next or seek, and its getters read the fields of that game, so a scan over
+ * millions of games does not allocate. A cursor is used by one thread at a time.
+ */
+public final class ArchiveCursor {
+    private final MappedByteBuffer segment;
+    private int offset = -1; // the offset of the current game, or -1 before the first game
+    private int next = GameArchive.SEGMENT_HEADER_SIZE; // the offset of the next game
+    private boolean wide; // true if the moves of the current game are shorts
+
+    /**
+     * Opens a segment and positions the cursor before its first game.
+     *
+     * @param path the path of the segment.
+     * @throws IOException if the segment cannot be read, or is not a segment.
+     */
+    public ArchiveCursor(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (segment.limit() < GameArchive.SEGMENT_HEADER_SIZE || segment.getInt(0) != GameArchive.MAGIC
+                || segment.getInt(4) != GameArchive.VERSION) {
+            throw new IOException("Not a segment of version " + GameArchive.VERSION);
+        }
+    }
+
+    /**
+     * Moves to the next game.
+     *
+     * @return false if there are no more complete games.
+     */
+    public boolean next() {
+        return moveTo(next);
+    }
+
+    /**
+     * Moves to the game at an offset from the index of the segment, see GameArchive.readIndex. Afterwards, next moves
+     * to the game after it.
+     *
+     * @param gameOffset the offset of the game.
+     * @return false if there is no complete game at the offset.
+     */
+    public boolean seek(int gameOffset) {
+        return gameOffset >= GameArchive.SEGMENT_HEADER_SIZE && moveTo(gameOffset);
+    }
+
+    /**
+     * Moves to the game at an offset, if it is complete.
+     */
+    private boolean moveTo(int gameOffset) {
+        if (gameOffset + GameArchive.GAME_HEADER_SIZE > segment.limit()) {
+            return false;
+        }
+        boolean wideMoves = GameArchive.lines(segment.get(gameOffset + 8), segment.get(gameOffset + 9)) > 256;
+        int end = gameOffset + GameArchive.GAME_HEADER_SIZE
+                + (segment.getShort(gameOffset + 23) & 0xFFFF) * (wideMoves ? 2 : 1);
+        if (end > segment.limit()) {
+            return false;
+        }
+        offset = gameOffset;
+        next = end;
+        wide = wideMoves;
+        return true;
+    }
+
+    /**
+     * Returns the end of the last complete game that the cursor passed, where a scan with next stopped.
+     *
+     * @return the offset after the game.
+     */
+    int end() {
+        return next;
+    }
+
+    /**
+     * Returns the offset of the current game in the segment.
+     *
+     * @return the offset, as used by the index of the segment.
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the id of the player that moved first, see GameArchive.readPlayers.
+     *
+     * @return the id of the player.
+     */
+    public int player1() {
+        return segment.getInt(offset);
+    }
+
+    /**
+     * Returns the id of the player that moved second.
+     *
+     * @return the id of the player.
+     */
+    public int player2() {
+        return segment.getInt(offset + 4);
+    }
+
+    public int rows() {
+        return segment.get(offset + 8);
+    }
+
+    public int columns() {
+        return segment.get(offset + 9);
+    }
+
+    /**
+     * Checks whether the game ended because a player disconnected.
+     *
+     * @return true if a player disconnected, false if the game was played to the end.
+     */
+    public boolean disconnected() {
+        return segment.get(offset + 10) / 4 == GameArchive.DISCONNECT;
+    }
+
+    /**
+     * Returns the winner of the game.
+     *
+     * @return 1 if the player that moved first won, 2 if the other player won, 0 for a draw.
+     */
+    public int winner() {
+        return segment.get(offset + 10) % 4;
+    }
+
+    /**
+     * Returns the start of the game.
+     *
+     * @return the time in milliseconds since the epoch.
+     */
+    public long startMillis() {
+        return segment.getLong(offset + 11);
+    }
+
+    /**
+     * Returns the duration of the game.
+     *
+     * @return the time between the start and the end of the game, in milliseconds.
+     */
+    public int durationMillis() {
+        return segment.getInt(offset + 19);
+    }
+
+    public int moveCount() {
+        return segment.getShort(offset + 23) & 0xFFFF;
+    }
+
+    /**
+     * Returns a move of the game.
+     *
+     * @param index the index of the move, from 0.
+     * @return the location of the line.
+     */
+    //@ requires index >= 0 && index < moveCount();
+    public int move(int index) {
+        int movesOffset = offset + GameArchive.GAME_HEADER_SIZE;
+        return wide ? segment.getShort(movesOffset + 2 * index) & 0xFFFF : segment.get(movesOffset + index) & 0xFF;
+    }
+}
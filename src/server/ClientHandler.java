@@ -5,15 +5,15 @@ package server;
  */
 public class ClientHandler {
     private final ServerConnection serverConnection;
-    private String username;
+    // The username and the state are also read, and the state is changed, by the threads of other clients.
+    private volatile String username;
     private final Server server;
 
-    private ClientState state;
+    private volatile ClientState state;
 
     public ClientHandler(ServerConnection serverConnection, Server chatServer) {
         this.serverConnection = serverConnection;
         this.server = chatServer;
-        chatServer.addClient(this);
         this.state = ClientState.NEW;
     }
 
@@ -45,6 +45,25 @@ public class ClientHandler {
         server.handleList(this);
     }
 
+    /**
+     * Receives a list command from the client which asks for a page of the list.
+     *
+     * @param offset the index of the first username of the page.
+     * @param limit  the maximum number of usernames of the page.
+     */
+    public void receiveListPage(int offset, int limit) {
+        server.handleListPage(this, offset, limit);
+    }
+
+    /**
+     * Receives a list command from the client which asks for the changes since a version of the list.
+     *
+     * @param version the version of the list that the client knows.
+     */
+    public void receiveListSince(long version) {
+        server.handleListSince(this, version);
+    }
+
     /**
      * Receives a queue command from the client.
      */
@@ -91,9 +110,9 @@ public class ClientHandler {
     }
 
     /**
-     * Sends a list of all the clients to the client.
+     * Sends a list of the clients to the client.
      *
-     * @param list the list of clients.
+     * @param list the encoded list message.
      */
     public void sendList(String list) {
         serverConnection.sendList(list);
@@ -122,7 +141,7 @@ public class ClientHandler {
      * Sends a game over message to the client.
      *
      * @param reason the reason for the game over.
-     * @param winner the winner of the game.
+     * @param winner the winner of the game, or null if the game is a draw.
      */
     public void sendGameOver(String reason, String winner) {
         serverConnection.sendGameOver(reason, winner);
@@ -130,14 +149,14 @@ public class ClientHandler {
 
     /**
      * Sends an error message to the client.
-     * Disconnects the client from the server in case of an error.
-     * The disconnection is done to prevent malicious clients from sending erroneous commands.
+     * The client leaves the queue, and its game ends as if it disconnected, to prevent malicious clients from
+     * sending erroneous commands. It stays connected and logged in, so it can still list and queue.
      *
      * @param errorMessage the error message.
      */
     public void sendError(String errorMessage) {
         serverConnection.sendError(errorMessage);
-        handleDisconnect();
+        server.handleClientError(this);
     }
 
 
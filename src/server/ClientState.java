@@ -3,7 +3,8 @@ package server;
 /**
  * Represents the state of a client.
  * Created to facilitate the handling of commands at the right time.
+ * A client that disconnected is DISCONNECTED for good, so it is never queued or put in a game again.
  */
 public enum ClientState {
-    NEW, CONNECTED, LOGGED_IN, IN_GAME
+    NEW, CONNECTED, LOGGED_IN, IN_GAME, DISCONNECTED
 }
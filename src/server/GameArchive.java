@@ -0,0 +1,466 @@
+package server;
+
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.DotsAndBoxesGame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An archive of the finished games in a compact format, which is small and fast to scan, for analyzing many games
+ * offline.
+ * The archive is a directory of segment files. A segment holds the games that ended on one day (UTC). It is named after
+ * that day and a sequence number, e.g. 2026-10-17-000.games, so the segments of a range of days are found from their
+ * names alone, see segments. A segment starts with MAGIC and VERSION, followed by the games. Each game is a header of
+ * GAME_HEADER_SIZE bytes followed by its moves:
+ * <ul>
+ *     <li>the ids of the players, in the order of play, as ints;</li>
+ *     <li>the number of rows and columns of the board, as bytes;</li>
+ *     <li>the result as a byte: 4 times the reason, VICTORY or DISCONNECT, plus the winner, which is 1 or 2, or 0 for
+ *     a draw;</li>
+ *     <li>the start of the game in milliseconds since the epoch, as a long, and its duration in milliseconds, as an
+ *     int;</li>
+ *     <li>the number of moves as a short, followed by the location of every move as a byte, or as a short on boards
+ *     of more than 256 lines.</li>
+ * </ul>
+ * A game on the default board takes 85 bytes. The usernames are stored once, in PLAYERS_FILE, where the id of a player
+ * is the index of its username. A segment is complete when its day ends, when it reaches SEGMENT_SIZE, or when the
+ * archive is closed. Then an index of the games of every player is written next to it, see readIndex. The index of a
+ * segment that was left behind by a crash is rebuilt when the archive is opened. Read the games with an ArchiveCursor.
+ * The games are written by the thread of the archive, so a game that ends does not wait for the disk.
+ */
+public final class GameArchive implements Closeable {
+    /**
+     * The first int of a segment.
+     */
+    public static final int MAGIC = 0x44424741; // "DBGA"
+    /**
+     * The first int of an index.
+     */
+    public static final int INDEX_MAGIC = 0x44424749; // "DBGI"
+    /**
+     * The version of the format of the segments and the indexes, the second int of both.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The size of the header of a game.
+     */
+    public static final int GAME_HEADER_SIZE = 25;
+    /**
+     * The size at which a segment is completed.
+     */
+    public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    /**
+     * The file of the usernames: for every player, in the order of the ids, the length of the username as a short
+     * and its UTF-8 bytes.
+     */
+    public static final String PLAYERS_FILE = "players";
+    static final String SEGMENT_SUFFIX = ".games";
+    static final String INDEX_SUFFIX = ".index";
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int VICTORY = 0;
+    static final int DISCONNECT = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The games that were added and not written yet.
+    private final AtomicInteger queued = new AtomicInteger();
+    // Only used by the thread of the archive.
+    private final Map<String, Integer> players = new HashMap<>();
+    private final FileChannel playersFile;
+    private ByteBuffer newPlayers = ByteBuffer.allocate(1024);
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private FileChannel segment; // null until the first game of a segment
+    private Path segmentPath;
+    private LocalDate segmentDate;
+    private int segmentSize;
+    private final Map<Integer, List<Integer>> segmentIndex = new TreeMap<>();
+
+    /**
+     * Opens the archive in the given directory, creating it if it does not exist, and starts its thread. The games
+     * are written to a new segment.
+     *
+     * @param directory the directory of the archive.
+     * @throws IOException if the archive cannot be opened.
+     */
+    public GameArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        playersFile = FileChannel.open(directory.resolve(PLAYERS_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            List<String> names = new ArrayList<>();
+            long end = readPlayers(playersFile, names);
+            playersFile.truncate(end); // a username that was cut off by a crash
+            playersFile.position(end);
+            for (String name : names) {
+                players.put(name, players.size());
+            }
+            for (Path path : segments(directory, LocalDate.MIN, LocalDate.MAX)) {
+                if (!Files.exists(indexPath(path))) {
+                    rebuildIndex(path);
+                }
+            }
+        } catch (IOException e) {
+            playersFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a game that ended. Called while holding the lock of the game, before it is reset; the game is copied, and
+     * written by the thread of the archive.
+     *
+     * @param session      the game.
+     * @param disconnected true if the game ended because a player disconnected, false if it was played to the end.
+     * @param winner       the winner, 1 for the player that moved first, 2 for the other player, 0 for a draw.
+     */
+    void add(GameSession session, boolean disconnected, int winner) {
+        add(session.client1().getUsername(), session.client2().getUsername(), session.game(), session.startMillis(),
+                disconnected, winner);
+    }
+
+    /**
+     * Adds a game that ended, which ends now. The game is copied, and written by the thread of the archive.
+     *
+     * @param player1      the username of the player that moved first.
+     * @param player2      the username of the other player.
+     * @param game         the game.
+     * @param startMillis  the start of the game, in milliseconds since the epoch.
+     * @param disconnected true if the game ended because a player disconnected, false if it was played to the end.
+     * @param winner       the winner, 1 for the player that moved first, 2 for the other player, 0 for a draw.
+     */
+    public void add(String player1, String player2, DotsAndBoxesGame game, long startMillis, boolean disconnected,
+                    int winner) {
+        int result = 4 * (disconnected ? DISCONNECT : VICTORY) + winner;
+        int rows = game.board.getGeometry().getRows();
+        int columns = game.board.getGeometry().getColumns();
+        int[] moves = new int[game.getMoveCount()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = game.getMove(i);
+        }
+        long end = System.currentTimeMillis();
+        queued.incrementAndGet();
+        try {
+            writer.execute(() -> write(player1, player2, rows, columns, result, startMillis, end, moves));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet(); // the archive was closed
+        }
+    }
+
+    /**
+     * Writes the games that were added, completes the segment and stops the thread of the archive.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            completeSegment();
+        } catch (IOException e) {
+            System.out.println("The archive cannot be written: " + e.getMessage());
+        }
+        try {
+            playersFile.close();
+        } catch (IOException ignored) {
+            // do nothing, the archive is closed anyway
+        }
+    }
+
+    /**
+     * Writes a game, on the thread of the archive. The games are collected in a buffer, which is written when it is
+     * full or when no more games are queued.
+     */
+    private void write(String player1, String player2, int rows, int columns, int result, long start, long end,
+                       int[] moves) {
+        try {
+            LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(end), ZoneOffset.UTC);
+            boolean wide = lines(rows, columns) > 256;
+            int size = GAME_HEADER_SIZE + moves.length * (wide ? 2 : 1);
+            if (segment != null && (!date.equals(segmentDate) || segmentSize + size > SEGMENT_SIZE)) {
+                completeSegment();
+            }
+            if (segment == null) {
+                startSegment(date);
+            }
+            if (buffer.remaining() < size) {
+                flush();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+            }
+            int id1 = playerId(player1);
+            int id2 = playerId(player2);
+            segmentIndex.computeIfAbsent(id1, id -> new ArrayList<>()).add(segmentSize);
+            if (id2 != id1) {
+                segmentIndex.computeIfAbsent(id2, id -> new ArrayList<>()).add(segmentSize);
+            }
+            buffer.putInt(id1).putInt(id2).put((byte) rows).put((byte) columns).put((byte) result).putLong(start)
+                    .putInt((int) Math.min(end - start, Integer.MAX_VALUE)).putShort((short) moves.length);
+            for (int move : moves) {
+                if (wide) {
+                    buffer.putShort((short) move);
+                } else {
+                    buffer.put((byte) move);
+                }
+            }
+            segmentSize += size;
+            if (queued.decrementAndGet() == 0) {
+                flush();
+            }
+        } catch (IOException e) {
+            System.out.println("The archive cannot be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the id of a player, and gives a new player the next id.
+     *
+     * @param name the username of the player.
+     * @return the id of the player.
+     */
+    private int playerId(String name) {
+        Integer id = players.get(name);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (newPlayers.remaining() < 2 + bytes.length) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * newPlayers.capacity() + bytes.length);
+            newPlayers = larger.put(newPlayers.flip());
+        }
+        newPlayers.putShort((short) bytes.length).put(bytes);
+        players.put(name, players.size());
+        return players.size() - 1;
+    }
+
+    /**
+     * Writes the buffered usernames and games. The usernames come first, so every id in a segment has a username.
+     *
+     * @throws IOException if the archive cannot be written.
+     */
+    private void flush() throws IOException {
+        newPlayers.flip();
+        while (newPlayers.hasRemaining()) {
+            playersFile.write(newPlayers);
+        }
+        newPlayers.clear();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Creates the next segment of a day.
+     *
+     * @param date the day of the games of the segment.
+     * @throws IOException if the segment cannot be created.
+     */
+    private void startSegment(LocalDate date) throws IOException {
+        int sequence = 0;
+        Path path;
+        do {
+            path = directory.resolve(String.format("%s-%03d%s", date, sequence++, SEGMENT_SUFFIX));
+        } while (Files.exists(path));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentPath = path;
+        segmentDate = date;
+        buffer.putInt(MAGIC).putInt(VERSION);
+        segmentSize = SEGMENT_HEADER_SIZE;
+    }
+
+    /**
+     * Writes the rest of the segment, forces it to disk and writes its index.
+     *
+     * @throws IOException if the segment cannot be written.
+     */
+    private void completeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        flush();
+        playersFile.force(false);
+        segment.force(false);
+        segment.close();
+        segment = null;
+        writeIndex(segmentPath, segmentIndex);
+        segmentIndex.clear();
+    }
+
+    /**
+     * Rebuilds the index of a segment that was not completed, after cutting off a game that was not written
+     * completely.
+     *
+     * @param path the path of the segment.
+     * @throws IOException if the segment cannot be read or the index cannot be written.
+     */
+    private static void rebuildIndex(Path path) throws IOException {
+        if (Files.size(path) < SEGMENT_HEADER_SIZE) {
+            Files.delete(path); // no game was written to it
+            return;
+        }
+        Map<Integer, List<Integer>> index = new TreeMap<>();
+        ArchiveCursor cursor = new ArchiveCursor(path);
+        while (cursor.next()) {
+            index.computeIfAbsent(cursor.player1(), id -> new ArrayList<>()).add(cursor.offset());
+            if (cursor.player2() != cursor.player1()) {
+                index.computeIfAbsent(cursor.player2(), id -> new ArrayList<>()).add(cursor.offset());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(cursor.end());
+            channel.force(false);
+        }
+        writeIndex(path, index);
+    }
+
+    /**
+     * Writes the index of a segment: INDEX_MAGIC, VERSION and the number of players, followed by, for every player in
+     * the order of the ids, its id, the number of its games and the offsets of its games in the segment, as ints.
+     *
+     * @param segment the path of the segment.
+     * @param index   the offsets of the games of every player, by id, in the order of the ids.
+     * @throws IOException if the index cannot be written.
+     */
+    private static void writeIndex(Path segment, Map<Integer, List<Integer>> index) throws IOException {
+        int size = 12;
+        for (List<Integer> offsets : index.values()) {
+            size += 8 + 4 * offsets.size();
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size).putInt(INDEX_MAGIC).putInt(VERSION).putInt(index.size());
+        for (Map.Entry<Integer, List<Integer>> entry : index.entrySet()) {
+            bytes.putInt(entry.getKey()).putInt(entry.getValue().size());
+            for (int offset : entry.getValue()) {
+                bytes.putInt(offset);
+            }
+        }
+        Files.write(indexPath(segment), bytes.array());
+    }
+
+    /**
+     * Reads the index of a complete segment.
+     *
+     * @param segment the path of the segment.
+     * @return the offsets of the games of every player, by id, for ArchiveCursor.seek.
+     * @throws IOException if the index cannot be read or is not an index.
+     */
+    public static Map<Integer, int[]> readIndex(Path segment) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(indexPath(segment)));
+        if (bytes.remaining() < 12 || bytes.getInt() != INDEX_MAGIC || bytes.getInt() != VERSION) {
+            throw new IOException("Not an index of version " + VERSION);
+        }
+        int count = bytes.getInt();
+        Map<Integer, int[]> index = new HashMap<>(2 * count);
+        for (int i = 0; i < count; i++) {
+            int id = bytes.getInt();
+            int[] offsets = new int[bytes.getInt()];
+            bytes.asIntBuffer().get(offsets);
+            bytes.position(bytes.position() + 4 * offsets.length);
+            index.put(id, offsets);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the segments with the games that ended in a range of days, in the order in which they were written.
+     *
+     * @param directory the directory of the archive.
+     * @param from      the first day.
+     * @param to        the last day.
+     * @return the paths of the segments.
+     * @throws IOException if the directory cannot be read.
+     */
+    public static List<Path> segments(Path directory, LocalDate from, LocalDate to) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                LocalDate date = LocalDate.parse(name.substring(0, name.lastIndexOf('-')));
+                if (!date.isBefore(from) && !date.isAfter(to)) {
+                    segments.add(path);
+                }
+            }
+        }
+        Collections.sort(segments); // the names start with the day, followed by the sequence number
+        return segments;
+    }
+
+    /**
+     * Reads the usernames of an archive.
+     *
+     * @param directory the directory of the archive.
+     * @return the usernames, where the index of a username is the id of the player.
+     * @throws IOException if the usernames cannot be read.
+     */
+    public static List<String> readPlayers(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(directory.resolve(PLAYERS_FILE), StandardOpenOption.READ)) {
+            readPlayers(channel, names);
+        }
+        return names;
+    }
+
+    /**
+     * Reads the usernames from the players file.
+     *
+     * @param channel the players file.
+     * @param names   the list to add the usernames to.
+     * @return the position after the last complete username.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long readPlayers(FileChannel channel, List<String> names) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+        MoveJournal.readFully(channel, bytes, 0);
+        bytes.flip();
+        while (bytes.remaining() >= 2 && bytes.remaining() >= 2 + bytes.getShort(bytes.position())) {
+            byte[] name = new byte[bytes.getShort()];
+            bytes.get(name);
+            names.add(new String(name, StandardCharsets.UTF_8));
+        }
+        return bytes.position();
+    }
+
+    /**
+     * Returns the number of lines of a board.
+     */
+    static int lines(int rows, int columns) {
+        return 2 * rows * columns + rows + columns;
+    }
+
+    private static Path indexPath(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+}
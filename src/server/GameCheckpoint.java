@@ -0,0 +1,288 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * A checkpoint of the games in progress, which holds the journal position from which on it has to be completed by
+ * the journal. Recovery reads the latest checkpoint and only replays the journal after that position.
+ * The file holds MAGIC and VERSION, followed by entries. An entry is its length and the CRC32C of its contents,
+ * followed by its contents: its type, FULL or DELTA, the journal position as an offset and a number of records, the
+ * id of the next game and the number of games, followed by every game: its id, the rows and columns of its board, its
+ * players as UTF strings, the number of journal records when it was taken, its number of moves and the moves as
+ * shorts. A DELTA entry ends with the number of games that ended and their ids.
+ * The first entry is FULL and holds all games in progress. Every DELTA entry after it only holds the games that
+ * changed, and the games that ended, so a checkpoint costs as much as the games that changed. Every game is encoded on
+ * its own, so a GameCheckpointer only encodes the games that changed, too.
+ * A FULL checkpoint is written to a temporary file that replaces the previous checkpoint atomically. A DELTA entry is
+ * appended and forced; one that was not written completely is ignored, like the last batch of a MoveJournal.
+ */
+public final class GameCheckpoint {
+    static final int MAGIC = 0x44424350; // "DBCP"
+    static final int VERSION = 2;
+    static final byte FULL = 1;
+    static final byte DELTA = 2;
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_HEADER_SIZE = 8;
+
+    /**
+     * The contents of a checkpoint.
+     *
+     * @param journalPosition the position in the journal from which on the journal has to be replayed.
+     * @param nextGameId      the id of the next game.
+     * @param games           the games in progress.
+     */
+    public record Contents(MoveJournal.Position journalPosition, long nextGameId, List<GameRecord> games) {
+    }
+
+    private GameCheckpoint() {
+        // only static methods
+    }
+
+    /**
+     * Returns the path of the checkpoint that belongs to a journal.
+     *
+     * @param journal the path of the journal.
+     * @return the path of the checkpoint, next to the journal.
+     */
+    public static Path pathFor(Path journal) {
+        return journal.resolveSibling(journal.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Reads a checkpoint: its FULL entry, updated by the DELTA entries after it. Reading stops at the first entry that
+     * is incomplete or has an invalid checksum.
+     *
+     * @param path the path of the checkpoint.
+     * @return the contents, or null if there is no checkpoint.
+     * @throws IOException if the checkpoint cannot be read or is corrupt.
+     */
+    public static Contents read(Path path) throws IOException {
+        DataInputStream in;
+        long remaining; // the number of bytes after the entries that were read
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            remaining = Files.size(path) - HEADER_SIZE;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try (in) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a checkpoint of version " + VERSION);
+            }
+            Map<Long, GameRecord> games = new LinkedHashMap<>();
+            MoveJournal.Position journalPosition = null;
+            long nextGameId = 0;
+            CRC32C crc = new CRC32C();
+            byte[] contents;
+            while ((contents = readEntry(in, crc, remaining)) != null) {
+                remaining -= ENTRY_HEADER_SIZE + contents.length;
+                DataInputStream entry = new DataInputStream(new ByteArrayInputStream(contents));
+                byte type = entry.readByte();
+                if (type != (journalPosition == null ? FULL : DELTA)) {
+                    throw new IOException("Unexpected entry type " + type);
+                }
+                journalPosition = new MoveJournal.Position(entry.readLong(), entry.readLong());
+                nextGameId = entry.readLong();
+                int count = entry.readInt();
+                for (int i = 0; i < count; i++) {
+                    GameRecord game = decode(entry);
+                    games.put(game.getId(), game);
+                }
+                if (type == DELTA) {
+                    int ended = entry.readInt();
+                    for (int i = 0; i < ended; i++) {
+                        games.remove(entry.readLong());
+                    }
+                }
+            }
+            if (journalPosition == null) {
+                throw new IOException("The checkpoint has no complete entry");
+            }
+            return new Contents(journalPosition, nextGameId, new ArrayList<>(games.values()));
+        }
+    }
+
+    /**
+     * Reads the contents of the next entry of a checkpoint.
+     *
+     * @param in        the checkpoint, after the previous entry.
+     * @param crc       the checksum to use.
+     * @param remaining the number of bytes of the checkpoint after the previous entry.
+     * @return the contents of the entry, or null if there are no more complete entries with a valid checksum.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    private static byte[] readEntry(DataInputStream in, CRC32C crc, long remaining) throws IOException {
+        if (remaining < ENTRY_HEADER_SIZE) {
+            return null;
+        }
+        int length = in.readInt();
+        int expected = in.readInt();
+        if (length <= 0 || length > remaining - ENTRY_HEADER_SIZE) {
+            return null;
+        }
+        byte[] contents = new byte[length];
+        in.readFully(contents);
+        crc.reset();
+        crc.update(contents);
+        return (int) crc.getValue() == expected ? contents : null;
+    }
+
+    /**
+     * Decodes a game of a checkpoint, see encode.
+     *
+     * @param in the entry, at the game.
+     * @return the game.
+     * @throws IOException if the entry ends within the game.
+     */
+    private static GameRecord decode(DataInputStream in) throws IOException {
+        GameRecord game = new GameRecord(in.readLong(), in.readByte(), in.readByte(), in.readUTF(), in.readUTF(),
+                in.readLong());
+        int moveCount = in.readShort();
+        for (int i = 0; i < moveCount; i++) {
+            game.addMove(in.readShort());
+        }
+        return game;
+    }
+
+    /**
+     * Encodes a game for a checkpoint.
+     *
+     * @param game the game.
+     * @return the bytes of the game in the checkpoint.
+     */
+    public static byte[] encode(GameRecord game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + 2 * game.getMoveCount());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(game.getId());
+            out.writeByte(game.getRows());
+            out.writeByte(game.getColumns());
+            out.writeUTF(game.getPlayer1());
+            out.writeUTF(game.getPlayer2());
+            out.writeLong(game.getJournalRecords());
+            out.writeShort(game.getMoveCount());
+            for (int i = 0; i < game.getMoveCount(); i++) {
+                out.writeShort(game.getMove(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteArrayOutputStream does not throw
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a checkpoint of all games in progress, replacing the previous one and its deltas atomically.
+     *
+     * @param path            the path of the checkpoint.
+     * @param journalPosition the position in the journal from which on the journal has to be replayed.
+     * @param nextGameId      the id of the next game.
+     * @param games           the games in progress, as encoded by encode.
+     * @return the size of the checkpoint in bytes.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public static long writeFull(Path path, MoveJournal.Position journalPosition, long nextGameId,
+                                 Collection<byte[]> games) throws IOException {
+        ByteBuffer entry = entry(FULL, journalPosition, nextGameId, games, List.of());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = {header, entry};
+            while (entry.hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path);
+        return HEADER_SIZE + entry.capacity();
+    }
+
+    /**
+     * Appends the games that changed since the previous entry to a checkpoint, and forces them to disk.
+     *
+     * @param path            the path of the checkpoint, which was written by writeFull.
+     * @param journalPosition the position in the journal from which on the journal has to be replayed.
+     * @param nextGameId      the id of the next game.
+     * @param changed         the games in progress that changed, as encoded by encode.
+     * @param ended           the ids of the games that ended.
+     * @return the number of bytes that were appended.
+     * @throws IOException if the entry cannot be written; the checkpoint may then end with a partial entry.
+     */
+    public static long appendDelta(Path path, MoveJournal.Position journalPosition, long nextGameId,
+                                   Collection<byte[]> changed, Collection<Long> ended) throws IOException {
+        ByteBuffer entry = entry(DELTA, journalPosition, nextGameId, changed, ended);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+            channel.force(false);
+        }
+        return entry.capacity();
+    }
+
+    /**
+     * Encodes an entry of a checkpoint, after its length and checksum.
+     *
+     * @param type            FULL or DELTA.
+     * @param journalPosition the position in the journal from which on the journal has to be replayed.
+     * @param nextGameId      the id of the next game.
+     * @param games           the games of the entry, as encoded by encode.
+     * @param ended           the ids of the games that ended, only written for a DELTA.
+     * @return the entry, ready to be written.
+     */
+    private static ByteBuffer entry(byte type, MoveJournal.Position journalPosition, long nextGameId,
+                                    Collection<byte[]> games, Collection<Long> ended) {
+        int size = 1 + 8 + 8 + 8 + 4 + (type == DELTA ? 4 + 8 * ended.size() : 0);
+        for (byte[] game : games) {
+            size += game.length;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + size).position(ENTRY_HEADER_SIZE);
+        entry.put(type).putLong(journalPosition.offset()).putLong(journalPosition.records()).putLong(nextGameId)
+                .putInt(games.size());
+        for (byte[] game : games) {
+            entry.put(game);
+        }
+        if (type == DELTA) {
+            entry.putInt(ended.size());
+            for (long game : ended) {
+                entry.putLong(game);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(entry.flip().position(ENTRY_HEADER_SIZE));
+        return entry.putInt(0, size).putInt(4, (int) crc.getValue()).rewind();
+    }
+
+    /**
+     * Forces the directory of a file to disk, so a file that was moved into it survives a crash. Not every platform
+     * can open a directory, e.g. Windows, which makes the move durable anyway.
+     *
+     * @param path the file in the directory.
+     */
+    private static void syncDirectory(Path path) {
+        try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+            // the directory cannot be opened on this platform
+        }
+    }
+}
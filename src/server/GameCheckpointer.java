@@ -0,0 +1,158 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a GameCheckpoint of the games in progress every CHECKPOINT_MILLIS, on a thread of its own, so only the part
+ * of the journal after the last checkpoint has to be replayed after a crash.
+ * The checkpointer keeps an encoded snapshot of every game in progress. A tick only takes a new snapshot of the games
+ * that changed since the last tick, see GameHandler.pollChangedGames, each while holding the lock of that game alone,
+ * so the other games and the server go on. The snapshots are then written without holding any lock.
+ * A tick only appends the games that changed, and the games that ended, as a delta to the checkpoint, so it costs as
+ * much as the games that changed rather than all games. Once the deltas have grown as large as the last full
+ * checkpoint, the next tick writes a full checkpoint of all games instead, which replaces the deltas. This bounds the
+ * checkpoint to about twice the size of the games, and costs as much as the deltas did.
+ * The journal before the checkpoint is cut once it holds JOURNAL_CUT_BYTES, see MoveJournal.cut.
+ */
+final class GameCheckpointer {
+    /**
+     * The time between two checkpoints, in milliseconds.
+     */
+    static final long CHECKPOINT_MILLIS = 5_000;
+    /**
+     * The size of the part of the journal before the checkpoint from which on it is cut.
+     */
+    static final long JOURNAL_CUT_BYTES = 16 * 1024 * 1024;
+
+    private GameHandler gameHandler; // set by start
+    private final MoveJournal journal;
+    private final Path path;
+    // The encoded snapshots of the games in progress, by id. Only used by the thread of the checkpointer.
+    private final Map<Long, byte[]> games = new HashMap<>();
+    private MoveJournal.Position lastPosition;
+    private boolean fullNeeded = true; // the first checkpoint of a server replaces the checkpoint of the last one
+    private long fullBytes; // the size of the last full checkpoint
+    private long deltaBytes; // the size of the deltas after it
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a checkpointer. It writes no checkpoints until it is started.
+     *
+     * @param journal the journal that the checkpoints belong to.
+     * @param path    the path of the checkpoint.
+     */
+    GameCheckpointer(MoveJournal journal, Path path) {
+        this.journal = journal;
+        this.path = path;
+    }
+
+    /**
+     * Starts writing the checkpoints of the games of a game handler, on the thread of the checkpointer.
+     *
+     * @param handler the handler of the games.
+     */
+    void start(GameHandler handler) {
+        gameHandler = handler;
+        executor.scheduleWithFixedDelay(this::tick, CHECKPOINT_MILLIS, CHECKPOINT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the recovered games that have not been resumed yet, which are in progress but have no session.
+     *
+     * @param recovered the recovered games.
+     */
+    void restore(Collection<GameRecord> recovered) {
+        executor.execute(() -> {
+            for (GameRecord game : recovered) {
+                games.put(game.getId(), GameCheckpoint.encode(game));
+            }
+        });
+    }
+
+    /**
+     * Stops the thread of the checkpointer, after the checkpoint that is being written.
+     */
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a checkpoint, unless nothing changed since the last one, and cuts the journal before it if that part has
+     * grown large enough. Called by the thread of the checkpointer, and once more after it was closed.
+     * The journal position is taken before the snapshots. Every record before it that changed a game was preceded by
+     * marking the game as changed, so the snapshot of every game holds all of its records before the position, and
+     * the records after the snapshot are told apart by their number.
+     *
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    void checkpoint() throws IOException {
+        if (gameHandler == null) {
+            return; // not started
+        }
+        MoveJournal.Position position = journal.writtenPosition();
+        List<GameSession> changed = gameHandler.pollChangedGames();
+        if (changed.isEmpty() && position.equals(lastPosition)) {
+            return;
+        }
+        List<byte[]> updated = new ArrayList<>(changed.size());
+        List<Long> ended = new ArrayList<>();
+        for (GameSession session : changed) {
+            GameRecord snapshot = gameHandler.snapshot(session);
+            if (snapshot == null) {
+                if (games.remove(session.id()) != null) { // the game is over
+                    ended.add(session.id());
+                }
+            } else {
+                byte[] encoded = GameCheckpoint.encode(snapshot);
+                games.put(session.id(), encoded);
+                updated.add(encoded);
+            }
+        }
+        try {
+            if (fullNeeded || deltaBytes >= fullBytes) {
+                fullBytes = GameCheckpoint.writeFull(path, position, gameHandler.getNextGameId(), games.values());
+                deltaBytes = 0;
+                fullNeeded = false;
+            } else {
+                deltaBytes += GameCheckpoint.appendDelta(path, position, gameHandler.getNextGameId(), updated, ended);
+            }
+        } catch (IOException e) {
+            fullNeeded = true; // the deltas were lost, and the checkpoint may end with a partial one
+            throw e;
+        }
+        lastPosition = position;
+        if (position.offset() - journal.firstPosition().offset() >= JOURNAL_CUT_BYTES) {
+            journal.cut(position);
+        }
+    }
+
+    /**
+     * A tick of the checkpointer.
+     */
+    private void tick() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            // the snapshots are kept, so the next tick writes them all in a full checkpoint
+            System.out.println("The checkpoint cannot be written: " + e.getMessage());
+        }
+    }
+}
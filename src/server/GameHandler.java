@@ -1,63 +1,366 @@
 package server;
 
 import gamelogic.model.BasicPlayer;
+import gamelogic.model.BoardGeometry;
 import gamelogic.model.DotsAndBoxesGame;
 import gamelogic.model.Mark;
 import helpers.Pair;
 import helpers.ServerProtocol;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class which represents the handler for a game.
  * The class is responsible for pairing players and hosting games
  * The class can create and host multiple independent games.
+ * Players are paired by rating, in batches, on every tick of the matchmaker, see MatchmakingQueue. The ratings are
+ * kept per username and updated after every game.
+ * If the handler has a MoveJournal, every new game, move and game over is appended to it before it is sent to the
+ * players, and a GameCheckpointer writes a checkpoint of the games that changed in the background.
+ * If the handler has a GameArchive, every game that ends is added to it.
+ * The games that were in progress when the server stopped can be restored from the journal. Such a game is resumed
+ * when both of its players have logged in again and are not in another game.
+ * The queue is guarded by this handler, while every game is guarded by its own GameSession, so moves in different
+ * games do not wait for each other or for the queue. A session lock is never taken while holding the queue lock,
+ * and the new games are announced to the players after releasing it.
  */
 public class GameHandler {
-    // The queue of players waiting to be paired with another player
-    private final Queue<ClientHandler> playerQueue = new LinkedList<>();
-    // A map of pairs of players and the game they are playing. The game is the value, the pair is the key.
-    // The pair is a helper record. See helpers package.
-    private final Map<Pair<ClientHandler, ClientHandler>, DotsAndBoxesGame> playerGameMap = new HashMap<>();
+    /**
+     * The rating of a player that has not played yet.
+     */
+    public static final int INITIAL_RATING = 1500;
+    /**
+     * The largest change of a rating after a single game.
+     */
+    public static final int RATING_FACTOR = 32;
+    /**
+     * The time between two ticks of the matchmaker, in milliseconds.
+     */
+    public static final long TICK_MILLIS = 100;
+    /**
+     * The size of the board of the games that are created.
+     */
+    public static final BoardGeometry GEOMETRY = BoardGeometry.DEFAULT;
+
+    // The queue of players waiting to be paired with another player, guarded by this.
+    private final MatchmakingQueue playerQueue = new MatchmakingQueue();
+    // Maps both players of every game to the session of that game, so the game of a player is found at once.
+    private final Map<ClientHandler, GameSession> sessions = new ConcurrentHashMap<>();
+    // Records the games, or null if they are not recorded.
+    private final MoveJournal journal;
+    // Keeps the finished games, or null if they are not archived.
+    private final GameArchive archive;
+    // Writes the checkpoints of the journal, or null if the games are not recorded.
+    private final GameCheckpointer checkpointer;
+    // The games that changed since the last checkpoint.
+    private final Set<GameSession> changedGames = ConcurrentHashMap.newKeySet();
+    // The id of the next game, guarded by this.
+    private long nextGameId = 1;
+    // The recovered games that have not been resumed yet, by the usernames of both players, guarded by this.
+    private final Map<String, GameRecord> recoveredGames = new HashMap<>();
+    // The players that wait for the opponent of their recovered game, by username, guarded by this.
+    private final Map<String, ClientHandler> waitingPlayers = new HashMap<>();
+    // False once all recovered games were resumed, so the end of a game does not look for one.
+    private volatile boolean resuming = false;
+    // The ratings of the players that have played, by username.
+    private final Map<String, Integer> ratings = new ConcurrentHashMap<>();
+    // Pairs the queued players on every tick.
+    private final ScheduledExecutorService matchmaker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "matchmaker");
+        thread.setDaemon(true);
+        return thread;
+    });
 
+    /**
+     * Creates a game handler that does not record its games.
+     */
+    public GameHandler() {
+        this(null);
+    }
+
+    /**
+     * Creates a game handler that records its games in the given journal. The checkpoints are written next to the
+     * journal, see GameCheckpoint.pathFor.
+     *
+     * @param journal the journal, or null if the games are not recorded.
+     */
+    public GameHandler(MoveJournal journal) {
+        this(journal, null);
+    }
+
+    /**
+     * Creates a game handler that records its games in the given journal, and archives the games that end.
+     *
+     * @param journal the journal, or null if the games are not recorded.
+     * @param archive the archive, or null if the finished games are not archived.
+     */
+    public GameHandler(MoveJournal journal, GameArchive archive) {
+        this.journal = journal;
+        this.archive = archive;
+        checkpointer = journal == null ? null
+                : new GameCheckpointer(journal, GameCheckpoint.pathFor(journal.getPath()));
+    }
+
+    /**
+     * Starts the matchmaker, and the checkpointer if the games are recorded. Called once, after the recovered games
+     * were restored and before players are queued.
+     */
+    public void start() {
+        if (checkpointer != null) {
+            checkpointer.start(this);
+        }
+        matchmaker.scheduleWithFixedDelay(this::createGame, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the matchmaker, and closes the journal after writing the records that are still pending. Then writes a
+     * last checkpoint, so the next server does not have to replay the journal, and closes the archive last, so the
+     * games that end while the server shuts down are archived too.
+     * The games that are being played are not ended.
+     */
+    public void close() {
+        matchmaker.shutdownNow();
+        if (journal != null) {
+            checkpointer.close();
+            journal.close();
+            try {
+                checkpointer.checkpoint();
+            } catch (IOException e) {
+                System.out.println("The checkpoint cannot be written: " + e.getMessage());
+            }
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    /**
+     * Returns the rating of a player.
+     *
+     * @param username the username of the player.
+     * @return the rating, or INITIAL_RATING if the player has not played yet.
+     */
+    public int getRating(String username) {
+        return ratings.getOrDefault(username, INITIAL_RATING);
+    }
+
+    public synchronized void addPlayer(ClientHandler player) {
+        playerQueue.add(player, getRating(player.getUsername()), currentMillis());
+    }
 
-    public void addPlayer(ClientHandler player) {
-        playerQueue.add(player);
+    public synchronized void removePlayer(ClientHandler player) {
+        playerQueue.remove(player);
     }
 
-    public void removePlayer(ClientHandler player) {
+    /**
+     * Marks a player as disconnected, and removes it from the queue and from the players that wait for a recovered
+     * game. This is atomic, so no game is created or resumed for the player afterwards.
+     *
+     * @param player the player that disconnected.
+     */
+    public synchronized void disconnect(ClientHandler player) {
         playerQueue.remove(player);
+        if (player.getUsername() != null) {
+            waitingPlayers.remove(player.getUsername(), player);
+        }
+        player.setState(ClientState.DISCONNECTED);
     }
 
     /**
-     * Creates a new game for the first two players in the queue.
-     * If there are not enough players, nothing happens.
+     * Adds the player to the queue, or removes the player if it is already queued. The player is paired on the next
+     * tick of the matchmaker that finds an opponent for it.
+     * The check and the change are atomic, so a player is never queued while a game is being created for it.
+     *
+     * @param player the player that toggles its place in the queue.
+     * @return false if the player is in a game or has disconnected, in which case the queue is not changed.
+     */
+    public synchronized boolean toggleQueue(ClientHandler player) {
+        if (player.getState() != ClientState.LOGGED_IN) {
+            return false;
+        }
+        if (!playerQueue.remove(player)) {
+            addPlayer(player);
+        }
+        return true;
+    }
+
+    /**
+     * Restores the games that were in progress when the server stopped, see JournalRecovery. They are resumed when
+     * their players log in again. Called before the server accepts connections.
+     *
+     * @param games      the recovered games.
+     * @param nextGameId the id of the next game, which is higher than the ids of the recovered games.
+     */
+    synchronized void restore(Collection<GameRecord> games, long nextGameId) {
+        this.nextGameId = Math.max(this.nextGameId, nextGameId);
+        for (GameRecord game : games) {
+            recoveredGames.put(game.getPlayer1(), game);
+            recoveredGames.put(game.getPlayer2(), game);
+        }
+        resuming = !recoveredGames.isEmpty();
+        if (checkpointer != null) {
+            checkpointer.restore(games);
+        }
+    }
+
+    /**
+     * Resumes the recovered game of a player, if there is one and its opponent is waiting for it. Otherwise, the
+     * player waits for its opponent, and still plays other games in the meantime.
+     * The players are sent the new game message and then every move that was made before the server stopped, so
+     * they rebuild the game. Called after a login, and after the end of a game of the player.
+     *
+     * @param player the player that logged in or that finished a game.
+     */
+    public void resumeRecoveredGame(ClientHandler player) {
+        if (!resuming) {
+            return;
+        }
+        GameRecord record;
+        GameSession session;
+        synchronized (this) {
+            record = player.getState() == ClientState.LOGGED_IN ? recoveredGames.get(player.getUsername()) : null;
+            if (record == null) {
+                return;
+            }
+            ClientHandler opponent = waitingPlayers.get(record.opponentOf(player.getUsername()));
+            if (opponent == null || opponent.getState() != ClientState.LOGGED_IN) {
+                waitingPlayers.put(player.getUsername(), player);
+                return;
+            }
+            recoveredGames.remove(record.getPlayer1());
+            recoveredGames.remove(record.getPlayer2());
+            waitingPlayers.remove(opponent.getUsername());
+            waitingPlayers.remove(player.getUsername());
+            resuming = !recoveredGames.isEmpty();
+            playerQueue.remove(player);
+            playerQueue.remove(opponent);
+            boolean playerFirst = player.getUsername().equals(record.getPlayer1());
+            session = new GameSession(record.getId(), playerFirst ? player : opponent, playerFirst ? opponent : player,
+                    record.replay(), System.currentTimeMillis());
+            sessions.put(player, session);
+            sessions.put(opponent, session);
+            markChanged(session);
+            player.setState(ClientState.IN_GAME);
+            opponent.setState(ClientState.IN_GAME);
+        }
+        ClientHandler client1 = session.client1();
+        ClientHandler client2 = session.client2();
+        synchronized (session) {
+            if (sessions.get(client1) == session) {
+                client1.sendNewGame(client1.getUsername(), client2.getUsername());
+                client2.sendNewGame(client1.getUsername(), client2.getUsername());
+                for (int i = 0; i < record.getMoveCount(); i++) {
+                    client1.sendMove(record.getMove(i));
+                    client2.sendMove(record.getMove(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Resumes the recovered game of a player of a game that ended, on the thread of the matchmaker, as a game is
+     * resumed while holding the queue lock, which may not be taken while holding the lock of the game that ended.
+     *
+     * @param player a player of the game that ended.
+     */
+    private void resumeAfterGame(ClientHandler player) {
+        if (!resuming) {
+            return;
+        }
+        try {
+            matchmaker.execute(() -> resumeRecoveredGame(player));
+        } catch (RejectedExecutionException e) {
+            // the handler was closed, so no game is resumed anymore
+        }
+    }
+
+    /**
+     * Creates a new game for every two queued players that match, see MatchmakingQueue.
+     * This is a tick of the matchmaker, which also calls it. If no players match, nothing happens.
      * Removes the players from the queue and sets them to in game state.
      */
     public void createGame() {
-        if (playerQueue.size() < 2) {
-            return; // Not enough players to start a game
+        List<GameSession> newGames;
+        synchronized (this) {
+            newGames = pairPlayers();
         }
+        startGames(newGames);
+    }
+
+    /**
+     * Pairs the queued players in one pass and creates a game for every pair. Called while holding this, so a player
+     * that disconnects is either still queued or already has its game when removeClient ends it.
+     *
+     * @return the sessions of the new games, which still have to be announced.
+     */
+    private List<GameSession> pairPlayers() {
+        List<GameSession> newGames = new ArrayList<>();
         // Removing them is important to prevent them from being paired again.
-        ClientHandler client1 = playerQueue.remove();
-        ClientHandler client2 = playerQueue.remove();
+        for (Pair<ClientHandler, ClientHandler> pair : playerQueue.pollPairs(currentMillis())) {
+            newGames.add(createSession(pair.first(), pair.second()));
+        }
+        return newGames;
+    }
+
+    /**
+     * Creates the game of two players and marks them as in game.
+     *
+     * @param client1 the player that moves first.
+     * @param client2 the other player.
+     * @return the session of the new game.
+     */
+    private GameSession createSession(ClientHandler client1, ClientHandler client2) {
         //both players are human, because the server does not distinguish between human and computer players.
         BasicPlayer player1 = new BasicPlayer(client1.getUsername(), Mark.X);
         BasicPlayer player2 = new BasicPlayer(client2.getUsername(), Mark.O);
         // Create a new game for the pair of players
-        DotsAndBoxesGame game = new DotsAndBoxesGame(player1, player2);
+        DotsAndBoxesGame game = new DotsAndBoxesGame(player1, player2, GEOMETRY);
 
-        // Add the pair and the game to the map
-        playerGameMap.put(new Pair<>(client1, client2), game);
-
-        client1.sendNewGame(client1.getUsername(), client2.getUsername());
-        client2.sendNewGame(client1.getUsername(), client2.getUsername());
+        // Map both players to the session of the game
+        GameSession session = new GameSession(nextGameId++, client1, client2, game, System.currentTimeMillis());
+        sessions.put(client1, session);
+        sessions.put(client2, session);
+        markChanged(session);
+        if (journal != null) {
+            journal.newGame(session.id(), GEOMETRY, client1.getUsername(), client2.getUsername());
+        }
 
+        // The state is set first, as the first move may arrive as soon as the new game is sent.
         client1.setState(ClientState.IN_GAME);
         client2.setState(ClientState.IN_GAME);
+        return session;
+    }
+
+    /**
+     * Sends the new game message to the players of every new game.
+     * It is sent while holding the lock of the game, so it always comes before the game over message, and not at all
+     * if a player disconnected in the meantime.
+     *
+     * @param newGames the sessions of the new games.
+     */
+    private void startGames(List<GameSession> newGames) {
+        for (GameSession session : newGames) {
+            ClientHandler client1 = session.client1();
+            ClientHandler client2 = session.client2();
+            synchronized (session) {
+                if (sessions.get(client1) == session) {
+                    client1.sendNewGame(client1.getUsername(), client2.getUsername());
+                    client2.sendNewGame(client1.getUsername(), client2.getUsername());
+                }
+            }
+        }
     }
 
     /**
@@ -65,34 +368,49 @@ public class GameHandler {
      * Can only be called when the client is in a game.
      * Checks for validity of the move and sens the move to both clients.
      * Checks the game for game over and sends a game over message to both clients if the game is over.
+     * Only holds the lock of the game, so moves in other games are made at the same time.
      *
      * @param clientHandler the client making the move.
      * @param location      the location the client wants to make a move at.
      */
     public void makeMove(ClientHandler clientHandler, int location) {
-        DotsAndBoxesGame currentGame = null;
-        ClientHandler client1 = null;
-        ClientHandler client2 = null;
         // retrieve the game the client is in.
-        for (Map.Entry<Pair<ClientHandler, ClientHandler>, DotsAndBoxesGame> entry : playerGameMap.entrySet()) {
-            Pair<ClientHandler, ClientHandler> pair = entry.getKey();
-            if (pair.first().equals(clientHandler) || pair.second().equals(clientHandler)) {
-                currentGame = entry.getValue();
-                client1 = pair.first();
-                client2 = pair.second();
-                break;
-            }
-        }
+        GameSession session = sessions.get(clientHandler);
 
         // Cannot make a move in a null game.
-        if (currentGame == null) {
+        if (session == null) {
             clientHandler.sendError("not in game yet!");
             return;
         }
+        synchronized (session) {
+            // the game may have ended since it was retrieved
+            if (sessions.get(clientHandler) != session) {
+                clientHandler.sendError("not in game yet!");
+                return;
+            }
+            makeMove(session, clientHandler, location);
+        }
+    }
+
+    /**
+     * Makes a move in the given game, while holding its lock.
+     *
+     * @param session       the game the client is in.
+     * @param clientHandler the client making the move.
+     * @param location      the location the client wants to make a move at.
+     */
+    private void makeMove(GameSession session, ClientHandler clientHandler, int location) {
+        DotsAndBoxesGame currentGame = session.game();
+        ClientHandler client1 = session.client1();
+        ClientHandler client2 = session.client2();
 
         // The game does not check if the move is valid WHEN SENDING, so we have to do it here.
         if (currentGame.getValidLocations().contains(location)) {
             if (currentGame.getTurn().getName().equals(clientHandler.getUsername())) {
+                markChanged(session);
+                if (journal != null) {
+                    journal.move(session.id(), location);
+                }
                 client1.sendMove(location);
                 client2.sendMove(location);
                 currentGame.drawLine(currentGame.getTurn().determineLine(location));
@@ -105,68 +423,190 @@ public class GameHandler {
 
         // Check if the game is over, e.g. if there are no more valid moves.
         if (currentGame.isGameOver()) {
-            client1.sendGameOver(ServerProtocol.VICTORY, currentGame.getWinner().getName());
-            client2.sendGameOver(ServerProtocol.VICTORY, currentGame.getWinner().getName());
+            List<BasicPlayer> players = currentGame.getPlayers();
+            int score1 = players.get(0).getScore();
+            int score2 = players.get(1).getScore();
+            int result = score1 == score2 ? 0 : score1 > score2 ? 1 : 2; // 0 for a draw
+            markChanged(session);
+            if (journal != null) {
+                journal.gameOver(session.id(), false, result);
+            }
+            if (archive != null) {
+                archive.add(session, false, result);
+            }
+            if (result == 0) {
+                client1.sendGameOver(ServerProtocol.DRAW, null);
+                client2.sendGameOver(ServerProtocol.DRAW, null);
+                updateRatings(client1, client2, 0.5);
+            } else {
+                ClientHandler winner = result == 1 ? client1 : client2;
+                client1.sendGameOver(ServerProtocol.VICTORY, winner.getUsername());
+                client2.sendGameOver(ServerProtocol.VICTORY, winner.getUsername());
+                updateRatings(winner, session.opponent(winner), 1);
+            }
             currentGame.reset();
             // Remove the game from the map.
-            playerGameMap.remove(new Pair<>(client1, client2));
+            sessions.remove(client1, session);
+            sessions.remove(client2, session);
             // Set the clients back to logged in state.
             client1.setState(ClientState.LOGGED_IN);
             client2.setState(ClientState.LOGGED_IN);
+            resumeAfterGame(client1);
+            resumeAfterGame(client2);
         }
     }
 
     /**
-     * Returns the queue of players.
+     * Returns the queue of players. It may only be used while holding the lock of this handler.
      *
      * @return the queue of players.
      */
-    public Queue<ClientHandler> getPlayerQueue() {
+    MatchmakingQueue getPlayerQueue() {
         return playerQueue;
     }
 
     /**
      * Ends the game the client is in by disconnecting the client.
      * The disconnection is game over condition handled in a different manner, namely here.
+     * Also used when the client broke the protocol, in which case it stays logged in.
      *
      * @param clientHandler the client to be disconnected.
      */
     public void endByDisconnect(ClientHandler clientHandler) {
-
-        DotsAndBoxesGame currentGame = null;
-        ClientHandler client1 = null;
-        ClientHandler client2 = null;
-
         // Retrieve the game the client is in.
-        String winner = "";
-        for (Map.Entry<Pair<ClientHandler, ClientHandler>, DotsAndBoxesGame> entry : playerGameMap.entrySet()) {
-            Pair<ClientHandler, ClientHandler> pair = entry.getKey();
-            if (pair.first().equals(clientHandler)) {
-                currentGame = entry.getValue();
-                client1 = pair.first();
-                client2 = pair.second();
-                winner = client2.getUsername();
-                break;
-            } else if (pair.second().equals(clientHandler)) {
-                currentGame = entry.getValue();
-                client2 = pair.second();
-                client1 = pair.first();
-                winner = client1.getUsername();
-                break;
-            }
-        }
+        GameSession session = sessions.get(clientHandler);
         // Cannot end a null game.
-        if (currentGame == null) {
+        if (session == null) {
             return;
         }
+        synchronized (session) {
+            // the game may have ended since it was retrieved
+            if (sessions.get(clientHandler) == session) {
+                endByDisconnect(session, clientHandler);
+            }
+        }
+    }
+
+    /**
+     * Ends the given game because the client disconnected, while holding its lock.
+     *
+     * @param session       the game the client is in.
+     * @param clientHandler the client that disconnected.
+     */
+    private void endByDisconnect(GameSession session, ClientHandler clientHandler) {
+        DotsAndBoxesGame currentGame = session.game();
+        ClientHandler client1 = session.client1();
+        ClientHandler client2 = session.client2();
+        String winner = session.opponent(clientHandler).getUsername();
+        markChanged(session);
+        if (journal != null) {
+            journal.gameOver(session.id(), true, clientHandler == client1 ? 2 : 1);
+        }
+        if (archive != null) {
+            archive.add(session, true, clientHandler == client1 ? 2 : 1);
+        }
 
         // Needs to update the fields of the clients to terminate gracefully.
-        client1.setState(ClientState.LOGGED_IN);
-        client2.setState(ClientState.LOGGED_IN);
+        ClientHandler opponent = session.opponent(clientHandler);
+        opponent.setState(ClientState.LOGGED_IN);
+        if (clientHandler.getState() != ClientState.DISCONNECTED) {
+            clientHandler.setState(ClientState.LOGGED_IN); // it broke the protocol, but is still connected
+        }
         client1.sendGameOver(ServerProtocol.DISCONNECT, winner);
         client2.sendGameOver(ServerProtocol.DISCONNECT, winner);
+        // Leaving a game counts as losing it.
+        updateRatings(session.opponent(clientHandler), clientHandler, 1);
         // Reset the game and remove it from the map.
         currentGame.reset();
-        playerGameMap.remove(new Pair<>(client1, client2));
+        sessions.remove(client1, session);
+        sessions.remove(client2, session);
+        resumeAfterGame(opponent);
+    }
+
+    /**
+     * Marks a game as changed, so the next checkpoint takes a new snapshot of it. Called while holding the lock of
+     * the game, before the change is appended to the journal, see GameCheckpointer.checkpoint.
+     *
+     * @param session the game that changes.
+     */
+    private void markChanged(GameSession session) {
+        if (checkpointer != null) {
+            changedGames.add(session);
+        }
+    }
+
+    /**
+     * Returns the games that changed since the last call, and forgets them.
+     *
+     * @return the sessions of the games that changed; a game that is over has no snapshot anymore.
+     */
+    List<GameSession> pollChangedGames() {
+        List<GameSession> changed = new ArrayList<>();
+        for (Iterator<GameSession> iterator = changedGames.iterator(); iterator.hasNext(); ) {
+            changed.add(iterator.next());
+            iterator.remove();
+        }
+        return changed;
+    }
+
+    /**
+     * Takes a snapshot of a game while holding its lock, together with the number of journal records at that moment.
+     *
+     * @param session the game.
+     * @return the record of the game, or null if the game is over.
+     */
+    GameRecord snapshot(GameSession session) {
+        synchronized (session) {
+            if (sessions.get(session.client1()) != session) {
+                return null;
+            }
+            DotsAndBoxesGame game = session.game();
+            BoardGeometry geometry = game.board.getGeometry();
+            GameRecord record = new GameRecord(session.id(), geometry.getRows(), geometry.getColumns(),
+                    session.client1().getUsername(), session.client2().getUsername(), journal.appendedRecords());
+            for (int i = 0; i < game.getMoveCount(); i++) {
+                record.addMove(game.getMove(i));
+            }
+            return record;
+        }
+    }
+
+    /**
+     * Returns the id of the next game.
+     *
+     * @return the id that the next game gets.
+     */
+    synchronized long getNextGameId() {
+        return nextGameId;
+    }
+
+    /**
+     * Updates the ratings of the players of a game with the Elo formula: the first player gains what the second
+     * player loses, which is more if the first player was expected to do worse. A win scores 1, and a draw 0.5, so a
+     * draw moves the ratings of the players towards each other.
+     * The games of a player may end at the same time, as every game has its own lock, so the change is added to the
+     * rating atomically instead of overwriting it.
+     *
+     * @param first  the player that won, or one of the players of a draw.
+     * @param second the player that lost, or the other player of a draw.
+     * @param score  the score of the first player, 1 for a win and 0.5 for a draw.
+     */
+    //@ requires score == 1 || score == 0.5;
+    private void updateRatings(ClientHandler first, ClientHandler second, double score) {
+        int firstRating = getRating(first.getUsername());
+        int secondRating = getRating(second.getUsername());
+        double expected = 1 / (1 + Math.pow(10, (secondRating - firstRating) / 400.0));
+        int change = (int) Math.round(RATING_FACTOR * (score - expected));
+        ratings.merge(first.getUsername(), INITIAL_RATING + change, (rating, initial) -> rating + change);
+        ratings.merge(second.getUsername(), INITIAL_RATING - change, (rating, initial) -> rating - change);
+    }
+
+    /**
+     * Returns the time that the matchmaker uses, which only moves forward.
+     *
+     * @return the current time, in milliseconds.
+     */
+    private static long currentMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
     }
 }
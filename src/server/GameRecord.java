@@ -0,0 +1,152 @@
+package server;
+
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.BoardGeometry;
+import gamelogic.model.DotsAndBoxesGame;
+import gamelogic.model.Mark;
+
+import java.util.Arrays;
+
+/**
+ * A game in progress as it is recorded in the journal and in checkpoints: its id, the size of its board, its players
+ * and its moves. A record is turned back into a live game by replaying its moves.
+ * A record that was taken for a checkpoint also holds the number of journal records that had been appended at that
+ * moment, so recovery knows which records of the game it already holds.
+ */
+public final class GameRecord {
+    private final long id;
+    private final int rows;
+    private final int columns;
+    private final String player1;
+    private final String player2;
+    private long journalRecords;
+    private int[] moves = new int[16];
+    private int moveCount;
+
+    /**
+     * Creates the record of a game without moves.
+     *
+     * @param id      the id of the game.
+     * @param rows    the number of rows of the board.
+     * @param columns the number of columns of the board.
+     * @param player1 the username of the player that moves first.
+     * @param player2 the username of the other player.
+     */
+    public GameRecord(long id, int rows, int columns, String player1, String player2) {
+        this(id, rows, columns, player1, player2, 0);
+    }
+
+    /**
+     * Creates the record of a game without moves, for a checkpoint.
+     *
+     * @param id             the id of the game.
+     * @param rows           the number of rows of the board.
+     * @param columns        the number of columns of the board.
+     * @param player1        the username of the player that moves first.
+     * @param player2        the username of the other player.
+     * @param journalRecords the number of journal records that were appended when the record was taken.
+     */
+    public GameRecord(long id, int rows, int columns, String player1, String player2, long journalRecords) {
+        this.id = id;
+        this.rows = rows;
+        this.columns = columns;
+        this.player1 = player1;
+        this.player2 = player2;
+        this.journalRecords = journalRecords;
+    }
+
+    /**
+     * Adds a move to the record.
+     *
+     * @param location the location of the line.
+     */
+    public void addMove(int location) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, 2 * moveCount);
+        }
+        moves[moveCount++] = location;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public String getPlayer1() {
+        return player1;
+    }
+
+    public String getPlayer2() {
+        return player2;
+    }
+
+    /**
+     * Returns the number of journal records that were appended when the record was taken. The journal records of this
+     * game with a lower number are already part of the record.
+     *
+     * @return the number of journal records, 0 if the record was not taken for a checkpoint.
+     */
+    public long getJournalRecords() {
+        return journalRecords;
+    }
+
+    /**
+     * Renumbers a recovered record as if it was taken at the end of the recovered journal. It holds all records of its
+     * game up to there, and the journal numbers the records that are appended after recovery from there on, whatever
+     * the number of records that the checkpoint counted before the crash.
+     *
+     * @param records the number of records in the recovered journal.
+     */
+    void rebase(long records) {
+        journalRecords = records;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns a move of the record.
+     *
+     * @param index the index of the move, from 0.
+     * @return the location of the line.
+     */
+    //@ requires index >= 0 && index < getMoveCount();
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Returns the opponent of a player of this game.
+     *
+     * @param username one of the players.
+     * @return the username of the other player.
+     */
+    String opponentOf(String username) {
+        return username.equals(player1) ? player2 : player1;
+    }
+
+    /**
+     * Builds the game by replaying the moves of the record. The moves were validated when they were made, so they
+     * are applied with DotsAndBoxesGame.makeMove, which neither validates nor renders them and does not allocate.
+     *
+     * @return the game, with the players and scores of the record.
+     * @throws IllegalArgumentException  if a move draws a line that is already drawn, i.e. the record is corrupt.
+     * @throws IndexOutOfBoundsException if a move is not on the board.
+     */
+    public DotsAndBoxesGame replay() {
+        DotsAndBoxesGame game = new DotsAndBoxesGame(new BasicPlayer(player1, Mark.X), new BasicPlayer(player2, Mark.O),
+                BoardGeometry.of(rows, columns));
+        for (int i = 0; i < moveCount; i++) {
+            game.makeMove(moves[i]);
+        }
+        return game;
+    }
+}
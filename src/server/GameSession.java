@@ -0,0 +1,29 @@
+package server;
+
+import gamelogic.model.DotsAndBoxesGame;
+
+/**
+ * A game that is hosted by the server, together with the two clients that play it.
+ * The GameHandler maps both clients to their session, so the game of a client is found at once.
+ * The session is also the lock of its game: the game is only used while holding it, so the moves of unrelated games
+ * are made in parallel.
+ *
+ * @param id          the id of the game, which identifies it in the journal.
+ * @param client1     the client that plays first.
+ * @param client2     the client that plays second.
+ * @param game        the game the clients play.
+ * @param startMillis the time at which the game was started or resumed, in milliseconds since the epoch.
+ */
+record GameSession(long id, ClientHandler client1, ClientHandler client2, DotsAndBoxesGame game, long startMillis) {
+
+    /**
+     * Returns the other client of this session.
+     *
+     * @param client one of the clients of this session.
+     * @return the opponent of the given client.
+     */
+    //@ requires client == client1 || client == client2;
+    ClientHandler opponent(ClientHandler client) {
+        return client == client1 ? client2 : client1;
+    }
+}
@@ -0,0 +1,138 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds the games that were in progress when the server stopped, from the latest checkpoint and the part of the
+ * journal after it. The records are read in one pass: a game is added on its NEW_GAME record, collects its moves, and
+ * is dropped on its GAME_OVER record. A game from the checkpoint skips its records that the checkpoint already holds,
+ * see GameRecord.getJournalRecords. Only the games that are left are replayed, each with the fast path of
+ * GameRecord.replay, so a journal with millions of moves is recovered in seconds.
+ */
+public final class JournalRecovery implements MoveJournal.RecordVisitor {
+    private final Map<Long, GameRecord> games = new HashMap<>();
+    private long nextGameId = 1;
+    private long record; // the number of the record that is visited
+
+    /**
+     * The result of a recovery.
+     *
+     * @param games      the games in progress, which have been replayed successfully, numbered as if they were taken
+     *                   at the end of the journal, see GameRecord.rebase.
+     * @param nextGameId the id of the next game, which is higher than the ids of all games in the journal.
+     * @param journalEnd the end of the valid part of the journal, or null if there is no journal.
+     */
+    public record Result(List<GameRecord> games, long nextGameId, MoveJournal.Position journalEnd) {
+    }
+
+    private JournalRecovery() {
+    }
+
+    /**
+     * Recovers the games in progress. A checkpoint that cannot be read, or that does not belong to the journal, is
+     * ignored, and the whole journal is replayed. The games that started before the journal was cut are then lost.
+     *
+     * @param journal    the path of the journal.
+     * @param checkpoint the path of the checkpoint.
+     * @return the games in progress; none if there is no journal.
+     * @throws IOException if the journal cannot be read.
+     */
+    public static Result recover(Path journal, Path checkpoint) throws IOException {
+        if (!Files.exists(journal) || Files.size(journal) == 0) {
+            return new Result(List.of(), 1, null);
+        }
+        JournalRecovery recovery = new JournalRecovery();
+        MoveJournal.Position end;
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            MoveJournal.Position first = MoveJournal.readFirstPosition(channel);
+            MoveJournal.Position start = recovery.readCheckpoint(checkpoint, first,
+                    first.offset() + channel.size() - MoveJournal.HEADER_SIZE);
+            recovery.record = start.records();
+            end = MoveJournal.replay(channel, start, recovery);
+        }
+        List<GameRecord> inProgress = new ArrayList<>(recovery.games.size());
+        for (GameRecord game : recovery.games.values()) {
+            try {
+                if (!game.replay().isGameOver()) { // a finished game whose game over was lost is not resumed
+                    // the checkpoint may have counted records that were never written, see GameHandler.snapshot
+                    game.rebase(end.records());
+                    inProgress.add(game);
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                System.out.println("Cannot recover game " + game.getId() + ": " + e.getMessage());
+            }
+        }
+        return new Result(inProgress, recovery.nextGameId, end);
+    }
+
+    /**
+     * Adds the games of the checkpoint, if it belongs to the journal.
+     *
+     * @param checkpoint the path of the checkpoint.
+     * @param first      the position of the first batch of the journal.
+     * @param journalEnd the offset of the end of the journal file.
+     * @return the position from which on the journal has to be replayed.
+     */
+    private MoveJournal.Position readCheckpoint(Path checkpoint, MoveJournal.Position first, long journalEnd) {
+        try {
+            GameCheckpoint.Contents contents = GameCheckpoint.read(checkpoint);
+            if (contents != null && contents.journalPosition().offset() > journalEnd) {
+                throw new IOException("The checkpoint is ahead of the journal");
+            }
+            if (contents != null && contents.journalPosition().offset() < first.offset()) {
+                throw new IOException("The journal was cut after the checkpoint");
+            }
+            if (contents != null) {
+                for (GameRecord game : contents.games()) {
+                    games.put(game.getId(), game);
+                }
+                nextGameId = contents.nextGameId();
+                return contents.journalPosition();
+            }
+        } catch (IOException e) {
+            System.out.println("Ignoring the checkpoint: " + e.getMessage());
+            games.clear();
+            nextGameId = 1;
+        }
+        if (first.records() > 0) {
+            System.out.println("The games that started before record " + first.records() + " are lost");
+        }
+        return first;
+    }
+
+    @Override
+    public void newGame(long game, int rows, int columns, String player1, String player2) {
+        GameRecord known = games.get(game);
+        if (known == null || record >= known.getJournalRecords()) {
+            games.put(game, new GameRecord(game, rows, columns, player1, player2));
+        }
+        nextGameId = Math.max(nextGameId, game + 1);
+        record++;
+    }
+
+    @Override
+    public void move(long game, int location) {
+        GameRecord known = games.get(game);
+        if (known != null && record >= known.getJournalRecords()) {
+            known.addMove(location);
+        }
+        record++;
+    }
+
+    @Override
+    public void gameOver(long game, boolean disconnected, int winner) {
+        GameRecord known = games.get(game);
+        if (known != null && record >= known.getJournalRecords()) {
+            games.remove(game);
+        }
+        record++;
+    }
+}
@@ -0,0 +1,175 @@
+package server;
+
+import helpers.ServerProtocol;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The roster of the lobby: the usernames that are logged in, in the order in which they logged in.
+ * Every login and logout is a change, which increments the version of the roster. The list messages are encoded once
+ * per version and reused for every LIST request until the roster changes again. The last CHANGE_LOG_SIZE changes are
+ * kept, so a client that knows an earlier version can ask for the changes since that version only.
+ */
+public final class LobbyRoster {
+    /**
+     * The number of changes that are kept for delta requests.
+     */
+    public static final int CHANGE_LOG_SIZE = 1024;
+
+    private final Set<String> names = new LinkedHashSet<>(); // guarded by this
+    // The last changes, as a ring buffer: the change to version v is at (v - 1) % CHANGE_LOG_SIZE. Guarded by this.
+    private final String[] changedNames = new String[CHANGE_LOG_SIZE];
+    private final boolean[] changeJoined = new boolean[CHANGE_LOG_SIZE];
+    private volatile long version = 0; // only changed while holding this
+    private volatile Snapshot snapshot = new Snapshot(0, new String[0], ServerProtocol.LIST);
+
+    /**
+     * The roster at a version, with its LIST message.
+     *
+     * @param version the version of the roster.
+     * @param names   the usernames, in the order of the roster.
+     * @param message the encoded LIST message.
+     */
+    private record Snapshot(long version, String[] names, String message) {
+    }
+
+    /**
+     * Adds a username that logged in.
+     *
+     * @param name the username.
+     */
+    public synchronized void add(String name) {
+        if (names.add(name)) {
+            recordChange(name, true);
+        }
+    }
+
+    /**
+     * Removes a username that logged out.
+     *
+     * @param name the username.
+     */
+    public synchronized void remove(String name) {
+        if (names.remove(name)) {
+            recordChange(name, false);
+        }
+    }
+
+    /**
+     * Returns the current version of the roster, which is the number of changes so far.
+     *
+     * @return the version.
+     */
+    //@ pure
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the LIST message with all usernames, e.g. LIST~alice~bob.
+     *
+     * @return the encoded message, which is shared until the roster changes.
+     */
+    public String listMessage() {
+        return snapshot().message();
+    }
+
+    /**
+     * Returns a page of the roster, as LISTPAGE~version~total~offset, followed by the usernames of the page.
+     *
+     * @param offset the index of the first username of the page.
+     * @param limit  the maximum number of usernames of the page.
+     * @return the encoded message.
+     */
+    //@ requires offset >= 0 && limit > 0;
+    public String pageMessage(int offset, int limit) {
+        Snapshot current = snapshot();
+        String[] all = current.names();
+        int end = (int) Math.min((long) offset + limit, all.length);
+        StringBuilder message = new StringBuilder(ServerProtocol.LIST_PAGE)
+                .append(ServerProtocol.SEPARATOR).append(current.version())
+                .append(ServerProtocol.SEPARATOR).append(all.length)
+                .append(ServerProtocol.SEPARATOR).append(offset);
+        for (int i = offset; i < end; i++) {
+            message.append(ServerProtocol.SEPARATOR).append(all[i]);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Returns the changes since the given version, as LISTDELTA~version~joined, followed by the usernames that joined
+     * and then those that left. A username that joined and left again is not included.
+     * If the changes since that version are no longer kept, or the version is unknown, the whole roster is returned
+     * as a page instead, so the client can start over from the version of that page.
+     *
+     * @param since the version the client knows.
+     * @return the encoded message.
+     */
+    public synchronized String deltaMessage(long since) {
+        if (since < 0 || since > version || version - since > CHANGE_LOG_SIZE) {
+            return pageMessage(0, Integer.MAX_VALUE);
+        }
+        // the presence of every changed username before and after the changes
+        Map<String, Boolean> before = new LinkedHashMap<>();
+        Map<String, Boolean> after = new LinkedHashMap<>();
+        for (long v = since + 1; v <= version; v++) {
+            int index = (int) ((v - 1) % CHANGE_LOG_SIZE);
+            before.putIfAbsent(changedNames[index], !changeJoined[index]);
+            after.put(changedNames[index], changeJoined[index]);
+        }
+        StringBuilder joined = new StringBuilder();
+        StringBuilder left = new StringBuilder();
+        int joinedCount = 0;
+        for (Map.Entry<String, Boolean> change : after.entrySet()) {
+            if (change.getValue() != before.get(change.getKey())) {
+                if (change.getValue()) {
+                    joined.append(ServerProtocol.SEPARATOR).append(change.getKey());
+                    joinedCount++;
+                } else {
+                    left.append(ServerProtocol.SEPARATOR).append(change.getKey());
+                }
+            }
+        }
+        return ServerProtocol.LIST_DELTA + ServerProtocol.SEPARATOR + version + ServerProtocol.SEPARATOR + joinedCount
+                + joined + left;
+    }
+
+    /**
+     * Records a change in the change log and increments the version. Called while holding this.
+     *
+     * @param name   the username that changed.
+     * @param joined true if the username logged in, false if it logged out.
+     */
+    private void recordChange(String name, boolean joined) {
+        int index = (int) (version % CHANGE_LOG_SIZE);
+        changedNames[index] = name;
+        changeJoined[index] = joined;
+        version++;
+    }
+
+    /**
+     * Returns the snapshot of the current version, which is encoded by the first request after a change.
+     *
+     * @return the snapshot.
+     */
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current.version() == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot.version() != version) {
+                String[] all = names.toArray(new String[0]);
+                StringBuilder message = new StringBuilder(ServerProtocol.LIST);
+                for (String name : all) {
+                    message.append(ServerProtocol.SEPARATOR).append(name);
+                }
+                snapshot = new Snapshot(version, all, message.toString());
+            }
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package server;
+
+import helpers.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The queue of players that wait to be paired with another player of a similar rating.
+ * The players are kept in buckets of BUCKET_WIDTH rating points, in the order in which they arrived, and in an index
+ * from player to entry. Adding, removing and finding a player take constant time, apart from finding the bucket among
+ * the few buckets that exist.
+ * The players are paired in batches by pollPairs, which the matchmaker calls on every tick. Players in the same bucket
+ * always match. The players that are left, at most one per bucket, match a neighbour if their ratings differ by no
+ * more than the window of the player that waited longer, which widens the longer it waits. A tick therefore takes
+ * time in proportion to the pairs it makes and the number of buckets, not to the number of queued players. As ratings
+ * stay within a few thousand points, there are at most some tens of buckets.
+ * The queue is not thread-safe; the GameHandler guards it.
+ */
+public final class MatchmakingQueue {
+    /**
+     * The width of a rating bucket. It is below BASE_WINDOW, so players in the same bucket always match.
+     */
+    public static final int BUCKET_WIDTH = 50;
+    /**
+     * The largest rating difference that a player accepts as soon as it is queued.
+     */
+    public static final int BASE_WINDOW = 100;
+    /**
+     * The number of rating points by which the window widens for every second of waiting.
+     */
+    public static final int WINDOW_GROWTH_PER_SECOND = 50;
+
+    // The buckets that are not empty, by rating divided by BUCKET_WIDTH.
+    private final NavigableMap<Integer, LinkedHashSet<Entry>> buckets = new TreeMap<>();
+    private final Map<ClientHandler, Entry> entries = new HashMap<>();
+
+    /**
+     * A queued player, with the rating it had when it was queued.
+     *
+     * @param player   the player.
+     * @param rating   the rating of the player.
+     * @param queuedAt the time at which the player was queued, in milliseconds.
+     */
+    private record Entry(ClientHandler player, int rating, long queuedAt) {
+
+        /**
+         * Returns the largest rating difference this player accepts at the given time.
+         *
+         * @param now the current time, in milliseconds.
+         * @return the window of this player.
+         */
+        long window(long now) {
+            return BASE_WINDOW + Math.max(0, now - queuedAt) * WINDOW_GROWTH_PER_SECOND / 1000;
+        }
+    }
+
+    /**
+     * Adds a player to the queue, if it is not queued yet.
+     *
+     * @param player the player.
+     * @param rating the rating of the player.
+     * @param now    the current time, in milliseconds.
+     * @return true if the player was added.
+     */
+    public boolean add(ClientHandler player, int rating, long now) {
+        if (entries.containsKey(player)) {
+            return false;
+        }
+        Entry entry = new Entry(player, rating, now);
+        entries.put(player, entry);
+        buckets.computeIfAbsent(bucketOf(rating), bucket -> new LinkedHashSet<>()).add(entry);
+        return true;
+    }
+
+    /**
+     * Removes a player from the queue, wherever it is.
+     *
+     * @param player the player.
+     * @return true if the player was queued.
+     */
+    public boolean remove(ClientHandler player) {
+        Entry entry = entries.remove(player);
+        if (entry == null) {
+            return false;
+        }
+        LinkedHashSet<Entry> bucket = buckets.get(bucketOf(entry.rating()));
+        bucket.remove(entry);
+        if (bucket.isEmpty()) {
+            buckets.remove(bucketOf(entry.rating()));
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a player is queued.
+     *
+     * @param player the player.
+     * @return true if the player is queued.
+     */
+    //@ pure
+    public boolean contains(ClientHandler player) {
+        return entries.containsKey(player);
+    }
+
+    /**
+     * Returns the number of queued players.
+     *
+     * @return the size of the queue.
+     */
+    //@ pure
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes the players that match from the queue, two by two. First the players of every bucket are paired in the
+     * order in which they arrived, then the players that are left are paired with a neighbouring bucket if their
+     * window allows it. The player that queued first moves first.
+     *
+     * @param now the current time, in milliseconds.
+     * @return the pairs; empty if no players match.
+     */
+    public List<Pair<ClientHandler, ClientHandler>> pollPairs(long now) {
+        List<Pair<ClientHandler, ClientHandler>> pairs = new ArrayList<>();
+        List<Integer> emptied = new ArrayList<>(); // the buckets of players that were paired with a later bucket
+        Entry previous = null; // the player that is left in the previous bucket
+        Iterator<LinkedHashSet<Entry>> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            LinkedHashSet<Entry> bucket = iterator.next();
+            Iterator<Entry> arrivals = bucket.iterator();
+            while (bucket.size() >= 2) {
+                Entry first = arrivals.next();
+                arrivals.remove();
+                Entry second = arrivals.next();
+                arrivals.remove();
+                pairs.add(pair(first, second));
+            }
+            if (bucket.isEmpty()) {
+                iterator.remove();
+                continue;
+            }
+            Entry left = bucket.iterator().next();
+            if (previous != null && Math.abs(left.rating() - previous.rating())
+                    <= Math.max(left.window(now), previous.window(now))) {
+                pairs.add(pair(previous, left));
+                emptied.add(bucketOf(previous.rating()));
+                iterator.remove();
+                previous = null;
+            } else {
+                previous = left;
+            }
+        }
+        for (Integer bucket : emptied) {
+            buckets.remove(bucket);
+        }
+        return pairs;
+    }
+
+    /**
+     * Removes two matched players from the index and pairs them, the one that queued first being first.
+     *
+     * @param a one of the players.
+     * @param b the other player.
+     * @return the pair.
+     */
+    private Pair<ClientHandler, ClientHandler> pair(Entry a, Entry b) {
+        entries.remove(a.player());
+        entries.remove(b.player());
+        return a.queuedAt() <= b.queuedAt() ? new Pair<>(a.player(), b.player()) : new Pair<>(b.player(), a.player());
+    }
+
+    /**
+     * Returns the key of the bucket of a rating.
+     *
+     * @param rating the rating.
+     * @return the bucket.
+     */
+    private static int bucketOf(int rating) {
+        return Math.floorDiv(rating, BUCKET_WIDTH);
+    }
+}
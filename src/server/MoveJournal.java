@@ -0,0 +1,588 @@
+package server;
+
+import gamelogic.model.BoardGeometry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only binary journal of the games of the server, so the games in progress can be recovered after the
+ * process dies.
+ * The GameHandler appends a record for every new game, move and game over. Appending only copies the record into a
+ * buffer in memory; a writer thread writes all records that were appended since its last write as a single batch, and
+ * forces the batch to disk with one FileChannel.force. While a batch is forced, the next batch is collected, so many
+ * games share a single sync, and a move does not wait for the disk. At most GROUP_COMMIT_MILLIS of records, and the
+ * batch that is being written, are lost when the machine goes down.
+ * The file starts with MAGIC, VERSION and the Position of its first batch, followed by the batches. A batch is its
+ * length and the CRC32C of its records, followed by the records. Every record starts with its type and the id of its
+ * game:
+ * <ul>
+ *     <li>NEW_GAME: the number of rows and columns of the board as bytes, and the usernames of the players, in
+ *     the order of play, as a short length and UTF-8 bytes.</li>
+ *     <li>MOVE: the location of the line as a short.</li>
+ *     <li>GAME_OVER: the reason, VICTORY or DISCONNECT, and the winner, 1 or 2, or 0 for a draw, as bytes.</li>
+ * </ul>
+ * A batch that was not written completely, e.g. because the process died, is cut off when the journal is opened.
+ * The records are numbered in the order in which they were appended, from 0 for the first record of the journal. A
+ * Position pairs the end of a batch with the number of records before it, so a GameCheckpoint can tell which records
+ * of a game it already holds.
+ * Once a checkpoint holds the games up to a position, the batches before it are no longer needed, and cut removes
+ * them by copying the batches after it into a new file. The offset of a Position counts the bytes of all batches
+ * that were ever written, including those that were cut, so the positions in checkpoints remain valid.
+ */
+public final class MoveJournal implements Closeable {
+    /**
+     * The first int of a journal file.
+     */
+    public static final int MAGIC = 0x44424a4c; // "DBJL"
+    /**
+     * The version of the format, the second int of a journal file.
+     */
+    public static final int VERSION = 2;
+    /**
+     * The shortest time between two syncs of the journal, in which the records of all games are collected.
+     */
+    public static final long GROUP_COMMIT_MILLIS = 5;
+    static final byte NEW_GAME = 1;
+    static final byte MOVE = 2;
+    static final byte GAME_OVER = 3;
+    static final byte VICTORY = 0;
+    static final byte DISCONNECT = 1;
+    static final int HEADER_SIZE = 24;
+    static final int BATCH_HEADER_SIZE = 8;
+    // The size of the records that may wait for the writer. Appending blocks while the buffer is full.
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A position in a journal: the end of a batch, and the number of records in the journal up to there.
+     *
+     * @param offset  the number of bytes of the journal up to the end of the batch, counted as if it was never cut,
+     *                or HEADER_SIZE before the first batch.
+     * @param records the number of records before the offset.
+     */
+    public record Position(long offset, long records) {
+    }
+
+    /**
+     * The position of the first batch of a journal.
+     */
+    public static final Position START = new Position(HEADER_SIZE, 0);
+
+    private final Path path;
+    // The file and the position of its first batch, which change when the journal is cut. Guarded by fileLock.
+    private final Object fileLock = new Object();
+    private FileChannel channel;
+    private volatile Position first;
+    private boolean fileClosed; // guarded by fileLock
+    private final Thread writer;
+    // The records that were appended since the last batch, guarded by this.
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    // The buffer of the last batch, which becomes the pending buffer at the next swap. Guarded by this.
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private boolean closed; // guarded by this
+    private int pendingRecords; // the number of records in pending, guarded by this
+    private long appendedRecords; // the number of records in the journal and in pending, guarded by this
+    // The end of the last batch that was forced to disk. Only changed by the writer thread.
+    private volatile Position written;
+    // Only used by the writer thread.
+    private final ByteBuffer batchHeader = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * Opens the journal at the given path, creating it if it does not exist, and starts its writer thread.
+     * New records are appended after the last complete batch.
+     *
+     * @param path the path of the journal file.
+     * @throws IOException if the file cannot be opened, or is not a journal.
+     */
+    public MoveJournal(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * Opens the journal at the given path, of which the end is known from replaying it, e.g. by JournalRecovery, so
+     * the journal does not have to be read again. Otherwise like MoveJournal(Path).
+     *
+     * @param path the path of the journal file.
+     * @param end  the position after the last complete batch, or null if it has to be found by reading the journal.
+     * @throws IOException if the file cannot be opened, or is not a journal.
+     */
+    public MoveJournal(Path path, Position end) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel, START);
+            }
+            first = readFirstPosition(channel);
+            if (end == null) {
+                end = validEnd(channel);
+            }
+            long size = HEADER_SIZE + end.offset() - first.offset();
+            if (size < channel.size()) {
+                channel.truncate(size); // a batch that was cut off by a crash
+            }
+            channel.position(size);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        written = end;
+        appendedRecords = end.records();
+        writer = new Thread(this::writeBatches, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends the start of a game.
+     *
+     * @param game     the id of the game.
+     * @param geometry the size of the board.
+     * @param player1  the username of the player that moves first.
+     * @param player2  the username of the other player.
+     */
+    public void newGame(long game, BoardGeometry geometry, String player1, String player2) {
+        byte[] name1 = player1.getBytes(StandardCharsets.UTF_8);
+        byte[] name2 = player2.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            ByteBuffer buffer = reserve(1 + 8 + 2 + 2 + name1.length + 2 + name2.length);
+            if (buffer != null) {
+                buffer.put(NEW_GAME).putLong(game).put((byte) geometry.getRows()).put((byte) geometry.getColumns())
+                        .putShort((short) name1.length).put(name1).putShort((short) name2.length).put(name2);
+            }
+        }
+    }
+
+    /**
+     * Appends a move.
+     *
+     * @param game     the id of the game.
+     * @param location the location of the line.
+     */
+    public synchronized void move(long game, int location) {
+        ByteBuffer buffer = reserve(1 + 8 + 2);
+        if (buffer != null) {
+            buffer.put(MOVE).putLong(game).putShort((short) location);
+        }
+    }
+
+    /**
+     * Appends the end of a game.
+     *
+     * @param game         the id of the game.
+     * @param disconnected true if the game ended because a player disconnected, false if it was won.
+     * @param winner       the winner, 1 for the player that moved first, 2 for the other player, 0 for a draw.
+     */
+    public synchronized void gameOver(long game, boolean disconnected, int winner) {
+        ByteBuffer buffer = reserve(1 + 8 + 1 + 1);
+        if (buffer != null) {
+            buffer.put(GAME_OVER).putLong(game).put(disconnected ? DISCONNECT : VICTORY).put((byte) winner);
+        }
+    }
+
+    /**
+     * Returns the path of the journal file.
+     *
+     * @return the path.
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of records that were appended, including those that were not written yet. Called while
+     * holding the lock of a game, it separates the records of that game that came before from those that come after.
+     *
+     * @return the number of the next record.
+     */
+    synchronized long appendedRecords() {
+        return appendedRecords;
+    }
+
+    /**
+     * Returns the end of the last batch that was forced to disk.
+     *
+     * @return the position after the last durable batch.
+     */
+    public Position writtenPosition() {
+        return written;
+    }
+
+    /**
+     * Returns the position of the first batch that the journal still holds, which is START until it is cut.
+     *
+     * @return the position of the first batch.
+     */
+    public Position firstPosition() {
+        return first;
+    }
+
+    /**
+     * Removes the batches before a position that a checkpoint holds, by copying the batches after it into a new file
+     * that atomically replaces the journal. Appending goes on meanwhile; the writer thread waits until the copy is
+     * done. Does nothing if the journal is closed, or already starts at or after the position.
+     *
+     * @param position the end of a batch that was written.
+     * @throws IOException if the journal cannot be cut; it is kept as it was if the new file could not replace it.
+     */
+    public void cut(Position position) throws IOException {
+        synchronized (fileLock) {
+            Position end = written;
+            if (fileClosed || position.offset() <= first.offset() || position.offset() > end.offset()) {
+                return;
+            }
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel copy = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeHeader(copy, position);
+                long from = HEADER_SIZE + position.offset() - first.offset();
+                long count = end.offset() - position.offset();
+                while (count > 0) {
+                    long transferred = channel.transferTo(from, count, copy);
+                    from += transferred;
+                    count -= transferred;
+                }
+                copy.force(true);
+            }
+            channel.close(); // a file that is open cannot be replaced on every platform
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                first = position;
+            } finally {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel.position(HEADER_SIZE + end.offset() - first.offset());
+            }
+        }
+    }
+
+    /**
+     * Writes the records that are still pending, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            fileClosed = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // do nothing, the journal is closed anyway
+            }
+        }
+    }
+
+    /**
+     * Makes room for a record in the pending buffer, and counts the record. Called while holding this. Waits while
+     * the writer is too far behind.
+     *
+     * @param size the size of the record.
+     * @return the pending buffer, or null if the journal is closed.
+     */
+    private ByteBuffer reserve(int size) {
+        while (!closed && pending.remaining() < size) {
+            if (pending.capacity() < MAX_PENDING_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(2 * pending.capacity(), MAX_PENDING_BYTES));
+                pending = larger.put(pending.flip());
+            } else {
+                try {
+                    wait(); // until the writer takes the pending records
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        if (closed) {
+            return null;
+        }
+        if (pending.position() == 0) {
+            notifyAll(); // the writer may wait for records
+        }
+        pendingRecords++;
+        appendedRecords++;
+        return pending;
+    }
+
+    /**
+     * The writer thread. Takes the pending records as a batch, writes and forces it, and waits until the group commit
+     * window has passed, so the records of the next batch can collect. Stops when the journal is closed and all
+     * records are written.
+     */
+    private void writeBatches() {
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                ByteBuffer batch;
+                int records;
+                synchronized (this) {
+                    while (pending.position() == 0 && !closed) {
+                        wait();
+                    }
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    batch = pending;
+                    records = pendingRecords;
+                    pending = spare.clear();
+                    pendingRecords = 0;
+                    spare = batch;
+                    notifyAll(); // appenders may wait for room
+                }
+                int length = batch.flip().remaining();
+                synchronized (fileLock) {
+                    writeBatch(batch);
+                    written = new Position(written.offset() + BATCH_HEADER_SIZE + length,
+                            written.records() + records);
+                }
+                long remaining = GROUP_COMMIT_MILLIS - (System.nanoTime() - start) / 1_000_000;
+                if (remaining > 0) {
+                    Thread.sleep(remaining);
+                }
+            }
+        } catch (IOException e) {
+            // the games can still be played, but are no longer recorded
+            System.out.println("The journal cannot be written: " + e.getMessage());
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the header of a journal file and forces it to disk.
+     *
+     * @param file  the empty file.
+     * @param first the position of the first batch of the file.
+     * @throws IOException if the header cannot be written.
+     */
+    private static void writeHeader(FileChannel file, Position first) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(first.offset())
+                .putLong(first.records()).flip();
+        while (header.hasRemaining()) {
+            file.write(header);
+        }
+        file.force(true);
+    }
+
+    /**
+     * Writes a batch of records, after its length and checksum, and forces it to disk. Called while holding fileLock.
+     *
+     * @param records the records of the batch.
+     * @throws IOException if the batch cannot be written.
+     */
+    private void writeBatch(ByteBuffer records) throws IOException {
+        checksum.reset();
+        checksum.update(records.duplicate());
+        batchHeader.clear().putInt(records.remaining()).putInt((int) checksum.getValue()).flip();
+        ByteBuffer[] buffers = {batchHeader, records};
+        while (records.hasRemaining()) {
+            channel.write(buffers);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Receives the records of a journal, in the order in which they were appended, see replay.
+     */
+    public interface RecordVisitor {
+        /**
+         * Receives the start of a game.
+         *
+         * @param game    the id of the game.
+         * @param rows    the number of rows of the board.
+         * @param columns the number of columns of the board.
+         * @param player1 the username of the player that moves first.
+         * @param player2 the username of the other player.
+         */
+        void newGame(long game, int rows, int columns, String player1, String player2);
+
+        /**
+         * Receives a move.
+         *
+         * @param game     the id of the game.
+         * @param location the location of the line.
+         */
+        void move(long game, int location);
+
+        /**
+         * Receives the end of a game.
+         *
+         * @param game         the id of the game.
+         * @param disconnected true if a player disconnected.
+         * @param winner       the winner, 1 or 2, or 0 for a draw.
+         */
+        void gameOver(long game, boolean disconnected, int winner);
+    }
+
+    /**
+     * Returns the end of the part of a journal that holds complete batches with a valid checksum.
+     *
+     * @param channel the journal file.
+     * @return the position after the last valid batch.
+     * @throws IOException if the file cannot be read, or is not a journal.
+     */
+    public static Position validEnd(FileChannel channel) throws IOException {
+        return replay(channel, START, null);
+    }
+
+    /**
+     * Returns the position of the first batch of a journal file, from its header.
+     *
+     * @param channel the journal file.
+     * @return the position of the first batch in the file, START if the journal was never cut.
+     * @throws IOException if the file cannot be read, or is not a journal.
+     */
+    static Position readFirstPosition(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (readFully(channel, header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a journal of version " + VERSION);
+        }
+        return new Position(header.getLong(8), header.getLong(16));
+    }
+
+    /**
+     * Reads the complete batches of a journal, from the given position on, and passes their records to a visitor.
+     * Reading stops at the first batch that is incomplete or has an invalid checksum.
+     *
+     * @param channel the journal file.
+     * @param start   the position of the first batch to read, which is START or the end of an earlier batch. The
+     *                journal is read from its first batch if it was cut after this position.
+     * @param visitor the visitor of the records, or null to only check the batches.
+     * @return the position after the last valid batch.
+     * @throws IOException if the file cannot be read, or is not a journal.
+     */
+    public static Position replay(FileChannel channel, Position start, RecordVisitor visitor) throws IOException {
+        Position first = readFirstPosition(channel);
+        if (start.offset() < first.offset()) {
+            start = first;
+        }
+        long position = HEADER_SIZE + start.offset() - first.offset(); // in the file
+        long count = start.records();
+        long size = channel.size();
+        ByteBuffer batchHeader = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+        ByteBuffer records = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        CRC32C crc = new CRC32C();
+        while (readFully(channel, batchHeader.clear(), position) == BATCH_HEADER_SIZE) {
+            int length = batchHeader.getInt(0);
+            if (length <= 0 || position + BATCH_HEADER_SIZE + length > size) {
+                break;
+            }
+            if (records.capacity() < length) {
+                records = ByteBuffer.allocate(Math.max(length, 2 * records.capacity()));
+            }
+            readFully(channel, records.clear().limit(length), position + BATCH_HEADER_SIZE);
+            crc.reset();
+            crc.update(records.flip());
+            if ((int) crc.getValue() != batchHeader.getInt(4)) {
+                break;
+            }
+            count += visitRecords(records.flip(), visitor);
+            position += BATCH_HEADER_SIZE + length;
+        }
+        return new Position(first.offset() + position - HEADER_SIZE, count);
+    }
+
+    /**
+     * Passes the records of a batch to a visitor.
+     *
+     * @param records the records of the batch.
+     * @param visitor the visitor, or null to only count the records.
+     * @return the number of records of the batch.
+     * @throws IOException if a record is invalid.
+     */
+    private static int visitRecords(ByteBuffer records, RecordVisitor visitor) throws IOException {
+        int count = 0;
+        try {
+            while (records.hasRemaining()) {
+                count++;
+                byte type = records.get();
+                long game = records.getLong();
+                switch (type) {
+                    case NEW_GAME:
+                        int rows = records.get();
+                        int columns = records.get();
+                        String player1 = readName(records);
+                        String player2 = readName(records);
+                        if (visitor != null) {
+                            visitor.newGame(game, rows, columns, player1, player2);
+                        }
+                        break;
+                    case MOVE:
+                        short location = records.getShort();
+                        if (visitor != null) {
+                            visitor.move(game, location);
+                        }
+                        break;
+                    case GAME_OVER:
+                        boolean disconnected = records.get() == DISCONNECT;
+                        byte winner = records.get();
+                        if (visitor != null) {
+                            visitor.gameOver(game, disconnected, winner);
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Incomplete record", e);
+        }
+        return count;
+    }
+
+    /**
+     * Reads a username, as a short length followed by UTF-8 bytes.
+     *
+     * @param records the buffer to read from.
+     * @return the username.
+     */
+    private static String readName(ByteBuffer records) {
+        byte[] name = new byte[records.getShort()];
+        records.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads from a position of a file until the buffer is full or the file ends.
+     *
+     * @param channel  the file.
+     * @param buffer   the buffer to fill.
+     * @param position the position to read from.
+     * @return the number of bytes that were read.
+     * @throws IOException if the file cannot be read.
+     */
+    static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+}
@@ -1,23 +1,42 @@
 package server;
 
-import helpers.ServerProtocol;
+import networking.ConnectionMode;
 import networking.SocketServer;
 
 import java.io.IOException;
 import java.net.Socket;
-import java.util.HashSet;
+import java.nio.file.Path;
 import java.util.InputMismatchException;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements a server for the Dots and Boxes game which accepts connection from clients.
  * Inspired from the classes from Software Systems, week 7.
+ * The commands of different clients are handled in parallel: the lobby uses concurrent collections, the queue is
+ * guarded by the GameHandler and every game by its own lock, so the server itself is not locked.
  */
 public class Server extends SocketServer {
+    /**
+     * The journal file of the games, if none is given when starting the server.
+     */
+    public static final String JOURNAL_FILE = "games.journal";
+    /**
+     * The directory of the archive of the finished games, if none is given when starting the server.
+     */
+    public static final String ARCHIVE_DIRECTORY = "archive";
 
-    private final Set<ClientHandler> clients = new HashSet<>();
-    private final GameHandler gameHandler;
+    private final Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
+    // The usernames that are logged in, and the client that reserved each of them.
+    private final Map<String, ClientHandler> usernames = new ConcurrentHashMap<>();
+    // The usernames in the order of login, with the cached list messages. Only changed together with usernames.
+    private final LobbyRoster roster = new LobbyRoster();
+    private final Path journalPath;
+    private final Path archivePath;
+    // Set by start, before any connection is accepted.
+    private volatile GameHandler gameHandler;
 
     /**
      * Constructs a new ChatServer.
@@ -26,8 +45,92 @@ public class Server extends SocketServer {
      * @throws IOException if the server socket cannot be created, for example, because the port is already bound.
      */
     public Server(int port) throws IOException {
-        super(port);
-        gameHandler = new GameHandler();
+        this(port, ConnectionMode.THREAD);
+    }
+
+    /**
+     * Constructs a new server that handles its connections in the given mode.
+     *
+     * @param port           the port to listen on
+     * @param connectionMode the way in which the connections are handled, see ConnectionMode.
+     * @throws IOException if the server socket cannot be created, for example, because the port is already bound.
+     */
+    public Server(int port, ConnectionMode connectionMode) throws IOException {
+        this(port, connectionMode, null);
+    }
+
+    /**
+     * Constructs a new server that handles its connections in the given mode, and records its games in a journal.
+     * When the server is started, the games that were in progress when the server that wrote the journal stopped are
+     * recovered, and resumed when their players log in again.
+     *
+     * @param port           the port to listen on
+     * @param connectionMode the way in which the connections are handled, see ConnectionMode.
+     * @param journalPath    the path of the journal of the games, or null if the games are not recorded.
+     * @throws IOException if the server socket cannot be created, for example, because the port is already bound.
+     */
+    public Server(int port, ConnectionMode connectionMode, Path journalPath) throws IOException {
+        this(port, connectionMode, journalPath, null);
+    }
+
+    /**
+     * Constructs a new server that handles its connections in the given mode, records its games in a journal, and
+     * keeps the finished games in an archive, see GameArchive.
+     *
+     * @param port           the port to listen on
+     * @param connectionMode the way in which the connections are handled, see ConnectionMode.
+     * @param journalPath    the path of the journal of the games, or null if the games are not recorded.
+     * @param archivePath    the directory of the archive, or null if the finished games are not archived.
+     * @throws IOException if the server socket cannot be created, for example, because the port is already bound.
+     */
+    public Server(int port, ConnectionMode connectionMode, Path journalPath, Path archivePath) throws IOException {
+        super(port, connectionMode);
+        this.journalPath = journalPath;
+        this.archivePath = archivePath;
+    }
+
+    /**
+     * Starts the server: recovers the games from the journal, if there is one, opens the archive and starts the
+     * matchmaker. Called once, before acceptConnections. If the server cannot be started, it is closed.
+     *
+     * @throws IOException if the journal cannot be opened or read, or the archive cannot be opened.
+     */
+    public void start() throws IOException {
+        if (gameHandler != null) {
+            throw new IllegalStateException("The server was already started");
+        }
+        MoveJournal journal = null;
+        GameArchive archive = null;
+        JournalRecovery.Result recovery = null;
+        if (journalPath != null) {
+            try {
+                long start = System.nanoTime();
+                recovery = JournalRecovery.recover(journalPath, GameCheckpoint.pathFor(journalPath));
+                System.out.println("Recovered " + recovery.games().size() + " games in progress in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms.");
+                journal = new MoveJournal(journalPath, recovery.journalEnd());
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+        if (archivePath != null) {
+            try {
+                archive = new GameArchive(archivePath);
+            } catch (IOException e) {
+                if (journal != null) {
+                    journal.close();
+                }
+                close();
+                throw e;
+            }
+        }
+        GameHandler handler = new GameHandler(journal, archive);
+        if (recovery != null) {
+            handler.restore(recovery.games(), recovery.nextGameId());
+        }
+        handler.start();
+        gameHandler = handler;
     }
 
     /**
@@ -44,21 +147,28 @@ public class Server extends SocketServer {
      * Accepts connections and starts a new thread for each connection.
      * This method will block until the server socket is closed, for example by invoking closeServerSocket.
      *
-     * @throws IOException if an I/O error occurs when waiting for a connection
+     * @throws IOException           if an I/O error occurs when waiting for a connection
+     * @throws IllegalStateException if the server was not started
      */
     @Override
     public void acceptConnections() throws IOException {
+        if (gameHandler == null) {
+            throw new IllegalStateException("The server has to be started first");
+        }
         super.acceptConnections();
     }
 
     /**
      * Closes the server socket. This will cause the server to stop accepting new connections.
      * If called from a different thread than the one running acceptConnections, then that thread will return from
-     * acceptConnections.
+     * acceptConnections. Also stops the matchmaker of the game handler.
      */
     @Override
     public synchronized void close() {
         super.close();
+        if (gameHandler != null) {
+            gameHandler.close();
+        }
     }
 
     /**
@@ -68,10 +178,11 @@ public class Server extends SocketServer {
      */
     @Override
     protected void handleConnection(Socket socket) throws IOException {
-        ServerConnection serverConnection = new ServerConnection(socket);
+        ServerConnection serverConnection = new ServerConnection(socket, nextSelectorLoop());
         ClientHandler clientHandler = new ClientHandler(serverConnection, this);
+        addClient(clientHandler);
         serverConnection.setClientHandler(clientHandler);
-        serverConnection.start();
+        serverConnection.start(getConnectionThreadFactory(), getConnectionWriters());
     }
 
 
@@ -80,34 +191,55 @@ public class Server extends SocketServer {
      *
      * @param clientHandler which corresponds to the client.
      */
-    synchronized void addClient(ClientHandler clientHandler) {
+    void addClient(ClientHandler clientHandler) {
         clients.add(clientHandler);
     }
 
     /**
      * Removes a client from the list of clients.
      * Removes the player from the queue.
-     * Also ends the game if the player is in a game.
+     * Also ends the game if the player is in a game, and releases its username.
      *
      * @param clientHandler which corresponds to the client.
      */
-    public synchronized void removeClient(ClientHandler clientHandler) {
+    public void removeClient(ClientHandler clientHandler) {
+        gameHandler.disconnect(clientHandler); //if this is not called, a game can be created
+        // with a disconnected player. It is done first, so no game can be created for the player after the next line.
         gameHandler.endByDisconnect(clientHandler); //ends the game if the player is in a game.
-        gameHandler.removePlayer(clientHandler); //if this is not called, a game can be created
-        // with a disconnected player.
         clients.remove(clientHandler);
+        if (clientHandler.getUsername() != null) {
+            // the username can be used again. The roster is changed atomically with the registry.
+            usernames.computeIfPresent(clientHandler.getUsername(), (name, owner) -> {
+                if (owner != clientHandler) {
+                    return owner;
+                }
+                roster.remove(name);
+                return null;
+            });
+        }
         System.out.println(clientHandler.getUsername() + " disconnected.");
     }
 
+    /**
+     * Handles a client that broke the protocol.
+     * Removes the player from the queue and ends its game, but keeps its connection and its username.
+     *
+     * @param clientHandler which corresponds to the client.
+     */
+    public void handleClientError(ClientHandler clientHandler) {
+        gameHandler.removePlayer(clientHandler);
+        gameHandler.endByDisconnect(clientHandler); //ends the game if the player is in a game.
+    }
+
     /**
      * Handles the hello command.
      * Can only be called once at the start of the connection.
      * Replies with a hello command back to the client.
-     * Synchronized to prevent multiple clients from sending a hello command at the same time.
+     * Only the state of the client itself is used, so it is not synchronized.
      *
      * @param clientHandler, the client sending the Hello.
      */
-    public synchronized void handleHello(ClientHandler clientHandler) {
+    public void handleHello(ClientHandler clientHandler) {
         //if the client is not in the new state, it has already sent a hello command.
         if (clientHandler.getState() != ClientState.NEW) {
             clientHandler.sendError("Hello command already received!");
@@ -122,38 +254,41 @@ public class Server extends SocketServer {
      * Handles the login command, adding the client to the list of clients.
      * Can only be called once, if the client is in the connected state, i.e. the client has sent a hello command.
      * Prevents the client from logging in with a username that is already logged in.
-     * Synchronized to prevent multiple clients from logging in at the same time.
+     * The username is reserved atomically in the registry of usernames, so no lock is needed and two clients can
+     * never log in with the same username at the same time.
      *
      * @param clientHandler, the client sending the login command.
      * @param username,      the username the client wants to log in with.
      */
-    public synchronized void handleLogin(ClientHandler clientHandler, String username) {
+    public void handleLogin(ClientHandler clientHandler, String username) {
         //if the client is not in the connected state, it has not sent a hello command.
         if (clientHandler.getState() != ClientState.CONNECTED) {
             clientHandler.sendError("Cannot log in at this time!");
             return;
         }
-        //checks if the username is already logged in. This needs to be done to prevent username duplicates.
-        for (ClientHandler c : clients) {
-            if (c != clientHandler) {
-                if (c.getUsername().equals(username)) {
-                    clientHandler.sendAlreadyLoggedIn();
-                    return;
-                }
-            }
+        //reserves the username, unless it is already logged in. This needs to be done to prevent username duplicates.
+        ClientHandler owner = usernames.computeIfAbsent(username, name -> {
+            roster.add(name);
+            return clientHandler;
+        });
+        if (owner != clientHandler) {
+            clientHandler.sendAlreadyLoggedIn();
+            return;
         }
         clientHandler.setUsername(username);
         addClient(clientHandler);
         clientHandler.sendLogin(); //sends a login command back to the client.
         clientHandler.setState(ClientState.LOGGED_IN); //the client is now in the logged in state.
+        gameHandler.resumeRecoveredGame(clientHandler); //resumes its game, if the server stopped during one.
     }
 
     /**
-     * Handles the list command, sending a list of all the clients to the client.
+     * Handles the list command, sending a list of all the logged in clients to the client.
+     * The list message is encoded once after every login or logout, and shared by all list commands until then.
      *
      * @param clientHandler the client sending the list command.
      */
-    public synchronized void handleList(ClientHandler clientHandler) {
+    public void handleList(ClientHandler clientHandler) {
         /*
         If the client is not in the logged in state, it has not logged in yet.
         This method can only be called after login
@@ -162,51 +297,73 @@ public class Server extends SocketServer {
             clientHandler.sendError("not logged in yet!");
             return;
         }
-        // Creates a list of all the clients, separated by the separator.
-        StringBuilder list = new StringBuilder();
-        for (ClientHandler c : clients) {
-            list.append(ServerProtocol.SEPARATOR).append(c.getUsername());
+        clientHandler.sendList(roster.listMessage());
+    }
+
+    /**
+     * Handles the list command for a page of the list, so a client with a large lobby can fetch it in parts.
+     *
+     * @param clientHandler the client sending the list command.
+     * @param offset        the index of the first username of the page.
+     * @param limit         the maximum number of usernames of the page.
+     */
+    public void handleListPage(ClientHandler clientHandler, int offset, int limit) {
+        if (clientHandler.getState() != ClientState.LOGGED_IN) {
+            clientHandler.sendError("not logged in yet!");
+            return;
+        }
+        if (offset < 0 || limit <= 0) {
+            clientHandler.sendError("invalid page!");
+            return;
+        }
+        clientHandler.sendList(roster.pageMessage(offset, limit));
+    }
+
+    /**
+     * Handles the list command for the changes since a version of the list, so a client that polls the list only
+     * receives the usernames that logged in or out.
+     *
+     * @param clientHandler the client sending the list command.
+     * @param version       the version of the list that the client knows.
+     */
+    public void handleListSince(ClientHandler clientHandler, long version) {
+        if (clientHandler.getState() != ClientState.LOGGED_IN) {
+            clientHandler.sendError("not logged in yet!");
+            return;
         }
-        clientHandler.sendList(list.toString());
+        clientHandler.sendList(roster.deltaMessage(version));
     }
 
     /**
      * Handles the queue command, adding the client to the queue, or removing the client from the queue.
      *
      * @param clientHandler, the client sending the queue command.
-     * Synchronized to prevent multiple clients from queueing at the same time, creating erroneous games.
+     * The queue is changed atomically by the GameHandler, to prevent erroneous games, without locking the server.
      */
-    public synchronized void handleQueue(ClientHandler clientHandler) {
+    public void handleQueue(ClientHandler clientHandler) {
         /*
         Can only be called after login and when the client is not in a game.
         */
-        if (clientHandler.getState() == ClientState.NEW || clientHandler.getState() == ClientState.CONNECTED) {
+        if (clientHandler.getState() == ClientState.NEW || clientHandler.getState() == ClientState.CONNECTED
+                || clientHandler.getState() == ClientState.DISCONNECTED) {
             clientHandler.sendError("not logged in yet!");
             return;
         }
-        if (clientHandler.getState() == ClientState.IN_GAME) {
-            clientHandler.sendError("already in game!");
-            return;
-        }
-
         //every subsequent queue command will toggle the player in the queue.
-        if (!gameHandler.getPlayerQueue().contains(clientHandler)) {
-            gameHandler.addPlayer(clientHandler);
-            gameHandler.createGame();
-        } else {
-            gameHandler.removePlayer(clientHandler);
+        if (!gameHandler.toggleQueue(clientHandler)) {
+            clientHandler.sendError("already in game!");
         }
     }
 
     /**
      * Handles the move command, performing the move in the game.
      * Can only be called when the client is in the in game state.
-     * Synchronized to prevent multiple clients from making a move at the same time.
+     * Only the game of the client is locked, by the GameHandler, so moves in different games are made in parallel.
      *
      * @param clientHandler the client sending the move command.
      * @param location      the location the client wants to make a move at.
      */
-    public synchronized void handleMove(ClientHandler clientHandler, int location) {
+    public void handleMove(ClientHandler clientHandler, int location) {
         // Can only be called when the client is in the in game state.
         if (clientHandler.getState() != ClientState.IN_GAME) {
             clientHandler.sendError("not in game yet!");
@@ -225,8 +382,22 @@ public class Server extends SocketServer {
     /**
      * Starts the server.
      * If the port is in use, the user will be prompted to enter another port.
+     * The connection mode can be given as the first argument, i.e. "selector" or "virtual_thread"; by default, every
+     * client gets a platform thread.
+     * The games are recorded in the journal file that is given as the second argument, or in JOURNAL_FILE, and the
+     * finished games are archived in the directory that is given as the third argument, or in ARCHIVE_DIRECTORY.
      */
     public static void main(String[] args) {
+        ConnectionMode connectionMode = ConnectionMode.THREAD;
+        if (args.length > 0) {
+            try {
+                connectionMode = ConnectionMode.valueOf(args[0].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown connection mode " + args[0] + ", using " + connectionMode);
+            }
+        }
+        Path journalPath = Path.of(args.length > 1 ? args[1] : JOURNAL_FILE);
+        Path archivePath = Path.of(args.length > 2 ? args[2] : ARCHIVE_DIRECTORY);
         Scanner input1 = new Scanner(System.in);
         int port;
         while (true) {
@@ -250,10 +421,11 @@ public class Server extends SocketServer {
             }
         }
         try {
-            Server chatServer = new Server(port);
+            Server chatServer = new Server(port, connectionMode, journalPath, archivePath);
+            chatServer.start();
             chatServer.acceptConnections();
             System.out.println(chatServer.getPort());
-        } catch (IOException e) {
+        } catch (IOException | UnsupportedOperationException e) {
             System.out.println("Failed to start the server: " + e.getMessage());
         }
     }
@@ -1,63 +1,93 @@
 package server;
 
 import helpers.ClientProtocol;
+import helpers.ProtocolTokenizer;
 import helpers.ServerProtocol;
+import networking.SelectorLoop;
 import networking.SocketConnection;
 
 import java.io.IOException;
 import java.net.Socket;
-
-import static java.lang.Integer.parseInt;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Class which establishes a connection with a client and handles the communication with that client.
  */
 
 public class ServerConnection extends SocketConnection {
+    // Prints every message that is received, e.g. "java -Dserver.debug=true server.Server". Off by default, as the
+    // message would be copied for every move, under the lock of System.out.
+    private static final boolean DEBUG = Boolean.getBoolean("server.debug");
+    // The commands a client can send, see ClientProtocol.
+    private static final String[] COMMANDS = {ClientProtocol.HELLO, ClientProtocol.LOGIN, ClientProtocol.LIST,
+        ClientProtocol.QUEUE, ClientProtocol.MOVE, ClientProtocol.ERROR};
 
     ClientHandler clientHandler;
+    // Splits the messages of the client, which are handled one at a time.
+    private final ProtocolTokenizer tokens = new ProtocolTokenizer();
+    private boolean binaryRequested = false; // true if the client announced the binary protocol in its hello
 
     protected ServerConnection(Socket socket) throws IOException {
         super(socket);
     }
 
+    /**
+     * Creates a connection that is handled by the given selector loop, or by a thread of its own if the loop is null.
+     *
+     * @param socket the socket of the client.
+     * @param loop   the selector loop that receives the messages of the client, or null.
+     * @throws IOException if the connection cannot be set up.
+     */
+    protected ServerConnection(Socket socket, SelectorLoop loop) throws IOException {
+        super(socket, loop);
+    }
+
     /**
      * Handles a message received from the client.
      * This method is called by the receiving thread.
      * Sends errors to the client if the command is not valid (i.e, not in the protocol or untimely).
+     * The message is tokenized in place, so only the arguments that are kept, such as the username, become strings.
      *
      * @param message the message received from the connection
      */
     @Override
     protected void handleMessage(String message) {
-        System.out.println("Received message: " + message); // for debugging purposes
-        String[] tokens = message.split(ServerProtocol.SEPARATOR);
-        if (tokens.length > 0) { //if message non-empty
-            String command = tokens[0];
+        if (DEBUG) {
+            System.out.println("Received message: " + message);
+        }
+        tokens.reset(message);
+        if (tokens.countTokens() > 0) { //if message non-empty
+            String command = tokens.nextKnownToken(COMMANDS);
+            if (command == null) {
+                clientHandler.sendError("Unknown command: " + tokens.tokenAsString());
+                return;
+            }
             // handle the command, based on the protocol. The first token is the command.
             // Delegates the handling of the commands to the clientHandler.
             switch (command) {
                 case ClientProtocol.HELLO:
+                    binaryRequested = hasExtension(ClientProtocol.BINARY);
                     clientHandler.receiveHello();
                     break;
                 case ClientProtocol.LOGIN:
-                    if (tokens.length > 1) {
-                        clientHandler.receiveLogin(tokens[1]);
+                    if (tokens.hasMoreTokens()) {
+                        clientHandler.receiveLogin(tokens.nextToken().tokenAsString());
                     } else {
                         //Send error to prevent a null username.
                         clientHandler.sendError("no username provided");
                     }
                     break;
                 case ClientProtocol.LIST:
-                    clientHandler.receiveList();
+                    handleList();
                     break;
                 case ClientProtocol.QUEUE:
                     clientHandler.receiveQueue();
                     break;
                 case ClientProtocol.MOVE:
-                    if (tokens.length == 2) {
+                    if (tokens.countTokens() == 2) {
                         try {
-                            int location = parseInt(tokens[1]);
+                            int location = tokens.nextToken().tokenAsInt();
                             clientHandler.receiveMove(location);
                         } catch (NumberFormatException e) {
                             // Prevents the server from crashing when the client sends a non-integer move. Important!
@@ -72,19 +102,81 @@ public class ServerConnection extends SocketConnection {
                     clientHandler.receiveError();
                     break;
                 default:
-                    clientHandler.sendError("Unknown command: " + command);
                     break;
             }
         }
     }
 
+    /**
+     * Handles a binary frame received from the client, after both sides switched to the binary protocol.
+     * A move frame is handled like a move command, without parsing text.
+     *
+     * @param type  the type of the frame.
+     * @param value the value the frame carries.
+     */
+    @Override
+    protected void handleFrame(int type, int value) {
+        if (type == ClientProtocol.MOVE_FRAME) {
+            clientHandler.receiveMove(value);
+        } else {
+            clientHandler.sendError("Unknown frame: " + type);
+        }
+    }
+
+    /**
+     * Handles the list command that is being handled: LIST, LIST~PAGE~offset~limit or LIST~SINCE~version.
+     */
+    private void handleList() {
+        if (!tokens.hasMoreTokens()) {
+            clientHandler.receiveList();
+            return;
+        }
+        try {
+            if (tokens.nextToken().tokenEquals(ClientProtocol.PAGE) && tokens.countTokens() == 4) {
+                int offset = tokens.nextToken().tokenAsInt();
+                int limit = tokens.nextToken().tokenAsInt();
+                clientHandler.receiveListPage(offset, limit);
+            } else if (tokens.tokenEquals(ClientProtocol.SINCE) && tokens.countTokens() == 3) {
+                clientHandler.receiveListSince(tokens.nextToken().tokenAsLong());
+            } else {
+                clientHandler.sendError("list.");
+            }
+        } catch (NumberFormatException e) {
+            clientHandler.sendError("Invalid list request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether the rest of the hello message that is being handled, after the description, contains the given
+     * extension.
+     *
+     * @param extension the extension to look for.
+     * @return true if the client announced the extension.
+     */
+    private boolean hasExtension(String extension) {
+        if (tokens.hasMoreTokens()) {
+            tokens.nextToken(); // the description
+        }
+        while (tokens.hasMoreTokens()) {
+            if (tokens.nextToken().tokenEquals(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // -- Sending commands to the client -------------------------------
 
     /**
-     * Sends a hello message to the client.
+     * Sends a hello message to the client, which announces the binary protocol.
+     * If the client announced it as well, both sides switch to binary frames right after this message.
      */
     public void sendHello() {
-        super.sendMessage(ServerProtocol.HELLO + ServerProtocol.SEPARATOR + "Minor 14 - Server");
+        super.sendMessage(ServerProtocol.HELLO + ServerProtocol.SEPARATOR + "Minor 14 - Server"
+                + ServerProtocol.SEPARATOR + ServerProtocol.BINARY);
+        if (binaryRequested) {
+            useBinaryFraming(); // the client switches when it receives the hello
+        }
     }
 
     /**
@@ -102,12 +194,12 @@ public class ServerConnection extends SocketConnection {
     }
 
     /**
-     * Sends a list of all the clients to the client.
+     * Sends a list of the clients to the client.
      *
-     * @param list, the list of all the clients.
+     * @param list, the encoded list message, i.e. a LIST, LISTPAGE or LISTDELTA message.
      */
     public void sendList(String list) {
-        super.sendMessage(ServerProtocol.LIST + list);
+        super.sendMessage(list);
     }
 
     /**
@@ -125,9 +217,15 @@ public class ServerConnection extends SocketConnection {
      * Sends a move message to the client.
      * Should be sent to both clients in the game.
      *
+     * With the binary protocol, the move is sent as a move frame.
+     *
      * @param location, the location of the move.
      */
     public void sendMove(int location) {
+        if (isBinaryFraming()) {
+            super.sendFrame(ServerProtocol.MOVE_FRAME, location);
+            return;
+        }
         super.sendMessage(ServerProtocol.MOVE + ServerProtocol.SEPARATOR + location);
     }
 
@@ -138,6 +236,10 @@ public class ServerConnection extends SocketConnection {
      * @param winner the name of the winner, or null if the game is a draw.
      */
     public void sendGameOver(String reason, String winner) {
+        if (winner == null) {
+            super.sendMessage(ServerProtocol.GAME_OVER + ServerProtocol.SEPARATOR + reason);
+            return;
+        }
         super.sendMessage(ServerProtocol.GAME_OVER + ServerProtocol.SEPARATOR
                 + reason + ServerProtocol.SEPARATOR + winner);
     }
@@ -160,6 +262,17 @@ public class ServerConnection extends SocketConnection {
         super.start();
     }
 
+    /**
+     * Starts the connection, receiving on a thread of the given factory and writing on threads of the given executor.
+     *
+     * @param threadFactory  the factory of the receiving thread, e.g., of virtual threads.
+     * @param writerExecutor the executor of the writers, e.g., of virtual threads.
+     */
+    @Override
+    public void start(ThreadFactory threadFactory, Executor writerExecutor) {
+        super.start(threadFactory, writerExecutor);
+    }
+
     /**
      * Sets the clientHandler of this connection.
      *
@@ -169,6 +282,15 @@ public class ServerConnection extends SocketConnection {
         this.clientHandler = clientHandler;
     }
 
+    /**
+     * Handles a client that does not read the messages sent to it fast enough, by disconnecting it.
+     */
+    @Override
+    protected void handleBackpressure() {
+        System.out.println("Client " + clientHandler.getUsername() + " is too far behind, disconnecting.");
+        super.handleBackpressure();
+    }
+
     /**
      * Removes the clientHandler of this connection.
      */
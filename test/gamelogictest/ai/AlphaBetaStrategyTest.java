@@ -0,0 +1,140 @@
+package gamelogictest.ai;
+
+import gamelogic.ai.AlphaBetaStrategy;
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.DotsAndBoxesGame;
+import gamelogic.model.Line;
+import gamelogic.model.Mark;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for AlphaBetaStrategy.
+ */
+public class AlphaBetaStrategyTest {
+    BasicPlayer player1;
+    BasicPlayer player2;
+    DotsAndBoxesGame game;
+    AlphaBetaStrategy strategy;
+
+    @BeforeEach
+    public void setUp() {
+        player1 = new BasicPlayer("Dillon", Mark.X);
+        player2 = new BasicPlayer("Matei", Mark.O);
+        game = new DotsAndBoxesGame(player1, player2);
+        strategy = new AlphaBetaStrategy("Alpha-beta", 200);
+    }
+
+    /**
+     * Test the name and the time budget of the strategy.
+     */
+    @Test
+    void testSetup() {
+        assertEquals("Alpha-beta", strategy.getName());
+        assertEquals(200, strategy.getTimeBudget());
+        assertEquals(AlphaBetaStrategy.DEFAULT_TIME_BUDGET, new AlphaBetaStrategy("Default").getTimeBudget());
+        assertThrows(IllegalArgumentException.class, () -> new AlphaBetaStrategy("Wrong", 0));
+        assertThrows(IllegalArgumentException.class, () -> new AlphaBetaStrategy("Wrong", 100, 3));
+    }
+
+    /**
+     * Test that the strategy completes a box when it can.
+     */
+    @Test
+    void testCompletesBox() {
+        game.drawLine(new Line(0));
+        game.drawLine(new Line(5));
+        game.drawLine(new Line(6));
+        assertEquals(11, strategy.computeLocation(game));
+    }
+
+    /**
+     * Test that the strategy does not give away a box while there are safe moves left.
+     */
+    @Test
+    void testAvoidsGivingBox() {
+        game.drawLine(new Line(0));
+        game.drawLine(new Line(5));
+        int location = strategy.computeLocation(game);
+        assertTrue(game.isValidLocation(location));
+        assertNotEquals(6, location);
+        assertNotEquals(11, location);
+    }
+
+    /**
+     * Test that computing a move does not change the game.
+     */
+    @Test
+    void testGameNotChanged() {
+        game.drawLine(new Line(0));
+        game.drawLine(new Line(5));
+        game.drawLine(new Line(6));
+        long hash = game.positionHash();
+        strategy.computeLocation(game);
+        assertEquals(hash, game.positionHash());
+        assertEquals(3, game.getMoveCount());
+        assertEquals(0, player1.getScore() + player2.getScore());
+    }
+
+    /**
+     * Test that the strategy stays within its time budget on the empty default board.
+     */
+    @Test
+    void testTimeBudget() {
+        long start = System.currentTimeMillis();
+        int location = strategy.computeLocation(game);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertTrue(game.isValidLocation(location));
+        assertTrue(strategy.getNodeCount() > 0);
+    }
+
+    /**
+     * Test that the strategy can play a full game against itself on a small board, where it searches to the end.
+     */
+    @Test
+    void testFullGameSmallBoard() {
+        DotsAndBoxesGame smallGame = new DotsAndBoxesGame(player1, player2, 2, 2);
+        while (!smallGame.isGameOver()) {
+            int location = strategy.computeLocation(smallGame);
+            assertTrue(smallGame.isValidLocation(location));
+            smallGame.makeMove(location);
+        }
+        assertEquals(4, player1.getScore() + player2.getScore());
+    }
+
+    /**
+     * Test that the asynchronous search completes with a valid move at its deadline, even though its time budget
+     * is much longer.
+     */
+    @Test
+    void testComputeLocationAsyncDeadline() throws InterruptedException, ExecutionException, TimeoutException {
+        AlphaBetaStrategy slowStrategy = new AlphaBetaStrategy("Slow", 60000);
+        long start = System.currentTimeMillis();
+        int location = slowStrategy.computeLocationAsync(game, Instant.now().plusMillis(200)).get(2, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertTrue(game.isValidLocation(location));
+    }
+
+    /**
+     * Test that cancelling the asynchronous search stops it, so the next search does not have to wait for it.
+     */
+    @Test
+    void testComputeLocationAsyncCancel() {
+        CompletableFuture<Integer> future = strategy.computeLocationAsync(game, Instant.now().plusSeconds(60));
+        assertTrue(future.cancel(true));
+        long start = System.currentTimeMillis();
+        assertTrue(game.isValidLocation(strategy.computeLocation(game)));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+}
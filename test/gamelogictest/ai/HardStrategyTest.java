@@ -8,6 +8,11 @@ import gamelogic.model.Mark;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -64,5 +69,33 @@ public class HardStrategyTest {
         assertEquals(1, strategy.getIndexEmptyLineBox(strategy.boxesOneFromFull(game).get(0)));
     }
 
+    /**
+     * Test that the lines of a box are found on the default board and on a rectangular board.
+     */
+    @Test
+    void testGetLocationLine() {
+        assertEquals(0, strategy.getLocationLine(game, 0, 0));
+        assertEquals(5, strategy.getLocationLine(game, 0, 1));
+        assertEquals(6, strategy.getLocationLine(game, 0, 2));
+        assertEquals(11, strategy.getLocationLine(game, 0, 3));
+        DotsAndBoxesGame rectangularGame = new DotsAndBoxesGame(new BasicPlayer("Dillon", Mark.X),
+                new BasicPlayer("Matei", Mark.O), 2, 3);
+        // box 4 is in the second row, second column
+        assertEquals(8, strategy.getLocationLine(rectangularGame, 4, 0));
+        assertEquals(11, strategy.getLocationLine(rectangularGame, 4, 1));
+        assertEquals(12, strategy.getLocationLine(rectangularGame, 4, 2));
+        assertEquals(15, strategy.getLocationLine(rectangularGame, 4, 3));
+    }
 
+    /**
+     * Test that the asynchronous variant completes a box, like computeLocation.
+     */
+    @Test
+    void testComputeLocationAsync() throws InterruptedException, ExecutionException, TimeoutException {
+        game.drawLine(new Line(0));
+        game.drawLine(new Line(5));
+        game.drawLine(new Line(6));
+        int location = strategy.computeLocationAsync(game, Instant.now().plusSeconds(1)).get(2, TimeUnit.SECONDS);
+        assertEquals(11, location);
+    }
 }
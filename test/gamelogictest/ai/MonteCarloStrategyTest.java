@@ -0,0 +1,121 @@
+package gamelogictest.ai;
+
+import gamelogic.ai.MonteCarloStrategy;
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.DotsAndBoxesGame;
+import gamelogic.model.Line;
+import gamelogic.model.Mark;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for MonteCarloStrategy.
+ */
+public class MonteCarloStrategyTest {
+    BasicPlayer player1;
+    BasicPlayer player2;
+    DotsAndBoxesGame game;
+    MonteCarloStrategy strategy;
+
+    @BeforeEach
+    public void setUp() {
+        player1 = new BasicPlayer("Dillon", Mark.X);
+        player2 = new BasicPlayer("Matei", Mark.O);
+        game = new DotsAndBoxesGame(player1, player2);
+        strategy = new MonteCarloStrategy("Monte Carlo", 2000, 2);
+    }
+
+    /**
+     * Test the name and the configuration of the strategy.
+     */
+    @Test
+    void testSetup() {
+        assertEquals("Monte Carlo", strategy.getName());
+        assertEquals(2000, strategy.getPlayouts());
+        assertEquals(2, strategy.getTrees());
+        assertThrows(IllegalArgumentException.class, () -> new MonteCarloStrategy("Wrong", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new MonteCarloStrategy("Wrong", 100, 0));
+    }
+
+    /**
+     * Test that computing a move gives a valid location and does not change the game.
+     */
+    @Test
+    void testValidMoveGameNotChanged() {
+        game.drawLine(new Line(0));
+        game.drawLine(new Line(5));
+        long hash = game.positionHash();
+        int location = strategy.computeLocation(game);
+        assertTrue(game.isValidLocation(location));
+        assertEquals(hash, game.positionHash());
+        assertEquals(2, game.getMoveCount());
+    }
+
+    /**
+     * Test that the strategy completes a box instead of giving both boxes of a small board away.
+     */
+    @Test
+    void testCompletesBox() {
+        // on a 1 x 2 board, box 0 has the lines 0, 2, 3 and 5 and box 1 the lines 1, 3, 4 and 6
+        DotsAndBoxesGame smallGame = new DotsAndBoxesGame(player1, player2, 1, 2);
+        smallGame.makeMove(0);
+        smallGame.makeMove(2);
+        smallGame.makeMove(5);
+        smallGame.makeMove(1);
+        // drawing 4 or 6 lets the opponent complete both boxes
+        assertEquals(3, strategy.computeLocation(smallGame));
+    }
+
+    /**
+     * Test that the strategy can play a full game against itself with a single tree.
+     */
+    @Test
+    void testFullGameSingleTree() {
+        MonteCarloStrategy singleTree = new MonteCarloStrategy("Single", 200, 1);
+        DotsAndBoxesGame smallGame = new DotsAndBoxesGame(player1, player2, 3, 3);
+        while (!smallGame.isGameOver()) {
+            int location = singleTree.computeLocation(smallGame);
+            assertTrue(smallGame.isValidLocation(location));
+            smallGame.makeMove(location);
+        }
+        assertEquals(9, player1.getScore() + player2.getScore());
+    }
+
+    /**
+     * Test that the asynchronous search stops at its deadline, before its playout budget is used up.
+     */
+    @Test
+    void testComputeLocationAsyncDeadline() throws InterruptedException, ExecutionException, TimeoutException {
+        MonteCarloStrategy slowStrategy = new MonteCarloStrategy("Slow", Integer.MAX_VALUE, 2);
+        long start = System.currentTimeMillis();
+        int location = slowStrategy.computeLocationAsync(game, Instant.now().plusMillis(200)).get(2, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertTrue(game.isValidLocation(location));
+    }
+
+    /**
+     * Test that a search that is cut off by its deadline plays the move that was tried most often so far, not just
+     * the first free line.
+     */
+    @Test
+    void testComputeLocationAsyncBestMoveSoFar() throws InterruptedException, ExecutionException, TimeoutException {
+        MonteCarloStrategy slowStrategy = new MonteCarloStrategy("Slow", Integer.MAX_VALUE, 2);
+        DotsAndBoxesGame smallGame = new DotsAndBoxesGame(player1, player2, 1, 2);
+        smallGame.makeMove(0);
+        smallGame.makeMove(2);
+        smallGame.makeMove(5);
+        smallGame.makeMove(1);
+        int location = slowStrategy.computeLocationAsync(smallGame, Instant.now().plusMillis(200))
+                .get(2, TimeUnit.SECONDS);
+        assertEquals(3, location);
+    }
+}
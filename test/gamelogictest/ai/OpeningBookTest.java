@@ -0,0 +1,144 @@
+package gamelogictest.ai;
+
+import gamelogic.ai.AlphaBetaStrategy;
+import gamelogic.ai.BookStrategy;
+import gamelogic.ai.OpeningBook;
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.BoardGeometry;
+import gamelogic.model.DotsAndBoxesGame;
+import gamelogic.model.Mark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for OpeningBook and BookStrategy.
+ */
+public class OpeningBookTest {
+    BasicPlayer player1;
+    BasicPlayer player2;
+    BoardGeometry geometry;
+    Path path;
+    OpeningBook book;
+
+    /**
+     * Builds a book of 2 plies for a 2x2 board.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        player1 = new BasicPlayer("Dillon", Mark.X);
+        player2 = new BasicPlayer("Matei", Mark.O);
+        geometry = BoardGeometry.of(2, 2);
+        path = Files.createTempFile("opening", ".book");
+        OpeningBook.build(path, geometry, 2, new AlphaBetaStrategy("Alpha-beta", 50));
+        book = new OpeningBook(path);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Test that every position of the book has a valid move, and that symmetric positions get symmetric moves.
+     */
+    @Test
+    public void testLookup() {
+        assertEquals(geometry, book.getGeometry());
+        DotsAndBoxesGame game = new DotsAndBoxesGame(player1, player2, geometry);
+        int first = book.lookup(game);
+        assertTrue(game.isValidLocation(first));
+        for (int location = 0; location < geometry.getNrOfLines(); location++) {
+            for (int symmetry = 0; symmetry < geometry.getNrOfSymmetries(); symmetry++) {
+                DotsAndBoxesGame played = new DotsAndBoxesGame(player1, player2, geometry);
+                played.makeMove(location);
+                DotsAndBoxesGame mirrored = new DotsAndBoxesGame(player1, player2, geometry);
+                mirrored.makeMove(geometry.transformLine(symmetry, location));
+                int move = book.lookup(played);
+                int mirroredMove = book.lookup(mirrored);
+                assertTrue(played.isValidLocation(move));
+                assertTrue(mirrored.isValidLocation(mirroredMove));
+                played.makeMove(move);
+                mirrored.makeMove(mirroredMove);
+                assertEquals(played.canonicalPositionHash(), mirrored.canonicalPositionHash());
+            }
+        }
+    }
+
+    /**
+     * Test that positions after the last ply of the book, and games on another board, are not in the book.
+     */
+    @Test
+    public void testMissingPositions() {
+        DotsAndBoxesGame game = new DotsAndBoxesGame(player1, player2, geometry);
+        game.makeMove(0);
+        game.makeMove(1);
+        assertEquals(-1, book.lookup(game));
+        assertEquals(-1, book.lookup(new DotsAndBoxesGame(player1, player2)));
+    }
+
+    /**
+     * Test that the book strategy plays the move of the book, and the move of its strategy after the book.
+     */
+    @Test
+    public void testBookStrategy() {
+        BookStrategy strategy = new BookStrategy(book, new AlphaBetaStrategy("Alpha-beta", 50));
+        assertEquals("Alpha-beta", strategy.getName());
+        DotsAndBoxesGame game = new DotsAndBoxesGame(player1, player2, geometry);
+        assertEquals(book.lookup(game), strategy.computeLocation(game));
+        game.makeMove(0);
+        game.makeMove(1);
+        assertTrue(game.isValidLocation(strategy.computeLocation(game)));
+    }
+
+    /**
+     * Test that a lookup in a damaged book, with every slot used or with a move that is not a line, finds no move.
+     */
+    @Test
+    public void testDamagedBook() throws IOException {
+        DotsAndBoxesGame game = new DotsAndBoxesGame(player1, player2, geometry);
+        // every slot holds another position, so the probes never reach an empty slot
+        writeBook(0, 1);
+        assertEquals(-1, new OpeningBook(path).lookup(game));
+        // every slot holds the position, with a move that is not a line of the board
+        writeBook(game.canonicalPositionHash(), geometry.getNrOfLines());
+        assertEquals(-1, new OpeningBook(path).lookup(game));
+    }
+
+    /**
+     * Writes a book for the 2x2 board of 16 slots, all used.
+     *
+     * @param hash the hash of every slot, or 0 for the hashes 1 to 16.
+     * @param move the move of every slot.
+     * @throws IOException if the book cannot be written.
+     */
+    private void writeBook(long hash, int move) throws IOException {
+        int slots = 16;
+        ByteBuffer bytes = ByteBuffer.allocate(32 + slots * 16);
+        bytes.putInt(0, OpeningBook.MAGIC).putInt(4, OpeningBook.VERSION).putInt(8, 2).putInt(12, 2)
+                .putInt(16, slots);
+        for (int slot = 0; slot < slots; slot++) {
+            long slotHash = hash == 0 ? slot + 1 : hash;
+            bytes.putLong(32 + slot * 16, slotHash).putInt(32 + slot * 16 + 8, move);
+        }
+        Files.write(path, bytes.array());
+    }
+
+    /**
+     * Test that a file which is not a book is refused.
+     */
+    @Test
+    public void testNotABook() throws IOException {
+        Files.write(path, new byte[64]);
+        assertThrows(IOException.class, () -> new OpeningBook(path));
+    }
+}
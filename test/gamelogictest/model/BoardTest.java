@@ -2,6 +2,7 @@ package gamelogictest.model;
 
 import gamelogic.exceptions.InvalidMoveException;
 import gamelogic.exceptions.NonexistentBoxException;
+import gamelogic.model.BasicPlayer;
 import gamelogic.model.Board;
 import gamelogic.model.Box;
 import gamelogic.model.Line;
@@ -218,4 +219,105 @@ public class BoardTest {
         assertEquals(board.getLine(5).getLocation(), deepCopy.getLine(5).getLocation());
         assertNotSame(board, deepCopy);
     }
+
+    /**
+     * Tests that the number of drawn lines of a box is counted correctly.
+     */
+    @Test
+    public void testCountLines() {
+        assertEquals(0, board.countLines(0));
+        board.drawLine(new Line(0));
+        board.drawLine(new Line(5));
+        assertEquals(2, board.countLines(0));
+        assertEquals(0, board.countLines(1));
+        board.drawLine(new Line(6));
+        assertEquals(3, board.countLines(0));
+        assertEquals(1, board.countLines(1));
+    }
+
+    /**
+     * Tests that the owners of the boxes are stored in, and copied with, the board.
+     */
+    @Test
+    public void testBoxOwners() {
+        BasicPlayer player1 = new BasicPlayer("test1", Mark.X);
+        BasicPlayer player2 = new BasicPlayer("test2", Mark.O);
+        board.getBoxes()[0].setOwner(player1);
+        board.getBoxes()[board.getNrOfBoxes() - 1].setOwner(player2);
+        Board deepCopy = board.deepCopy();
+        assertEquals(player1, deepCopy.getBoxes()[0].getOwner());
+        assertEquals(player2, deepCopy.getBoxes()[board.getNrOfBoxes() - 1].getOwner());
+        assertNull(deepCopy.getBoxes()[1].getOwner());
+        board.getBoxes()[0].setOwner(null);
+        assertNull(board.getBoxes()[0].getOwner());
+        assertEquals(player1, deepCopy.getBoxes()[0].getOwner());
+    }
+
+    /**
+     * Tests that drawing a line reports the boxes it completes.
+     * Line 6 is shared by box 0 and box 1, so it can complete both at once.
+     */
+    @Test
+    public void testDrawLineCompletedBoxes() {
+        assertEquals(0, board.drawLine(new Line(0)));
+        assertEquals(0, board.drawLine(new Line(5)));
+        assertEquals(0, board.drawLine(new Line(11)));
+        assertEquals(0, board.drawLine(new Line(1)));
+        assertEquals(0, board.drawLine(new Line(7)));
+        assertEquals(0, board.drawLine(new Line(12)));
+        assertEquals(2, board.drawLine(new Line(6)));
+        // drawing a line twice does not complete the boxes again
+        assertEquals(0, board.drawLine(new Line(6)));
+    }
+
+    /**
+     * Tests a rectangular board of 3 rows and 4 columns.
+     * It has 4 horizontal lines per row plus 5 vertical lines per row, and 4 horizontal lines at the bottom.
+     */
+    @Test
+    public void testRectangularBoard() throws NonexistentBoxException {
+        Board rectangularBoard = new Board(3, 4);
+        assertEquals(31, rectangularBoard.getNrOfLines());
+        assertEquals(12, rectangularBoard.getNrOfBoxes());
+        assertTrue(rectangularBoard.isField(30));
+        assertFalse(rectangularBoard.isField(31));
+        // the last box has lines 21, 25, 26 and 30
+        assertEquals(0, rectangularBoard.drawLine(21));
+        assertEquals(0, rectangularBoard.drawLine(25));
+        assertEquals(0, rectangularBoard.drawLine(26));
+        assertEquals(1, rectangularBoard.drawLine(30));
+        assertTrue(rectangularBoard.determineBox(11));
+        for (int i = 0; i < rectangularBoard.getNrOfLines(); i++) {
+            rectangularBoard.drawLine(i);
+        }
+        assertTrue(rectangularBoard.isFull());
+        for (Box box : rectangularBoard.getBoxes()) {
+            assertTrue(box.isComplete());
+        }
+        assertSame(rectangularBoard.getGeometry(), new Board(3, 4).getGeometry());
+    }
+
+    /**
+     * Tests that any drawn line can be removed, not only the last one, and that the box it completed is incomplete
+     * again, while the other lines stay drawn.
+     */
+    @Test
+    public void testUndrawLine() throws NonexistentBoxException {
+        long emptyHash = board.positionHash();
+        board.drawLine(0);
+        board.drawLine(Board.DIM);
+        board.drawLine(Board.DIM + 1);
+        assertEquals(1, board.drawLine(2 * Board.DIM + 1));
+        assertEquals(1, board.undrawLine(Board.DIM));
+        assertFalse(board.determineBox(0));
+        assertNull(board.getLine(Board.DIM));
+        assertNotNull(board.getLine(2 * Board.DIM + 1));
+        assertEquals(3, board.countLines(0));
+        assertEquals(0, board.undrawLine(0));
+        assertEquals(0, board.undrawLine(Board.DIM + 1));
+        assertEquals(0, board.undrawLine(2 * Board.DIM + 1));
+        assertTrue(board.isEmpty());
+        assertEquals(emptyHash, board.positionHash());
+        assertThrows(IllegalArgumentException.class, () -> board.undrawLine(0));
+    }
 }
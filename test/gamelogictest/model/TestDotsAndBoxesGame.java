@@ -186,6 +186,119 @@ public class TestDotsAndBoxesGame {
         assertTrue(game.board.isEmpty());
     }
 
+    /**
+     * Tests that a move can be taken back, restoring the lines, box owners, scores and turn.
+     */
+    @Test
+    void testMakeAndUnmakeMove() {
+        game.makeMove(0);
+        game.makeMove(Board.DIM);
+        game.makeMove(Board.DIM + 1);
+        assertEquals(player2, game.getTurn());
+        assertEquals(1, game.makeMove(2 * Board.DIM + 1)); // completes box 0
+        assertEquals(player2, game.getTurn());
+        assertEquals(1, player2.getScore());
+        assertEquals(player2, game.board.getBoxes()[0].getOwner());
+
+        assertEquals(2 * Board.DIM + 1, game.unmakeMove());
+        assertEquals(player2, game.getTurn());
+        assertEquals(0, player2.getScore());
+        assertNull(game.board.getBoxes()[0].getOwner());
+        assertTrue(game.isValidLocation(2 * Board.DIM + 1));
+        assertEquals(Mark.EMPTY, game.board.getMark(2 * Board.DIM + 1));
+
+        assertEquals(Board.DIM + 1, game.unmakeMove());
+        assertEquals(player1, game.getTurn());
+        assertEquals(2, game.getMoveCount());
+    }
+
+    /**
+     * Tests that the moves on the undo stack can be read back in the order in which they were made.
+     */
+    @Test
+    void testGetMove() {
+        game.makeMove(Board.DIM);
+        game.makeMove(0);
+        assertEquals(Board.DIM, game.getMove(0));
+        assertEquals(0, game.getMove(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> game.getMove(2));
+        game.unmakeMove();
+        assertThrows(IndexOutOfBoundsException.class, () -> game.getMove(1));
+    }
+
+    /**
+     * Tests that positions which are symmetric to each other have the same canonical hash, and that the symmetries of
+     * the board can be undone.
+     */
+    @Test
+    void testCanonicalPositionHash() {
+        BoardGeometry geometry = game.board.getGeometry();
+        assertEquals(8, geometry.getNrOfSymmetries());
+        for (int symmetry = 0; symmetry < geometry.getNrOfSymmetries(); symmetry++) {
+            for (int location = 0; location < geometry.getNrOfLines(); location++) {
+                int transformed = geometry.transformLine(symmetry, location);
+                assertEquals(location, geometry.inverseTransformLine(symmetry, transformed));
+            }
+        }
+        game.makeMove(0);
+        DotsAndBoxesGame mirrored = new DotsAndBoxesGame(player1, player2);
+        mirrored.makeMove(geometry.transformLine(2, 0));
+        assertNotEquals(game.positionHash(), mirrored.positionHash());
+        assertEquals(game.canonicalPositionHash(), mirrored.canonicalPositionHash());
+        assertEquals(mirrored.positionHash(), game.symmetricPositionHash(2));
+    }
+
+    /**
+     * Tests that unmaking every move of a full game brings the game back to its initial state.
+     */
+    @Test
+    void testUnmakeFullGame() {
+        Random random = new Random();
+        while (!game.isGameOver()) {
+            List<Integer> validLocations = game.getValidLocations();
+            game.makeMove(validLocations.get(random.nextInt(validLocations.size())));
+        }
+        assertEquals(game.board.getBoxes().length, player1.getScore() + player2.getScore());
+        while (game.getMoveCount() > 0) {
+            game.unmakeMove();
+        }
+        assertTrue(game.board.isEmpty());
+        assertEquals(player1, game.getTurn());
+        assertEquals(0, player1.getScore());
+        assertEquals(0, player2.getScore());
+        for (Box box : game.board.getBoxes()) {
+            assertNull(box.getOwner());
+        }
+        assertThrows(IllegalStateException.class, () -> game.unmakeMove());
+    }
+
+    /**
+     * Tests that the position hash depends on the position only, and not on the order of the moves.
+     */
+    @Test
+    void testPositionHash() {
+        long emptyHash = game.positionHash();
+        game.makeMove(0);
+        game.makeMove(Board.DIM);
+        long hash = game.positionHash();
+        assertNotEquals(emptyHash, hash);
+
+        DotsAndBoxesGame other = new DotsAndBoxesGame(new BasicPlayer("A", Mark.X), new BasicPlayer("B", Mark.O));
+        other.makeMove(Board.DIM);
+        other.makeMove(0);
+        assertEquals(hash, other.positionHash());
+        game.unmakeMove();
+        game.unmakeMove();
+        assertEquals(emptyHash, game.positionHash());
+        // player 2 completes box 0 and keeps the turn
+        game.makeMove(0);
+        game.makeMove(Board.DIM);
+        game.makeMove(Board.DIM + 1);
+        game.makeMove(2 * Board.DIM + 1);
+        Zobrist zobrist = game.board.getGeometry().getZobrist();
+        assertEquals(game.board.positionHash() ^ zobrist.scoreKey(-1) ^ zobrist.sideKey(), game.positionHash());
+    }
+
     @Test
     void testBoxesAndScores() {
         List<Box> completedBoxes = new ArrayList<>();
@@ -202,6 +315,21 @@ public class TestDotsAndBoxesGame {
         }
     }
 
+    /**
+     * Tests a random play of a full game on a 3 by 8 board.
+     */
+    @Test
+    void testFullRunRectangular() {
+        game = new DotsAndBoxesGame(player1, player2, 3, 8);
+        Random random = new Random();
+        while (!game.isGameOver()) {
+            List<Integer> validLocations = game.getValidLocations();
+            game.drawLine(new Line(validLocations.get(random.nextInt(validLocations.size()))));
+        }
+        assertEquals(24, player1.getScore() + player2.getScore());
+        assertEquals(game.board.getNrOfLines(), game.getMoveCount());
+    }
+
     /**
      * Integration test (of most methods), testing a random play of a full game from start to
      * finish including checking the game over condition.
@@ -0,0 +1,100 @@
+package helperstest;
+
+import helpers.ProtocolTokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for ProtocolTokenizer.
+ * Tests that it splits messages like String.split, and that it reads commands and numbers from the tokens.
+ */
+public class ProtocolTokenizerTest {
+    ProtocolTokenizer tokens;
+
+    @BeforeEach
+    public void setUp() {
+        tokens = new ProtocolTokenizer();
+    }
+
+    /**
+     * Test that the tokens are those of String.split, also for empty tokens at the start, in the middle and at the
+     * end of a message, and for messages that are empty or only separators.
+     */
+    @Test
+    public void testSplitParity() {
+        String[] messages = {"", "~", "~~~", "LOGIN", "LOGIN~Matei", "MOVE~12~", "~MOVE", "a~~b", "a~~b~~",
+            "NEWGAME~Dillon~Matei~3x3", "~~a~", "LIST~Dillon~Matei~Ünal"};
+        for (String message : messages) {
+            String[] expected = message.split("~");
+            tokens.reset(message);
+            assertEquals(expected.length, tokens.countTokens(), message);
+            for (String token : expected) {
+                assertTrue(tokens.hasMoreTokens(), message);
+                assertEquals(token, tokens.nextToken().tokenAsString(), message);
+                assertTrue(tokens.tokenEquals(token), message);
+            }
+            assertFalse(tokens.hasMoreTokens(), message);
+            assertThrows(IllegalStateException.class, () -> tokens.nextToken());
+        }
+    }
+
+    /**
+     * Test that a command is matched against the known commands, and that an unknown command is not.
+     */
+    @Test
+    public void testKnownTokens() {
+        String[] commands = {"HELLO", "LOGIN", "LIST", "MOVE"};
+        tokens.reset("LIST~LIS~LISTS~~MOVE");
+        assertEquals("LIST", tokens.nextKnownToken(commands));
+        assertNull(tokens.nextKnownToken(commands));
+        assertNull(tokens.nextKnownToken(commands));
+        assertNull(tokens.nextKnownToken(commands));
+        assertEquals("MOVE", tokens.nextKnownToken(commands));
+        assertFalse(tokens.tokenEquals("MOV"));
+        assertFalse(tokens.tokenEquals("MOVES"));
+    }
+
+    /**
+     * Test that numbers are parsed from their token only, and that a token that is not a number is rejected.
+     */
+    @Test
+    public void testNumbers() {
+        tokens.reset("MOVE~12~-7~9876543210~x1~");
+        tokens.nextToken();
+        assertEquals(12, tokens.nextToken().tokenAsInt());
+        assertEquals(-7, tokens.nextToken().tokenAsInt());
+        assertEquals(9876543210L, tokens.nextToken().tokenAsLong());
+        assertThrows(NumberFormatException.class, () -> tokens.tokenAsInt());
+        assertThrows(NumberFormatException.class, () -> tokens.nextToken().tokenAsInt());
+        assertFalse(tokens.hasMoreTokens());
+        tokens.reset("MOVE~~3");
+        tokens.nextToken();
+        assertThrows(NumberFormatException.class, () -> tokens.nextToken().tokenAsInt());
+        assertEquals(3, tokens.nextToken().tokenAsInt());
+    }
+
+    /**
+     * Test that a tokenizer can be reused, and that it reads any CharSequence, such as a StringBuilder.
+     */
+    @Test
+    public void testReuse() {
+        StringBuilder message = new StringBuilder("LOGIN~Matei");
+        tokens.reset(message);
+        assertEquals("LOGIN", tokens.nextToken().tokenAsString());
+        tokens.reset("MOVE~5");
+        assertEquals(2, tokens.countTokens());
+        assertTrue(tokens.nextToken().tokenEquals("MOVE"));
+        assertEquals(5, tokens.nextToken().tokenAsInt());
+        message.setLength(0);
+        message.append("QUEUE");
+        tokens.reset(message);
+        assertEquals(1, tokens.countTokens());
+        assertEquals("QUEUE", tokens.nextToken().tokenAsString());
+    }
+}
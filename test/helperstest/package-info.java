@@ -0,0 +1,4 @@
+/**
+ * Contains the test classes of the helpers of the protocol.
+ */
+package helperstest;
@@ -0,0 +1,226 @@
+package networkingtest;
+
+import networking.SelectorLoop;
+import networking.SocketConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class for the framing of the messages of a SocketConnection, with a connection that has a thread of its own
+ * and with one of a SelectorLoop. The other side is a plain socket, which sends the bytes in parts, so a message may
+ * be split over several reads.
+ */
+public class MessageCodecTest {
+    ServerSocketChannel server;
+    SelectorLoop loop;
+    List<Socket> sockets = new ArrayList<>();
+
+    /**
+     * A connection that records the messages and frames it receives, and switches to binary frames on HELLO, like
+     * the server does.
+     */
+    static class Recorder extends SocketConnection {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        Recorder(Socket socket, SelectorLoop loop) throws IOException {
+            super(socket, loop);
+        }
+
+        void begin() {
+            start();
+        }
+
+        boolean send(String message) {
+            return sendMessage(message);
+        }
+
+        boolean send(int type, int value) {
+            return sendFrame(type, value);
+        }
+
+        @Override
+        protected void handleMessage(String message) {
+            received.add(message);
+            if (message.equals("HELLO")) {
+                useBinaryFraming();
+            }
+        }
+
+        @Override
+        protected void handleFrame(int type, int value) {
+            received.add("FRAME " + type + " " + value);
+        }
+
+        @Override
+        protected void handleDisconnect() {
+            received.add("DISCONNECT");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        loop = new SelectorLoop("codec-test");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        loop.close();
+        server.close();
+    }
+
+    /**
+     * Test that lines end with \n, \r or \r\n, also when they are split over several reads.
+     */
+    @Test
+    public void testLines() throws IOException, InterruptedException {
+        for (boolean selector : new boolean[]{false, true}) {
+            Socket client = connect();
+            Recorder connection = accept(selector);
+            write(client, "LOGIN~Matei\nMO");
+            write(client, "VE~1\r");
+            write(client, "\nLIST\rQUEUE\n\n");
+            assertEquals("LOGIN~Matei", next(connection));
+            assertEquals("MOVE~1", next(connection));
+            assertEquals("LIST", next(connection));
+            assertEquals("QUEUE", next(connection));
+            assertEquals("", next(connection));
+            write(client, "LAST");
+            client.shutdownOutput();
+            assertEquals("LAST", next(connection)); // like BufferedReader.readLine
+            assertEquals("DISCONNECT", next(connection));
+        }
+    }
+
+    /**
+     * Test that the \n of a line that ends with \r\n is skipped after the connection switched to binary frames, and
+     * that a frame of length 10 after a line that ends with \n is not mistaken for that \n.
+     */
+    @Test
+    public void testCrLfAcrossModeSwitch() throws IOException, InterruptedException {
+        for (boolean selector : new boolean[]{false, true}) {
+            Socket client = connect();
+            Recorder connection = accept(selector);
+            write(client, "HELLO\r");
+            assertEquals("HELLO", next(connection));
+            write(client, new byte[]{'\n', 5, 0, 'L', 'I', 'S', 'T', 3, 2, (byte) 0xAC, 0x02});
+            assertEquals("LIST", next(connection));
+            assertEquals("FRAME 2 300", next(connection));
+
+            client = connect();
+            connection = accept(selector);
+            byte[] frame = new byte[]{10, 0, '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+            byte[] bytes = new byte[6 + frame.length];
+            System.arraycopy("HELLO\n".getBytes(Charset.defaultCharset()), 0, bytes, 0, 6);
+            System.arraycopy(frame, 0, bytes, 6, frame.length);
+            write(client, bytes);
+            assertEquals("HELLO", next(connection));
+            assertEquals("123456789", next(connection));
+        }
+    }
+
+    /**
+     * Test that messages are sent as lines at first, and as frames after the switch to binary frames.
+     */
+    @Test
+    public void testEncoding() throws IOException, InterruptedException {
+        for (boolean selector : new boolean[]{false, true}) {
+            Socket client = connect();
+            Recorder connection = accept(selector);
+            connection.send("MOVE~5");
+            assertEquals("MOVE~5" + System.lineSeparator(),
+                    new String(read(client, 6 + System.lineSeparator().length()), Charset.defaultCharset()));
+            write(client, "HELLO\n");
+            assertEquals("HELLO", next(connection));
+            connection.send("LIST");
+            connection.send(2, 300);
+            connection.send(2, 7);
+            assertArrayEquals(new byte[]{5, 0, 'L', 'I', 'S', 'T', 3, 2, (byte) 0xAC, 0x02, 2, 2, 7}, read(client, 13));
+        }
+    }
+
+    /**
+     * Test that a frame that breaks the protocol closes the connection.
+     */
+    @Test
+    public void testInvalidFrame() throws IOException, InterruptedException {
+        for (boolean selector : new boolean[]{false, true}) {
+            Socket client = connect();
+            Recorder connection = accept(selector);
+            write(client, "HELLO\n");
+            assertEquals("HELLO", next(connection));
+            write(client, new byte[]{0});
+            assertEquals("DISCONNECT", next(connection));
+            assertEquals(-1, client.getInputStream().read());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), server.socket().getLocalPort());
+        client.setTcpNoDelay(true);
+        sockets.add(client);
+        return client;
+    }
+
+    private Recorder accept(boolean selector) throws IOException {
+        Socket socket = server.accept().socket();
+        sockets.add(socket);
+        Recorder connection = new Recorder(socket, selector ? loop : null);
+        connection.begin();
+        return connection;
+    }
+
+    /**
+     * Sends bytes, and waits a little, so the next bytes are likely received by another read.
+     */
+    private static void write(Socket client, byte[] bytes) throws IOException, InterruptedException {
+        OutputStream out = client.getOutputStream();
+        out.write(bytes);
+        out.flush();
+        Thread.sleep(20);
+    }
+
+    private static void write(Socket client, String text) throws IOException, InterruptedException {
+        write(client, text.getBytes(Charset.defaultCharset()));
+    }
+
+    private static byte[] read(Socket client, int count) throws IOException {
+        client.setSoTimeout(5000);
+        InputStream in = client.getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            int next = in.read();
+            if (next < 0) {
+                break;
+            }
+            bytes.write(next);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String next(Recorder connection) throws InterruptedException {
+        return connection.received.poll(5, TimeUnit.SECONDS);
+    }
+}
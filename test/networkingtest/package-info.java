@@ -0,0 +1,4 @@
+/**
+ * Contains the test classes of the connections, such as the encoding and decoding of their messages.
+ */
+package networkingtest;
@@ -0,0 +1,168 @@
+package servertest;
+
+import gamelogic.model.BasicPlayer;
+import gamelogic.model.BoardGeometry;
+import gamelogic.model.DotsAndBoxesGame;
+import gamelogic.model.Mark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.ArchiveCursor;
+import server.GameArchive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for GameArchive and ArchiveCursor, with an archive in a temporary directory.
+ */
+public class GameArchiveTest {
+    Path directory;
+    DotsAndBoxesGame small;
+    DotsAndBoxesGame wide;
+
+    /**
+     * Plays a few moves on a 1x2 board, and on a board of more than 256 lines, of which the moves take a short.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive");
+        small = new DotsAndBoxesGame(new BasicPlayer("Dillon", Mark.X), new BasicPlayer("Matei", Mark.O),
+                BoardGeometry.of(1, 2));
+        small.makeMove(0);
+        small.makeMove(6);
+        wide = new DotsAndBoxesGame(new BasicPlayer("Matei", Mark.X), new BasicPlayer("Ünal", Mark.O),
+                BoardGeometry.of(10, 12));
+        wide.makeMove(3);
+        wide.makeMove(261);
+        wide.makeMove(200);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that the games are read back by a cursor as they were added, and that the players are stored once.
+     */
+    @Test
+    public void testCursor() throws IOException {
+        archiveGames();
+        assertEquals(List.of("Dillon", "Matei", "Ünal"), GameArchive.readPlayers(directory));
+        List<Path> segments = GameArchive.segments(directory, LocalDate.MIN, LocalDate.MAX);
+        assertEquals(1, segments.size());
+
+        ArchiveCursor cursor = new ArchiveCursor(segments.get(0));
+        assertTrue(cursor.next());
+        assertGame(cursor, 0, 1, small, false, 0, 1000);
+        assertTrue(cursor.next());
+        assertGame(cursor, 1, 2, wide, true, 2, 2000);
+        assertFalse(cursor.next());
+    }
+
+    /**
+     * Test that the index of a segment holds the games of every player, and that a cursor seeks to them.
+     */
+    @Test
+    public void testIndex() throws IOException {
+        archiveGames();
+        Path segment = GameArchive.segments(directory, LocalDate.MIN, LocalDate.MAX).get(0);
+        Map<Integer, int[]> index = GameArchive.readIndex(segment);
+        assertEquals(3, index.size());
+        assertEquals(1, index.get(0).length);
+        assertEquals(2, index.get(1).length);
+        ArchiveCursor cursor = new ArchiveCursor(segment);
+        assertTrue(cursor.seek(index.get(2)[0]));
+        assertGame(cursor, 1, 2, wide, true, 2, 2000);
+        assertTrue(cursor.seek(index.get(1)[0]));
+        assertGame(cursor, 0, 1, small, false, 0, 1000);
+        assertTrue(cursor.next());
+        assertEquals(index.get(1)[1], cursor.offset());
+        assertFalse(cursor.seek(0));
+    }
+
+    /**
+     * Test that a segment that was left behind by a crash, without an index and with a game that was not written
+     * completely, is cut off after its last complete game and gets its index back when the archive is opened.
+     */
+    @Test
+    public void testTornTail() throws IOException {
+        archiveGames();
+        Path segment = GameArchive.segments(directory, LocalDate.MIN, LocalDate.MAX).get(0);
+        long size = Files.size(segment);
+        Map<Integer, int[]> index = GameArchive.readIndex(segment);
+        Path indexPath = segment.resolveSibling(segment.getFileName().toString().replace(".games", ".index"));
+        Files.delete(indexPath);
+        Files.write(segment, new byte[]{0, 0, 0, 1, 0, 0, 0, 2, 3, 3, 1}, StandardOpenOption.APPEND);
+        Files.write(directory.resolve(GameArchive.PLAYERS_FILE), new byte[]{0, 10, 'E', 'v'},
+                StandardOpenOption.APPEND);
+
+        new GameArchive(directory).close();
+        assertEquals(size, Files.size(segment));
+        Map<Integer, int[]> rebuilt = GameArchive.readIndex(segment);
+        assertEquals(index.size(), rebuilt.size());
+        for (Map.Entry<Integer, int[]> entry : index.entrySet()) {
+            assertArrayEquals(entry.getValue(), rebuilt.get(entry.getKey()));
+        }
+        assertEquals(List.of("Dillon", "Matei", "Ünal"), GameArchive.readPlayers(directory));
+        ArchiveCursor cursor = new ArchiveCursor(segment);
+        assertTrue(cursor.next());
+        assertTrue(cursor.next());
+        assertFalse(cursor.next());
+    }
+
+    /**
+     * Archives the small game, which ended in a draw, and the wide game, which was left by its first player.
+     */
+    private void archiveGames() throws IOException {
+        long now = System.currentTimeMillis();
+        GameArchive archive = new GameArchive(directory);
+        archive.add("Dillon", "Matei", small, now - 1000, false, 0);
+        archive.add("Matei", "Ünal", wide, now - 2000, true, 2);
+        archive.close();
+    }
+
+    /**
+     * Asserts that the cursor is on a game.
+     *
+     * @param cursor       the cursor.
+     * @param player1      the id of the first player.
+     * @param player2      the id of the other player.
+     * @param game         the game that was added.
+     * @param disconnected true if a player disconnected.
+     * @param winner       the winner.
+     * @param duration     the minimum duration of the game, in milliseconds.
+     */
+    private static void assertGame(ArchiveCursor cursor, int player1, int player2, DotsAndBoxesGame game,
+                                   boolean disconnected, int winner, int duration) {
+        assertEquals(player1, cursor.player1());
+        assertEquals(player2, cursor.player2());
+        assertEquals(game.board.getGeometry().getRows(), cursor.rows());
+        assertEquals(game.board.getGeometry().getColumns(), cursor.columns());
+        assertEquals(disconnected, cursor.disconnected());
+        assertEquals(winner, cursor.winner());
+        assertTrue(cursor.durationMillis() >= duration);
+        assertTrue(cursor.startMillis() + cursor.durationMillis() <= System.currentTimeMillis());
+        assertEquals(game.getMoveCount(), cursor.moveCount());
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            assertEquals(game.getMove(i), cursor.move(i));
+        }
+    }
+}
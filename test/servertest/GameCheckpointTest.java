@@ -0,0 +1,155 @@
+package servertest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.GameCheckpoint;
+import server.GameRecord;
+import server.MoveJournal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for GameCheckpoint: full checkpoints, the deltas after them, and checkpoints that were cut off.
+ */
+public class GameCheckpointTest {
+    Path path;
+    GameRecord game1;
+    GameRecord game2;
+
+    /**
+     * Creates 2 games, with a few moves each.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        path = Files.createTempFile("games", ".checkpoint");
+        game1 = new GameRecord(1, 2, 3, "Dillon", "Matei", 7);
+        game1.addMove(0);
+        game1.addMove(16);
+        game2 = new GameRecord(2, 5, 5, "Ünal", "Eve", 9);
+        game2.addMove(59);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Test that a full checkpoint returns its games as they were written.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        MoveJournal.Position position = new MoveJournal.Position(1234, 12);
+        GameCheckpoint.writeFull(path, position, 3, List.of(GameCheckpoint.encode(game1),
+                GameCheckpoint.encode(game2)));
+        GameCheckpoint.Contents contents = GameCheckpoint.read(path);
+        assertEquals(position, contents.journalPosition());
+        assertEquals(3, contents.nextGameId());
+        assertEquals(2, contents.games().size());
+        assertSameGame(game1, contents.games().get(0));
+        assertSameGame(game2, contents.games().get(1));
+    }
+
+    /**
+     * Test that the deltas update, add and remove the games of the full checkpoint before them, in order.
+     */
+    @Test
+    public void testDeltas() throws IOException {
+        GameCheckpoint.writeFull(path, new MoveJournal.Position(100, 5), 3, List.of(GameCheckpoint.encode(game1),
+                GameCheckpoint.encode(game2)));
+        game1 = new GameRecord(1, 2, 3, "Dillon", "Matei", 11);
+        game1.addMove(0);
+        game1.addMove(16);
+        game1.addMove(1);
+        GameCheckpoint.appendDelta(path, new MoveJournal.Position(200, 11), 3, List.of(GameCheckpoint.encode(game1)),
+                List.of(2L));
+        GameRecord game3 = new GameRecord(3, 1, 1, "Matei", "Eve", 12);
+        GameCheckpoint.appendDelta(path, new MoveJournal.Position(300, 13), 4, List.of(GameCheckpoint.encode(game3)),
+                List.of());
+
+        GameCheckpoint.Contents contents = GameCheckpoint.read(path);
+        assertEquals(new MoveJournal.Position(300, 13), contents.journalPosition());
+        assertEquals(4, contents.nextGameId());
+        assertEquals(2, contents.games().size());
+        assertSameGame(game1, contents.games().get(0));
+        assertSameGame(game3, contents.games().get(1));
+    }
+
+    /**
+     * Test that a delta that was not written completely, or that has an invalid checksum, is ignored.
+     */
+    @Test
+    public void testPartialDelta() throws IOException {
+        GameCheckpoint.writeFull(path, new MoveJournal.Position(100, 5), 3, List.of(GameCheckpoint.encode(game1)));
+        long fullSize = Files.size(path);
+        long deltaSize = GameCheckpoint.appendDelta(path, new MoveJournal.Position(200, 11), 3,
+                List.of(GameCheckpoint.encode(game2)), List.of(1L));
+        assertEquals(fullSize + deltaSize, Files.size(path));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 1);
+        }
+        GameCheckpoint.Contents contents = GameCheckpoint.read(path);
+        assertEquals(new MoveJournal.Position(100, 5), contents.journalPosition());
+        assertEquals(1, contents.games().size());
+        assertSameGame(game1, contents.games().get(0));
+
+        GameCheckpoint.writeFull(path, new MoveJournal.Position(100, 5), 3, List.of(GameCheckpoint.encode(game1)));
+        GameCheckpoint.appendDelta(path, new MoveJournal.Position(200, 11), 3, List.of(GameCheckpoint.encode(game2)),
+                List.of(1L));
+        flipLastByte();
+        assertEquals(new MoveJournal.Position(100, 5), GameCheckpoint.read(path).journalPosition());
+    }
+
+    /**
+     * Test that a checkpoint without a complete full entry is rejected, and that a missing one is no checkpoint.
+     */
+    @Test
+    public void testCorruptCheckpoint() throws IOException {
+        GameCheckpoint.writeFull(path, new MoveJournal.Position(100, 5), 3, List.of(GameCheckpoint.encode(game1)));
+        flipLastByte();
+        assertThrows(IOException.class, () -> GameCheckpoint.read(path));
+        Files.write(path, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> GameCheckpoint.read(path));
+        Files.delete(path);
+        assertNull(GameCheckpoint.read(path));
+    }
+
+    /**
+     * Inverts the last byte of the checkpoint.
+     */
+    private void flipLastByte() throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= (byte) 0xff;
+        Files.write(path, bytes);
+    }
+
+    /**
+     * Asserts that two records hold the same game.
+     *
+     * @param expected the record that was written.
+     * @param actual   the record that was read.
+     */
+    private static void assertSameGame(GameRecord expected, GameRecord actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getRows(), actual.getRows());
+        assertEquals(expected.getColumns(), actual.getColumns());
+        assertEquals(expected.getPlayer1(), actual.getPlayer1());
+        assertEquals(expected.getPlayer2(), actual.getPlayer2());
+        assertEquals(expected.getJournalRecords(), actual.getJournalRecords());
+        assertEquals(expected.getMoveCount(), actual.getMoveCount());
+        for (int i = 0; i < expected.getMoveCount(); i++) {
+            assertEquals(expected.getMove(i), actual.getMove(i));
+        }
+    }
+}
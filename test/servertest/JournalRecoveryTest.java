@@ -0,0 +1,222 @@
+package servertest;
+
+import gamelogic.model.BoardGeometry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.GameCheckpoint;
+import server.GameRecord;
+import server.JournalRecovery;
+import server.MoveJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for JournalRecovery, with journals and checkpoints in a temporary directory.
+ */
+public class JournalRecoveryTest {
+    Path directory;
+    Path journalPath;
+    Path checkpointPath;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recovery");
+        journalPath = directory.resolve("games.journal");
+        checkpointPath = GameCheckpoint.pathFor(journalPath);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that without a journal, there is nothing to recover.
+     */
+    @Test
+    public void testNoJournal() throws IOException {
+        JournalRecovery.Result result = JournalRecovery.recover(journalPath, checkpointPath);
+        assertTrue(result.games().isEmpty());
+        assertEquals(1, result.nextGameId());
+        assertNull(result.journalEnd());
+    }
+
+    /**
+     * Test that without a checkpoint, the whole journal is replayed: a game that ended is dropped, as is a game that
+     * is over without its game over record, and a game in progress is recovered with its moves.
+     */
+    @Test
+    public void testWithoutCheckpoint() throws IOException {
+        MoveJournal journal = new MoveJournal(journalPath);
+        journal.newGame(1, BoardGeometry.of(1, 1), "Dillon", "Matei");
+        journal.newGame(2, BoardGeometry.of(2, 2), "Eve", "Ünal");
+        journal.move(1, 0);
+        journal.newGame(3, BoardGeometry.of(1, 1), "Alice", "Bob");
+        journal.move(2, 4);
+        journal.gameOver(1, true, 2);
+        for (int location = 0; location < 4; location++) {
+            journal.move(3, location);
+        }
+        journal.move(2, 7);
+        journal.close();
+
+        JournalRecovery.Result result = JournalRecovery.recover(journalPath, checkpointPath);
+        assertEquals(4, result.nextGameId());
+        assertEquals(11, result.journalEnd().records());
+        assertEquals(Files.size(journalPath), result.journalEnd().offset());
+        assertEquals(1, result.games().size());
+        GameRecord game = result.games().get(0);
+        assertEquals(2, game.getId());
+        assertEquals("Eve", game.getPlayer1());
+        assertEquals("Ünal", game.getPlayer2());
+        assertEquals(2, game.getMoveCount());
+        assertEquals(4, game.getMove(0));
+        assertEquals(7, game.getMove(1));
+    }
+
+    /**
+     * Test that with a checkpoint, only the journal after it is replayed on top of its games, and that a checkpoint
+     * that is ahead of the journal is ignored.
+     */
+    @Test
+    public void testWithCheckpoint() throws IOException, InterruptedException {
+        MoveJournal journal = new MoveJournal(journalPath);
+        journal.newGame(1, BoardGeometry.of(2, 2), "Dillon", "Matei");
+        journal.move(1, 0);
+        MoveJournal.Position checkpointed = awaitWritten(journal, 2);
+        journal.move(1, 5);
+        journal.newGame(2, BoardGeometry.of(1, 1), "Eve", "Matei");
+        journal.close();
+        // the snapshot of game 1 was taken after its second move
+        GameRecord snapshot = new GameRecord(1, 2, 2, "Dillon", "Matei", 3);
+        snapshot.addMove(0);
+        snapshot.addMove(5);
+        GameCheckpoint.writeFull(checkpointPath, checkpointed, 2, List.of(GameCheckpoint.encode(snapshot)));
+
+        JournalRecovery.Result result = JournalRecovery.recover(journalPath, checkpointPath);
+        assertEquals(3, result.nextGameId());
+        assertEquals(4, result.journalEnd().records());
+        assertEquals(2, result.games().size());
+        GameRecord game1 = result.games().get(0).getId() == 1 ? result.games().get(0) : result.games().get(1);
+        assertEquals(2, game1.getMoveCount()); // the second move is not added twice
+        assertEquals(5, game1.getMove(1));
+
+        GameCheckpoint.writeFull(checkpointPath, new MoveJournal.Position(checkpointed.offset() + 1000, 100), 2,
+                List.of());
+        result = JournalRecovery.recover(journalPath, checkpointPath);
+        assertEquals(2, result.games().size());
+        assertEquals(4, result.journalEnd().records());
+    }
+
+    /**
+     * Test that a game that is recovered from a checkpoint, which counted records that never reached the journal, is
+     * still ended by the records that the journal gets after recovery, when it is recovered a second time.
+     */
+    @Test
+    public void testRecoverPlayRecover() throws IOException {
+        MoveJournal journal = new MoveJournal(journalPath);
+        journal.newGame(1, BoardGeometry.of(1, 1), "Dillon", "Matei");
+        journal.move(1, 0);
+        journal.move(1, 1);
+        journal.close();
+        MoveJournal.Position durable = new MoveJournal.Position(Files.size(journalPath), 3);
+        // the snapshot was taken after 2 more moves were appended, which were lost in the crash
+        GameRecord snapshot = new GameRecord(1, 1, 1, "Dillon", "Matei", 5);
+        snapshot.addMove(0);
+        snapshot.addMove(1);
+        snapshot.addMove(2);
+        GameCheckpoint.writeFull(checkpointPath, durable, 2, List.of(GameCheckpoint.encode(snapshot)));
+
+        JournalRecovery.Result first = JournalRecovery.recover(journalPath, checkpointPath);
+        assertEquals(1, first.games().size());
+        GameRecord recovered = first.games().get(0);
+        assertEquals(3, recovered.getMoveCount());
+        assertEquals(durable, first.journalEnd());
+        assertEquals(durable.records(), recovered.getJournalRecords());
+
+        // the restarted server checkpoints the recovered game, then finishes it in the journal
+        GameCheckpoint.writeFull(checkpointPath, first.journalEnd(), first.nextGameId(),
+                List.of(GameCheckpoint.encode(recovered)));
+        journal = new MoveJournal(journalPath, first.journalEnd());
+        journal.move(1, 3);
+        journal.gameOver(1, false, 1);
+        journal.close();
+
+        JournalRecovery.Result second = JournalRecovery.recover(journalPath, checkpointPath);
+        assertTrue(second.games().isEmpty());
+        assertEquals(first.journalEnd().records() + 2, second.journalEnd().records());
+        assertEquals(2, second.nextGameId());
+    }
+
+    /**
+     * Test that a journal that was cut at a checkpoint is recovered from that checkpoint, and that the games that
+     * started before the cut are lost without it.
+     */
+    @Test
+    public void testRecoverAfterCut() throws IOException, InterruptedException {
+        MoveJournal journal = new MoveJournal(journalPath);
+        journal.newGame(1, BoardGeometry.of(2, 2), "Dillon", "Matei");
+        journal.move(1, 0);
+        journal.move(1, 5);
+        MoveJournal.Position checkpointed = awaitWritten(journal, 3);
+        GameRecord snapshot = new GameRecord(1, 2, 2, "Dillon", "Matei", 3);
+        snapshot.addMove(0);
+        snapshot.addMove(5);
+        GameCheckpoint.writeFull(checkpointPath, checkpointed, 2, List.of(GameCheckpoint.encode(snapshot)));
+        long size = Files.size(journalPath);
+        journal.cut(checkpointed);
+        assertEquals(checkpointed, journal.firstPosition());
+        assertTrue(Files.size(journalPath) < size);
+        journal.move(1, 11);
+        journal.newGame(2, BoardGeometry.of(1, 1), "Eve", "Matei");
+        journal.move(2, 3);
+        journal.close();
+
+        JournalRecovery.Result result = JournalRecovery.recover(journalPath, checkpointPath);
+        assertEquals(6, result.journalEnd().records());
+        assertEquals(3, result.nextGameId());
+        assertEquals(2, result.games().size());
+        GameRecord game1 = result.games().get(0).getId() == 1 ? result.games().get(0) : result.games().get(1);
+        assertEquals(3, game1.getMoveCount());
+        assertEquals(11, game1.getMove(2));
+
+        Files.delete(checkpointPath);
+        result = JournalRecovery.recover(journalPath, checkpointPath);
+        assertEquals(1, result.games().size());
+        assertEquals(2, result.games().get(0).getId());
+        assertEquals(6, result.journalEnd().records());
+
+        // the journal goes on at the end of the cut journal
+        journal = new MoveJournal(journalPath);
+        assertEquals(checkpointed, journal.firstPosition());
+        assertEquals(result.journalEnd(), journal.writtenPosition());
+        journal.close();
+    }
+
+    /**
+     * Waits until the journal has written a number of records.
+     *
+     * @param journal the journal.
+     * @param records the number of records.
+     * @return the position after the records.
+     */
+    private static MoveJournal.Position awaitWritten(MoveJournal journal, long records) throws InterruptedException {
+        while (journal.writtenPosition().records() < records) {
+            Thread.sleep(1);
+        }
+        return journal.writtenPosition();
+    }
+}
@@ -0,0 +1,125 @@
+package servertest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.LobbyRoster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test class for LobbyRoster: the LIST message, pages, and the changes since a version.
+ */
+public class LobbyRosterTest {
+    LobbyRoster roster;
+
+    @BeforeEach
+    public void setUp() {
+        roster = new LobbyRoster();
+    }
+
+    /**
+     * Test that the LIST message holds the usernames in the order in which they logged in, and that it is shared
+     * until the roster changes.
+     */
+    @Test
+    public void testList() {
+        assertEquals("LIST", roster.listMessage());
+        roster.add("Dillon");
+        roster.add("Matei");
+        roster.add("Dillon");
+        assertEquals(2, roster.getVersion());
+        assertEquals("LIST~Dillon~Matei", roster.listMessage());
+        assertSame(roster.listMessage(), roster.listMessage());
+        roster.remove("Dillon");
+        roster.remove("Eve");
+        assertEquals(3, roster.getVersion());
+        assertEquals("LIST~Matei", roster.listMessage());
+    }
+
+    /**
+     * Test that a page holds the usernames from its offset on, at most its limit, after the version, the total and
+     * the offset.
+     */
+    @Test
+    public void testPage() {
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            roster.add(name);
+        }
+        assertEquals("LISTPAGE~5~5~0~a~b", roster.pageMessage(0, 2));
+        assertEquals("LISTPAGE~5~5~3~d~e", roster.pageMessage(3, 2));
+        assertEquals("LISTPAGE~5~5~4~e", roster.pageMessage(4, 10));
+        assertEquals("LISTPAGE~5~5~5", roster.pageMessage(5, 10));
+        assertEquals("LISTPAGE~5~5~9", roster.pageMessage(9, 10));
+        assertEquals("LISTPAGE~5~5~1~b~c~d~e", roster.pageMessage(1, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Test that a delta holds the usernames that joined and left since a version, without those that joined and
+     * left again, or left and joined again.
+     */
+    @Test
+    public void testDelta() {
+        roster.add("Dillon");
+        roster.add("Matei");
+        long version = roster.getVersion();
+        assertEquals("LISTDELTA~2~0", roster.deltaMessage(version));
+        roster.add("Eve");
+        roster.remove("Dillon");
+        roster.add("Ünal");
+        roster.remove("Ünal");
+        roster.remove("Matei");
+        roster.add("Matei");
+        assertEquals("LISTDELTA~8~1~Eve~Dillon", roster.deltaMessage(version));
+        assertEquals("LISTDELTA~8~2~Matei~Eve", roster.deltaMessage(0));
+        assertEquals("LISTPAGE~8~2~0~Eve~Matei", roster.deltaMessage(9));
+        assertEquals("LISTPAGE~8~2~0~Eve~Matei", roster.deltaMessage(-1));
+    }
+
+    /**
+     * Test that the changes are kept for CHANGE_LOG_SIZE versions, also after the ring buffer wrapped around, and
+     * that an older version gets the whole roster as a page.
+     */
+    @Test
+    public void testWrapAround() {
+        List<Set<String>> versions = new ArrayList<>(); // the usernames at every version
+        Set<String> names = new LinkedHashSet<>();
+        versions.add(Set.copyOf(names));
+        int changes = LobbyRoster.CHANGE_LOG_SIZE + LobbyRoster.CHANGE_LOG_SIZE / 2 + 7;
+        for (int i = 0; i < changes; i++) {
+            String name = "player" + i * 7 % 50;
+            if (names.add(name)) {
+                roster.add(name);
+            } else {
+                names.remove(name);
+                roster.remove(name);
+            }
+            versions.add(Set.copyOf(names));
+        }
+        long version = roster.getVersion();
+        assertEquals(changes, version);
+        for (long since : new long[]{version, version - 1, version - 2, version - 517, version - 1000,
+            version - LobbyRoster.CHANGE_LOG_SIZE}) {
+            String[] delta = roster.deltaMessage(since).split("~");
+            assertEquals("LISTDELTA", delta[0]);
+            assertEquals(version, Long.parseLong(delta[1]));
+            Set<String> joined = new HashSet<>(versions.get((int) version));
+            joined.removeAll(versions.get((int) since));
+            Set<String> left = new HashSet<>(versions.get((int) since));
+            left.removeAll(versions.get((int) version));
+            int joinedCount = Integer.parseInt(delta[2]);
+            assertEquals(joined, Set.of(Arrays.copyOfRange(delta, 3, 3 + joinedCount)));
+            assertEquals(left, Set.of(Arrays.copyOfRange(delta, 3 + joinedCount, delta.length)));
+        }
+        assertEquals(roster.pageMessage(0, Integer.MAX_VALUE),
+                roster.deltaMessage(version - LobbyRoster.CHANGE_LOG_SIZE - 1));
+        assertEquals(roster.pageMessage(0, Integer.MAX_VALUE), roster.deltaMessage(0));
+    }
+}
@@ -0,0 +1,135 @@
+package servertest;
+
+import helpers.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.ClientHandler;
+import server.MatchmakingQueue;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for MatchmakingQueue: pairing within a rating bucket, with a neighbouring bucket, and the window that
+ * widens while a player waits.
+ */
+public class MatchmakingQueueTest {
+    MatchmakingQueue queue;
+    ClientHandler[] players;
+
+    /**
+     * Creates an empty queue and some players. The players are only compared by identity.
+     */
+    @BeforeEach
+    public void setUp() {
+        queue = new MatchmakingQueue();
+        players = new ClientHandler[6];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new ClientHandler(null, null);
+        }
+    }
+
+    /**
+     * Test that a player is queued once, and can be removed.
+     */
+    @Test
+    public void testAddRemove() {
+        assertTrue(queue.add(players[0], 1000, 0));
+        assertFalse(queue.add(players[0], 1200, 0));
+        assertTrue(queue.contains(players[0]));
+        assertEquals(1, queue.size());
+        assertTrue(queue.remove(players[0]));
+        assertFalse(queue.remove(players[0]));
+        assertFalse(queue.contains(players[0]));
+        assertEquals(0, queue.size());
+        assertTrue(queue.pollPairs(0).isEmpty());
+    }
+
+    /**
+     * Test that the players of a bucket are paired in the order in which they arrived, and that the player that
+     * queued first moves first.
+     */
+    @Test
+    public void testSameBucket() {
+        queue.add(players[0], 1049, 10);
+        queue.add(players[1], 1000, 20);
+        queue.add(players[2], 1010, 30);
+        queue.add(players[3], 1020, 40);
+        queue.add(players[4], 1030, 50);
+        List<Pair<ClientHandler, ClientHandler>> pairs = queue.pollPairs(50);
+        assertEquals(2, pairs.size());
+        assertPair(players[0], players[1], pairs.get(0));
+        assertPair(players[2], players[3], pairs.get(1));
+        assertEquals(1, queue.size());
+        assertTrue(queue.contains(players[4]));
+        assertFalse(queue.contains(players[0]));
+    }
+
+    /**
+     * Test that the players that are left in their buckets match a neighbour within the window, also across empty
+     * buckets, and that the player that queued first moves first.
+     */
+    @Test
+    public void testNeighbouringBuckets() {
+        queue.add(players[0], 1110, 0);
+        queue.add(players[1], 1040, 500);
+        queue.add(players[2], 1400, 0);
+        List<Pair<ClientHandler, ClientHandler>> pairs = queue.pollPairs(500);
+        assertEquals(1, pairs.size());
+        assertPair(players[0], players[1], pairs.get(0));
+        assertEquals(1, queue.size());
+
+        // the emptied buckets take new players
+        queue.add(players[3], 1045, 600);
+        queue.add(players[4], 1115, 600);
+        pairs = queue.pollPairs(600);
+        assertEquals(1, pairs.size());
+        assertPair(players[3], players[4], pairs.get(0));
+        assertTrue(queue.contains(players[2]));
+    }
+
+    /**
+     * Test that players whose ratings are too far apart match once one of them has waited long enough.
+     */
+    @Test
+    public void testWideningWindow() {
+        queue.add(players[0], 1000, 0);
+        queue.add(players[1], 1250, 1000);
+        assertTrue(queue.pollPairs(1000).isEmpty());
+        long wait = (250 - MatchmakingQueue.BASE_WINDOW) * 1000L / MatchmakingQueue.WINDOW_GROWTH_PER_SECOND;
+        assertTrue(queue.pollPairs(wait - 1).isEmpty());
+        assertEquals(2, queue.size());
+        List<Pair<ClientHandler, ClientHandler>> pairs = queue.pollPairs(wait);
+        assertEquals(1, pairs.size());
+        assertPair(players[0], players[1], pairs.get(0));
+        assertEquals(0, queue.size());
+    }
+
+    /**
+     * Test that a player that is left over is paired with the next bucket only once, and that a player that does not
+     * match its lower neighbour still matches its upper one.
+     */
+    @Test
+    public void testChainOfBuckets() {
+        queue.add(players[0], 1000, 0);
+        queue.add(players[1], 1090, 0);
+        queue.add(players[2], 1180, 0);
+        queue.add(players[3], 1400, 0);
+        queue.add(players[4], 1480, 0);
+        List<Pair<ClientHandler, ClientHandler>> pairs = queue.pollPairs(0);
+        assertEquals(2, pairs.size());
+        assertPair(players[0], players[1], pairs.get(0));
+        assertPair(players[3], players[4], pairs.get(1));
+        assertEquals(1, queue.size());
+        assertTrue(queue.contains(players[2]));
+    }
+
+    private static void assertPair(ClientHandler first, ClientHandler second, Pair<ClientHandler, ClientHandler> pair) {
+        assertSame(first, pair.first());
+        assertSame(second, pair.second());
+    }
+}
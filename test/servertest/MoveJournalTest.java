@@ -0,0 +1,154 @@
+package servertest;
+
+import gamelogic.model.BoardGeometry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.MoveJournal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for MoveJournal: the records that are read back, and batches that were cut off or corrupted by a crash.
+ */
+public class MoveJournalTest {
+    Path path;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        path = Files.createTempFile("games", ".journal");
+        Files.delete(path); // the journal creates its own file
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Test that the records are read back in the order in which they were appended.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        MoveJournal journal = new MoveJournal(path);
+        journal.newGame(1, BoardGeometry.of(2, 3), "Dillon", "Matei");
+        journal.move(1, 4);
+        journal.newGame(2, BoardGeometry.of(5, 5), "Ünal", "Eve");
+        journal.move(2, 59);
+        journal.gameOver(1, false, 0);
+        journal.gameOver(2, true, 2);
+        journal.close();
+        assertEquals(List.of("NEW_GAME 1 2x3 Dillon Matei", "MOVE 1 4", "NEW_GAME 2 5x5 Ünal Eve", "MOVE 2 59",
+                "GAME_OVER 1 false 0", "GAME_OVER 2 true 2"), readRecords());
+    }
+
+    /**
+     * Test that a batch that was not written completely is cut off when the journal is opened, and that new records
+     * are appended after the last complete batch.
+     */
+    @Test
+    public void testTornBatch() throws IOException, InterruptedException {
+        MoveJournal journal = new MoveJournal(path);
+        journal.newGame(1, BoardGeometry.of(1, 1), "Dillon", "Matei");
+        journal.move(1, 0);
+        MoveJournal.Position first = awaitWritten(journal, 2);
+        journal.move(1, 1);
+        journal.close();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        journal = new MoveJournal(path);
+        assertEquals(first, journal.writtenPosition());
+        assertEquals(first.offset(), Files.size(path));
+        journal.move(1, 2);
+        journal.close();
+        assertEquals(List.of("NEW_GAME 1 1x1 Dillon Matei", "MOVE 1 0", "MOVE 1 2"), readRecords());
+    }
+
+    /**
+     * Test that reading stops at a batch with an invalid checksum, and that the batches after it are dropped too.
+     */
+    @Test
+    public void testInvalidChecksum() throws IOException, InterruptedException {
+        MoveJournal journal = new MoveJournal(path);
+        journal.newGame(1, BoardGeometry.of(1, 1), "Dillon", "Matei");
+        MoveJournal.Position first = awaitWritten(journal, 1);
+        journal.move(1, 0);
+        awaitWritten(journal, 2);
+        journal.move(1, 1);
+        journal.close();
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[(int) first.offset() + 8] ^= 1; // the type of the move in the second batch
+        Files.write(path, bytes);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            assertEquals(first, MoveJournal.validEnd(channel));
+        }
+        assertEquals(List.of("NEW_GAME 1 1x1 Dillon Matei"), readRecords());
+        journal = new MoveJournal(path);
+        assertEquals(first, journal.writtenPosition());
+        journal.close();
+        assertEquals(first.offset(), Files.size(path));
+    }
+
+    /**
+     * Test that a file that is not a journal is not opened.
+     */
+    @Test
+    public void testNotAJournal() throws IOException {
+        Files.write(path, new byte[]{'D', 'B', 'J', 'L', 0, 0, 0, 1});
+        assertThrows(IOException.class, () -> new MoveJournal(path));
+    }
+
+    /**
+     * Reads the records of the journal, as text.
+     *
+     * @return the records.
+     */
+    private List<String> readRecords() throws IOException {
+        List<String> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MoveJournal.replay(channel, MoveJournal.START, new MoveJournal.RecordVisitor() {
+                @Override
+                public void newGame(long game, int rows, int columns, String player1, String player2) {
+                    records.add("NEW_GAME " + game + " " + rows + "x" + columns + " " + player1 + " " + player2);
+                }
+
+                @Override
+                public void move(long game, int location) {
+                    records.add("MOVE " + game + " " + location);
+                }
+
+                @Override
+                public void gameOver(long game, boolean disconnected, int winner) {
+                    records.add("GAME_OVER " + game + " " + disconnected + " " + winner);
+                }
+            });
+        }
+        return records;
+    }
+
+    /**
+     * Waits until the journal has written a number of records.
+     *
+     * @param journal the journal.
+     * @param records the number of records.
+     * @return the position after the records.
+     */
+    private static MoveJournal.Position awaitWritten(MoveJournal journal, long records) throws InterruptedException {
+        while (journal.writtenPosition().records() < records) {
+            Thread.sleep(1);
+        }
+        return journal.writtenPosition();
+    }
+}
@@ -0,0 +1,142 @@
+package servertest;
+
+import helpers.ServerProtocol;
+import networking.ConnectionMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.Server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for Server, through real connections: a client that breaks the protocol stays logged in.
+ */
+public class ServerTest {
+    Server server;
+    List<Socket> sockets;
+
+    /**
+     * Starts a server on a free port, without a journal, and accepts the connections on a thread of its own.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new Server(0, ConnectionMode.THREAD);
+        server.start();
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.acceptConnections();
+            } catch (IOException e) {
+                // the server was closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        sockets = new ArrayList<>();
+    }
+
+    /**
+     * Closes the connections and the server.
+     *
+     * @throws IOException if a connection cannot be closed.
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.close();
+    }
+
+    /**
+     * Test that a client that sends a move out of turn gets an error and ends the game, but can still list the
+     * clients and queue for a new game afterwards.
+     *
+     * @throws IOException if a connection fails.
+     */
+    @Test
+    public void testErrorKeepsClientLoggedIn() throws IOException {
+        TestClient alice = connect("alice");
+        TestClient bob = connect("bob");
+        alice.send("QUEUE");
+        bob.send("QUEUE");
+        String newGame = alice.read();
+        assertTrue(newGame.startsWith(ServerProtocol.NEW_GAME + ServerProtocol.SEPARATOR));
+        assertEquals(newGame, bob.read());
+
+        // the second player moves out of turn
+        TestClient second = newGame.split(ServerProtocol.SEPARATOR)[1].equals("alice") ? bob : alice;
+        TestClient first = second == alice ? bob : alice;
+        second.send("MOVE~0");
+        assertEquals(ServerProtocol.ERROR + ServerProtocol.SEPARATOR + "not your turn!", second.read());
+        assertTrue(second.read().startsWith(ServerProtocol.GAME_OVER + ServerProtocol.SEPARATOR
+                + ServerProtocol.DISCONNECT));
+        assertTrue(first.read().startsWith(ServerProtocol.GAME_OVER + ServerProtocol.SEPARATOR
+                + ServerProtocol.DISCONNECT));
+
+        // the client is still logged in with its username
+        second.send("LIST");
+        String list = second.read();
+        assertTrue(list.startsWith(ServerProtocol.LIST + ServerProtocol.SEPARATOR));
+        assertTrue(list.contains("alice"));
+        assertTrue(list.contains("bob"));
+
+        // and both can play again
+        second.send("QUEUE");
+        first.send("QUEUE");
+        assertTrue(second.read().startsWith(ServerProtocol.NEW_GAME + ServerProtocol.SEPARATOR));
+        assertTrue(first.read().startsWith(ServerProtocol.NEW_GAME + ServerProtocol.SEPARATOR));
+    }
+
+    /**
+     * Connects a client to the server, and logs it in.
+     *
+     * @param username the username of the client.
+     * @return the logged in client.
+     * @throws IOException if the connection fails.
+     */
+    private TestClient connect(String username) throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(5000);
+        sockets.add(socket);
+        TestClient client = new TestClient(socket);
+        client.send("HELLO~test");
+        assertTrue(client.read().startsWith(ServerProtocol.HELLO));
+        client.send("LOGIN~" + username);
+        assertEquals(ServerProtocol.LOGIN, client.read());
+        return client;
+    }
+
+    /**
+     * A client that sends and reads the lines of the protocol.
+     */
+    private static final class TestClient {
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        TestClient(Socket socket) throws IOException {
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+        }
+
+        void send(String line) {
+            out.println(line);
+        }
+
+        String read() throws IOException {
+            return in.readLine();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains the test classes of the server, such as the journal, the checkpoints and the archive of the games.
+ */
+package servertest;